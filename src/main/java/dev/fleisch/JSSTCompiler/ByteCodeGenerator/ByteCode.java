@@ -7,12 +7,27 @@ package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
  */
 public enum ByteCode {
     ALOAD_0(0x2a),
+    ICONST_M1(0x2),
     ICONST_0(0x3),
     ICONST_1(0x4),
+    ICONST_2(0x5),
+    ICONST_3(0x6),
+    ICONST_4(0x7),
+    ICONST_5(0x8),
     IADD(0x60),
     ISUB(0x64),
     IMUL(0x68),
     IDIV(0x6c),
+    ISHL(0x78),
+    ISHR(0x7a),
+    IUSHR(0x7c),
+    IINC(0x84),
+    IFEQ(0x99),
+    IFNE(0x9a),
+    IFLT(0x9b),
+    IFGE(0x9c),
+    IFGT(0x9d),
+    IFLE(0x9e),
     IF_ICMPEQ(0x9f),
     IF_ICMPNE(0xa0),
     IF_ICMPLT(0xa1),
@@ -20,7 +35,15 @@ public enum ByteCode {
     IF_ICMPGT(0xa3),
     IF_ICMPLE(0xa4),
     ILOAD(0x15),
+    ILOAD_0(0x1a),
+    ILOAD_1(0x1b),
+    ILOAD_2(0x1c),
+    ILOAD_3(0x1d),
     ISTORE(0x36),
+    ISTORE_0(0x3b),
+    ISTORE_1(0x3c),
+    ISTORE_2(0x3d),
+    ISTORE_3(0x3e),
     GETSTATIC(0xb2),
     PUTSTATIC(0xb3),
     PUTFIELD(0xb5),
@@ -28,12 +51,15 @@ public enum ByteCode {
     BIPUSH(0x10),
     SIPUSH(0x11),
     LDC(0x12),
+    LDC_W(0x13),
+    WIDE(0xc4),
     GOTO(0xa7),
     INVOKESTATIC(0xb8),
     INVOKEVIRTUAL(0xb6),
     INVOKESPECIAL(0xb7),
     RETURN(0xb1),
-    IRETURN(0xac);
+    IRETURN(0xac),
+    POP(0x57);
 
     /**
      * Byte representing code
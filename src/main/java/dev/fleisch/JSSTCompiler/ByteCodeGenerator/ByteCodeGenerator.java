@@ -1,10 +1,21 @@
 package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
 
 import dev.fleisch.JSSTCompiler.*;
+import dev.fleisch.JSSTCompiler.IR.BasicBlock;
+import dev.fleisch.JSSTCompiler.IR.ControlFlowGraph;
+import dev.fleisch.JSSTCompiler.IR.Instruction;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
 
 
 /**
@@ -39,6 +50,11 @@ public class ByteCodeGenerator {
      */
     MethodPool methodPool = new MethodPool(constantPool);
 
+    /**
+     * Control flow graphs of the procedures, null unless procedures are optimized
+     */
+    List<ControlFlowGraph> controlFlowGraphs = null;
+
 
     /**
      * Byte output stream containing the class file
@@ -53,6 +69,26 @@ public class ByteCodeGenerator {
      * @param clasz Class on which the generator is based
      */
     public ByteCodeGenerator(Objekt.Clasz clasz) throws Exception {
+        this(clasz, false, false);
+    }
+
+    /**
+     * Creates a ByteCode generator for a given class.
+     * <p>
+     * Determines variable and procedure call pool. All constant pool entries referenced by the procedures' code are
+     * added before translation, hence translators only read the constant pool and the procedures can be translated
+     * independently of each other. Methods are added in the order of the SymbolTable, the class file does not depend on
+     * whether procedures are translated in parallel.
+     *
+     * <p>
+     * If the procedures are optimized, they are translated into control flow graphs first. The graphs are optimized and
+     * translated into bytecode afterwards.
+     *
+     * @param clasz    Class on which the generator is based
+     * @param parallel True if procedures are translated in parallel
+     * @param optimize True if procedures are optimized via their control flow graphs
+     */
+    public ByteCodeGenerator(Objekt.Clasz clasz, boolean parallel, boolean optimize) throws Exception {
         this.clasz = clasz;
 
         // Add the class to the pool
@@ -64,14 +100,9 @@ public class ByteCodeGenerator {
         // Add elements from the symbolTable
         for (Objekt objekt : clasz.getSymbolTable()) {
 
-            // Add constants to the field pool
+            // Add constants to the field pool as static final fields, their value is set by a ConstantValue attribute
             if (objekt instanceof Objekt.Constant) {
-                fieldPool.add((Objekt.Constant) objekt, clasz);
-
-                // Add it to the constant pool if it's larger than 2 bytes
-                int constant = ((Objekt.Constant) objekt).getValue();
-                if (constant > 32767 || constant < -32767)
-                    constantPool.add(constant);
+                fieldPool.add((Objekt.Constant) objekt);
                 continue;
             }
 
@@ -87,35 +118,74 @@ public class ByteCodeGenerator {
             }
         }
 
-        // Add all variables into the constant pool
-        for (Objekt objekt : clasz.getSymbolTable()) {
-            // add methods to the method Pool
-            if (objekt instanceof Objekt.Procedure) {
-                Node ast = ((Objekt.Procedure) objekt).getAbstractSyntaxTree();
-
-                ast.traverse(new Node.TraverseCallback() {
-                    @Override
-                    public void onTraverse(Node node) {
-                        if (node instanceof Node.ConstantNode) {
-                            int constant = ((Node.ConstantNode) node).getValue();
-
-                            // add the constant if it's to large for SIPUSH
-                            if (constant > 32767 || constant < -32767)
-                                constantPool.add(constant);
-                        }
-                    }
-                });
-            }
+        LinkedList<Objekt.Procedure> procedures = clasz.getProcedures();
+        addDefaultConstructor(procedures);
+
+        // Translate the procedures
+        List<? extends Translator> translators;
+        if (optimize) {
+            controlFlowGraphs = Parallel.map(procedures, procedure -> {
+                ControlFlowGraph graph = ControlFlowGraph.build(procedure);
+                graph.optimize();
+                return graph;
+            }, parallel);
+
+            // Add all constants used within the graphs into the constant pool
+            for (ControlFlowGraph graph : controlFlowGraphs)
+                for (BasicBlock block : graph.getBlocks())
+                    for (Instruction instruction : block.getInstructions())
+                        if (instruction.getOpcode() == Instruction.Opcode.CONSTANT)
+                            addConstant(instruction.getConstant());
+
+            translators = Parallel.map(controlFlowGraphs,
+                    graph -> new ControlFlowGraphTranslator(constantPool, graph), parallel);
+        } else {
+            addConstants(procedures);
+            translators = Parallel.map(procedures,
+                    procedure -> new ProcedureTranslator(constantPool, procedure), parallel);
         }
 
-        // Add methods (method information \w code)
-        for (Objekt objekt : clasz.getSymbolTable()) {
-            // add methods to the method Pool
-            if (objekt instanceof Objekt.Procedure) {
-                methodPool.add((Objekt.Procedure) objekt);
+        // Add methods (method information \w code) in order
+        Iterator<? extends Translator> translator = translators.iterator();
+        for (Objekt.Procedure procedure : procedures) {
+            methodPool.add(procedure, translator.next(), clasz);
+        }
+    }
+
+    /**
+     * Adds all constants used within the procedures' ASTs into the constant pool
+     *
+     * @param procedures The procedures
+     * @throws Exception If traversal fails
+     */
+    private void addConstants(List<Objekt.Procedure> procedures) throws Exception {
+        Node.Visitor<Void, RuntimeException> constants = new Node.DefaultVisitor<>() {
+            @Override
+            public Void visit(Node.ConstantNode node) {
+                addConstant(node.getValue());
+                return null;
+            }
+
+            @Override
+            public Void visit(Node.IdentifierNode node) {
+                // Final variables are loaded by value
+                if (node.getSymbolTableEntry() instanceof Objekt.Constant)
+                    addConstant(((Objekt.Constant) node.getSymbolTableEntry()).getValue());
+                return null;
             }
+        };
+
+        for (Objekt.Procedure procedure : procedures) {
+            procedure.getAbstractSyntaxTree().traverse(node -> node.accept(constants));
         }
+    }
 
+    /**
+     * Adds the mock default constructor, which only calls the constructor of Object, to the procedures
+     *
+     * @param procedures The procedures of the class
+     */
+    private void addDefaultConstructor(List<Objekt.Procedure> procedures) {
         // Create mock default constructor
         Objekt.Procedure defaultConstructor = new Objekt.Procedure("<init>", new LinkedList<>(), Type.VOID);
 
@@ -127,46 +197,32 @@ public class ByteCodeGenerator {
         Node.ProcedureCallNode mockCall = new Node.ProcedureCallNode("<init>", new Node.StatementSequenceNode(new LinkedList<>()), new CodePosition(0, 0));
         mockCall.setSymbolTableEntry(mockProcedure);
 
-        // Add final variable initialization
-        Node.StatementSequenceNode statementSequence = initializeGlobals(clasz);
-
-        // Add mock super call at start of procedure
-        statementSequence.getStatements().add(0, mockCall);
+        // The constructor only consists of the mock super call, constants don't require initialization
+        Node.StatementSequenceNode statementSequence = new Node.StatementSequenceNode(new LinkedList<>());
+        statementSequence.getStatements().add(mockCall);
 
         // Add default constructor
         defaultConstructor.setAbstractSyntaxTree(statementSequence);
-        methodPool.add(defaultConstructor);
+        procedures.add(defaultConstructor);
     }
 
     /**
-     * Generates an AST which initializes non-static final variables.
+     * Control flow graphs of the procedures (in the order of the methods), null unless procedures are optimized
      *
-     * @param clasz Class for which finals will be initialized
-     * @return StatementSequenceNode containing assignments
+     * @return The procedures' control flow graphs
      */
+    public List<ControlFlowGraph> getControlFlowGraphs() {
+        return controlFlowGraphs;
+    }
 
-    Node.StatementSequenceNode initializeGlobals(Objekt.Clasz clasz) {
-        LinkedList<Node> output = new LinkedList<>();
-
-        // Find all final variables and create mock assignments
-        for (Objekt objekt : clasz.getSymbolTable()) {
-            // Add constants to the field pool
-            if (objekt instanceof Objekt.Constant) {
-                Objekt.Constant constant = (Objekt.Constant) objekt;
-
-                // Mock identifier for variable being assigned
-                Node.IdentifierNode assignee = new Node.IdentifierNode(constant.getName(), new CodePosition(0, 0));
-                assignee.setSymbolTableEntry(constant);
-
-                // Create mock variable assignment
-                output.add(new Node.BinaryOperationNode(assignee,
-                        new Node.ConstantNode(constant.getValue(), new CodePosition(0, 0)),
-                        Operation.Binary.ASSIGNMENT,
-                        new CodePosition(0, 0)));
-            }
-        }
-
-        return new Node.StatementSequenceNode(output);
+    /**
+     * Adds an int constant to the constant pool if it's too large for SIPUSH
+     *
+     * @param constant The constant used within a procedure
+     */
+    private void addConstant(int constant) {
+        if (constant > Short.MAX_VALUE || constant < Short.MIN_VALUE)
+            constantPool.add(constant);
     }
 
     /**
@@ -183,8 +239,8 @@ public class ByteCodeGenerator {
         // Write minor version
         outputStream.write(new byte[]{(byte) 0x00, (byte) 0x00});
 
-        // Write major version (JDK 1.1)
-        outputStream.write(new byte[]{(byte) 0x00, (byte) 0x3B});//2D
+        // Write major version (Java 15), methods with branches carry a StackMapTable for verification
+        outputStream.write(new byte[]{(byte) 0x00, (byte) 0x3B});
 
         // Write constant pool count
         int constantPoolSize = constantPool.size() + 1;
@@ -239,4 +295,274 @@ public class ByteCodeGenerator {
 
         return outputStream;
     }
+
+    /**
+     * Class for differential optimizer tests.
+     * Classes are compiled with and without optimization, all procedures must return the same values (or throw the
+     * same exceptions) and leave the same field values for all combinations of the given arguments.
+     *
+     * @author TillFleisch
+     */
+    public static class OptimizerTest {
+
+        /**
+         * Arguments passed to procedures without loops, including values which overflow
+         */
+        private static final int[] ARGUMENTS = {0, 1, -1, 2, -2, 3, 7, -7, 8, -8, 1000, -1001,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+
+        /**
+         * Run differential optimizer tests.
+         */
+        public static void runTests() {
+            try {
+                // Values depending on fields must not be reused across procedure calls which might write the fields
+                compare("""
+                        class Reuse {
+                            int f;
+                            int calls;
+                            public int set(int v) { f = v; calls = calls + 1; return v; }
+                            public int reload(int a) {
+                                int x; int y;
+                                f = a;
+                                x = f + a * 3;
+                                set(a + 1);
+                                y = f + a * 3;
+                                return x - y;
+                            }
+                            public int branch(int a, int b) {
+                                int x; int y;
+                                x = a * b + f;
+                                if (a < b) { y = set(b) + a * b; } else { y = a * b + f; }
+                                return x * 31 + y + a * b + f;
+                            }
+                            public int loop(int a) {
+                                int i; int s;
+                                i = 0; s = 0;
+                                while (i < 3) { s = s + f * a; set(f + a); i = i + 1; }
+                                return s + f * a;
+                            }
+                            public int quotient(int a, int b) {
+                                int q;
+                                q = (a / b * 7) + (a / b * 7);
+                                if (a < b) { q = q + (a / b * 7); } else { q = q - (b / a * 7); }
+                                return q + (b / a * 7);
+                            }
+                        }""", ARGUMENTS);
+
+                // Divisions by powers of two must round toward zero for negative dividends and MIN_VALUE
+                compare("""
+                        class Division {
+                            public int half(int x) { return x / 2; }
+                            public int eighth(int x) { return x / 8; }
+                            public int large(int x) { return x / 1073741824; }
+                            public int mixed(int x) { return x / 4 + x * 8 + x * 9 + x * 7 - x / 1; }
+                            public int zero(int x) { return x / 0; }
+                            public int negative(int x) { return x / (0 - 4); }
+                            public int nested(int x, int y) { return x / 16 / y; }
+                        }""", ARGUMENTS);
+
+                // Multiplications of induction variables may only be reduced if the variable is incremented once
+                compare("""
+                        class Induction {
+                            public int simple(int n) {
+                                int i; int s;
+                                i = 0; s = 0;
+                                while (i < n) { s = s + i * 12; i = i + 1; s = s + i * 12 + i * 1000000007; }
+                                return s;
+                            }
+                            public int reassigned(int n) {
+                                int i; int s;
+                                i = 0; s = 0;
+                                while (i < n) {
+                                    s = s + i * 5;
+                                    i = i + 1;
+                                    if (i == 3) { i = i + 5; } else { s = s + 1; }
+                                }
+                                return s;
+                            }
+                            public int recomputed(int n) {
+                                int i; int k; int s;
+                                i = 0; k = 0; s = 0;
+                                while (i < n) { k = i * 5; s = s + k; i = k / 5; i = i + 1; }
+                                return s + k;
+                            }
+                            public int decrement(int n) {
+                                int i; int s;
+                                i = n; s = 0;
+                                while (0 < i) { s = s + i * 3; i = i - 2; }
+                                return s;
+                            }
+                            public int steps(int n) {
+                                int i; int s;
+                                i = 0; s = 0;
+                                while (i < n * 1000) { s = s + i * 7; i = i + 200; }
+                                while (0 - 1000 < i) { s = s + i * 9; i = i - 128; }
+                                while (i < n * 100000) { s = s + i * 3; i = i + 32767; }
+                                while (i < n * 200000) { s = s + i * 3; i = i + 32768; }
+                                while (0 - 100000 < i) { s = s + i * 6; i = i - 32768; }
+                                return s;
+                            }
+                            public int nested(int n) {
+                                int i; int j; int s;
+                                i = 0; s = 0;
+                                while (i < n) {
+                                    j = 0;
+                                    while (j < 3) { s = s + i * 4 + j * 6; j = j + 1; }
+                                    i = i + 1;
+                                }
+                                return s;
+                            }
+                        }""", -3, 0, 1, 2, 5, 17);
+
+                // Folding must preserve overflows, runtime exceptions and procedure calls
+                compare("""
+                        class Folding {
+                            final int MAX = 2147483647;
+                            final int K = 3;
+                            int g;
+                            int calls;
+                            public int f(int v) { calls = calls + 1; g = g + v; return g; }
+                            public int overflow(int a) {
+                                return (2147483647 + 1 + a) + (a + MAX + 1) * 3 + a * 65536 * 65536 + (MAX * 2 + K);
+                            }
+                            public int divide(int a) { return a / 0; }
+                            public int divideTimesZero(int a) { return (a / 0) * 0 + a; }
+                            public int divideByOne(int a, int b) { return b / (K - 2) + 0 * (a / b); }
+                            public int callTimesZero(int a) { return f(a) * 0 + 0 * f(a + 1); }
+                            public int callMinusCall(int a) { return f(a) - f(a); }
+                            public int simplified(int a, int b) {
+                                return (a - a) + (b - 0) + (a * 1) + (1 * b) + (a == a) + (a < a) + (0 + b) + (a <= a);
+                            }
+                            public int branches(int a) {
+                                int r;
+                                r = 0;
+                                if (K < 2) { r = f(a); } else { r = r + a; }
+                                if (K == 3) { r = r + K * a; } else { r = f(r); }
+                                while (K < 0) { r = f(r); }
+                                if (1 == 1) { return r + f(a); } else { r = f(2); }
+                                return f(r);
+                            }
+                            public void loops(int a) {
+                                int i;
+                                i = 0;
+                                while (K < K) { g = f(a); }
+                                while (i < K) { g = g + a * K; i = i + 1; }
+                            }
+                            public int enteredLoop(int a) {
+                                while (K == 3) { g = f(a); return g + a; }
+                            }
+                        }""", ARGUMENTS);
+            } catch (Exception | VerifyError e) {
+                Logger.getGlobal().info("\u001B[31mOptimizer tests failed!\u001B[0m");
+                throw new RuntimeException(e);
+            }
+            Logger.getGlobal().info("\u001B[32mAll optimizer tests passed!\u001B[0m");
+        }
+
+        /**
+         * Compiles a class with and without optimization and compares the outcome of all procedures for all
+         * combinations of the given arguments
+         *
+         * @param fileContent jsst source code
+         * @param arguments   Values passed as arguments
+         * @throws Exception If compilation fails or the outcomes differ
+         */
+        private static void compare(String fileContent, int... arguments) throws Exception {
+            Class<?> expectedClass = compile(fileContent, false);
+            Class<?> optimizedClass = compile(fileContent, true);
+
+            for (Method method : expectedClass.getDeclaredMethods()) {
+                Method optimized = optimizedClass.getDeclaredMethod(method.getName(), method.getParameterTypes());
+
+                // Enumerate all combinations of arguments
+                int[] indices = new int[method.getParameterCount()];
+                Object[] values = new Object[indices.length];
+                do {
+                    for (int i = 0; i < indices.length; i++)
+                        values[i] = arguments[indices[i]];
+
+                    String expected = invoke(method, values);
+                    String found = invoke(optimized, values);
+                    if (!expected.equals(found))
+                        throw new Exception("Expected " + expected + " but found " + found + " for " +
+                                method.getName() + Arrays.toString(values) + " of: " + fileContent);
+                } while (next(indices, arguments.length));
+            }
+        }
+
+        /**
+         * Advances to the next combination of argument indices
+         *
+         * @param indices Index of the argument passed as each parameter, updated in place
+         * @param count   Number of arguments
+         * @return False if all combinations have been enumerated
+         */
+        private static boolean next(int[] indices, int count) {
+            for (int i = 0; i < indices.length; i++) {
+                if (++indices[i] < count)
+                    return true;
+                indices[i] = 0;
+            }
+            return false;
+        }
+
+        /**
+         * Invokes a procedure on a new instance of its class
+         *
+         * @param method    The procedure
+         * @param arguments The arguments
+         * @return The returned value (or the thrown exception) followed by the instance's field values
+         * @throws Exception If the class can't be instantiated
+         */
+        private static String invoke(Method method, Object[] arguments) throws Exception {
+            Object instance = method.getDeclaringClass().getDeclaredConstructor().newInstance();
+
+            StringBuilder outcome = new StringBuilder();
+            try {
+                outcome.append(method.invoke(instance, arguments));
+            } catch (InvocationTargetException e) {
+                outcome.append(e.getCause().getClass().getName());
+            }
+            for (Field field : method.getDeclaringClass().getDeclaredFields())
+                outcome.append(' ').append(field.getName()).append('=').append(field.get(instance));
+            return outcome.toString();
+        }
+
+        /**
+         * Compiles a class and loads it, the class is verified while loading.
+         * Optimized classes are compiled like {@link Main} does, the ASTs of unoptimized classes aren't folded.
+         *
+         * @param fileContent jsst source code
+         * @param optimize    True if constants are folded and the procedures are optimized
+         * @return The loaded class
+         * @throws Exception If compilation fails
+         */
+        private static Class<?> compile(String fileContent, boolean optimize) throws Exception {
+            Parser parser = new Parser(new Scanner(new Input(new ByteArrayInputStream(fileContent.getBytes()))));
+            Objekt.Clasz clasz = parser.parse();
+            SemanticAnalysis.run(clasz);
+            if (optimize)
+                ConstantFolding.run(clasz, false);
+
+            byte[] classFile = new ByteCodeGenerator(clasz, false, optimize).generate().toByteArray();
+            return new ClassFileLoader().define(classFile);
+        }
+
+        /**
+         * Loads generated class files, each class is loaded by its own loader
+         *
+         * @author TillFleisch
+         */
+        private static class ClassFileLoader extends ClassLoader {
+
+            /**
+             * @param classFile The class file
+             * @return The class defined by the class file
+             */
+            Class<?> define(byte[] classFile) {
+                return defineClass(null, classFile, 0, classFile.length);
+            }
+        }
+    }
 }
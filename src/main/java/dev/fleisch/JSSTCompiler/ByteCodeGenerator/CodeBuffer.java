@@ -0,0 +1,310 @@
+package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer holding the bytecode of a single method.
+ * <p>
+ * Instructions are appended in order. Branches may refer to {@link Label}s which are bound later on, their offsets
+ * are backpatched once the label's position is known.
+ * <p>
+ * The buffer keeps track of the {@link Frame} at the current position. A frame is recorded at every branch target and
+ * after every unconditional jump, these frames make up the method's StackMapTable.
+ *
+ * @author TillFleisch
+ */
+class CodeBuffer {
+
+    /**
+     * Bytecode written so far
+     */
+    private byte[] code = new byte[256];
+
+    /**
+     * Number of bytes written
+     */
+    private int size = 0;
+
+    /**
+     * Frame at the current position
+     */
+    private Frame frame;
+
+    /**
+     * False if the previous instruction does not continue at the current position (goto/return)
+     */
+    private boolean reachable = true;
+
+    /**
+     * Positions at which frames have been recorded, ascending
+     */
+    private int[] framePositions = new int[8];
+
+    /**
+     * Frames recorded at the positions within {@link #framePositions}
+     */
+    private Frame[] frames = new Frame[8];
+
+    /**
+     * Number of recorded frames
+     */
+    private int frameCount = 0;
+
+    /**
+     * Position within the code which can be used as branch target
+     */
+    static class Label {
+
+        /**
+         * Position of the label, -1 if not bound yet
+         */
+        private int position = -1;
+
+        /**
+         * Positions of the branch instructions referring to this label before it has been bound
+         */
+        private int[] branches = new int[2];
+
+        /**
+         * Number of unresolved branches
+         */
+        private int branchCount = 0;
+
+        /**
+         * Frame at the label's position. Before binding this is the merged frame of all branches referring to it.
+         */
+        private Frame frame = null;
+
+        /**
+         * Determines if the label has been bound to a position
+         *
+         * @return True if the labels position is known
+         */
+        boolean isBound() {
+            return position >= 0;
+        }
+
+        /**
+         * Determines if any branch refers to this label
+         *
+         * @return True if the label is the target of a branch
+         */
+        boolean isBranchTarget() {
+            return frame != null;
+        }
+
+        /**
+         * @return The position the label has been bound to
+         */
+        int getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * Creates an empty buffer
+     *
+     * @param initialFrame Frame at the beginning of the method
+     */
+    CodeBuffer(Frame initialFrame) {
+        frame = initialFrame.copy();
+    }
+
+    /**
+     * The frame at the current position, instructions written update the frame via this reference
+     *
+     * @return The current frame
+     */
+    Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Replaces the frame at the current position. Used for code which is only entered by branches which have not been
+     * written yet, the frame of such code can't be derived from the previous instructions.
+     *
+     * @param frame The frame at the current position
+     * @throws Exception If the current position is reachable from the previous instruction
+     */
+    void setFrame(Frame frame) throws Exception {
+        if (reachable)
+            throw new Exception("Frame of reachable code replaced, invalid code generation!");
+        this.frame = frame;
+    }
+
+    /**
+     * Determines if execution can reach the current position by continuing from the previous instruction or via a
+     * bound label
+     *
+     * @return False if the last instruction was an unconditional jump or return
+     */
+    boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * Appends a single byte
+     *
+     * @param b The byte to append
+     */
+    void write(int b) {
+        if (size == code.length)
+            code = Arrays.copyOf(code, size * 2);
+        code[size++] = (byte) b;
+    }
+
+    /**
+     * Appends an instruction without operands
+     *
+     * @param byteCode The instruction to append
+     */
+    void write(ByteCode byteCode) {
+        // Code following an unconditional jump still requires a frame
+        if (!reachable) {
+            recordFrame(frame.copy());
+            reachable = true;
+        }
+
+        write(byteCode.getCode());
+
+        if (byteCode == ByteCode.RETURN || byteCode == ByteCode.IRETURN)
+            reachable = false;
+    }
+
+    /**
+     * Appends a 16 bit value (big endian)
+     *
+     * @param value The value to append
+     */
+    void writeShort(int value) {
+        write(value >> 8);
+        write(value);
+    }
+
+    /**
+     * Appends a branch instruction with a 16 bit offset to a label.
+     * If the label is not bound yet the offset is backpatched once the label gets bound.
+     * The operands consumed by the branch must have been removed from the current frame already.
+     *
+     * @param byteCode Branch instruction
+     * @param label    Branch target
+     * @throws Exception If the branch offset exceeds 16 bit or the frame does not match the target's frame
+     */
+    void writeBranch(ByteCode byteCode, Label label) throws Exception {
+        int instructionPosition = size;
+        write(byteCode);
+
+        if (label.isBound()) {
+            if (!frame.isAssignableTo(label.frame))
+                throw new Exception("Inconsistent frame at branch target, invalid code generation!");
+            writeShort(checkOffset(label.position - instructionPosition));
+        } else {
+            label.frame = label.frame == null ? frame.copy() : label.frame.merge(frame);
+
+            if (label.branchCount == label.branches.length)
+                label.branches = Arrays.copyOf(label.branches, label.branchCount * 2);
+            label.branches[label.branchCount++] = instructionPosition;
+            writeShort(0);
+        }
+
+        if (byteCode == ByteCode.GOTO)
+            reachable = false;
+    }
+
+    /**
+     * Binds a label to the current position and backpatches all branches referring to it.
+     * The frame at the label merges the current frame (if reachable) and the frames of all branches referring to it.
+     *
+     * @param label The label to bind
+     * @throws Exception If the label has already been bound, a branch offset exceeds 16 bit or frames don't match
+     */
+    void bind(Label label) throws Exception {
+        if (label.isBound())
+            throw new Exception("Label bound twice, invalid code generation!");
+        label.position = size;
+
+        Frame labelFrame = label.frame;
+        if (reachable)
+            labelFrame = labelFrame == null ? frame.copy() : labelFrame.merge(frame);
+
+        // Neither reached yet, the label is the target of a backward branch (or dead code)
+        if (labelFrame == null)
+            labelFrame = frame.copy();
+
+        // Labels bound to the same position share the frame
+        if (frameCount > 0 && framePositions[frameCount - 1] == size)
+            labelFrame = frames[frameCount - 1].merge(labelFrame);
+        else
+            recordFrame(labelFrame);
+
+        label.frame = labelFrame;
+        frame = labelFrame.copy();
+        reachable = true;
+
+        for (int i = 0; i < label.branchCount; i++) {
+            int instructionPosition = label.branches[i];
+            int offset = checkOffset(label.position - instructionPosition);
+            code[instructionPosition + 1] = (byte) (offset >> 8);
+            code[instructionPosition + 2] = (byte) offset;
+        }
+        label.branches = null;
+        label.branchCount = 0;
+    }
+
+    /**
+     * Records a frame at the current position
+     *
+     * @param frame The frame to record
+     */
+    private void recordFrame(Frame frame) {
+        if (frameCount == frames.length) {
+            framePositions = Arrays.copyOf(framePositions, frameCount * 2);
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        framePositions[frameCount] = size;
+        frames[frameCount++] = frame;
+    }
+
+    /**
+     * Asserts that a branch offset fits into 16 bit
+     *
+     * @param offset The branch offset
+     * @return The branch offset
+     * @throws Exception If the offset exceeds 16 bit
+     */
+    private static int checkOffset(int offset) throws Exception {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+            throw new Exception("Branch offset exceeds 16 bit, method too large!");
+        return offset;
+    }
+
+    /**
+     * @return Number of bytes written
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the written bytecode
+     *
+     * @return The bytecode written so far
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(code, size);
+    }
+
+    /**
+     * @return Positions of the recorded frames, ascending
+     */
+    int[] getFramePositions() {
+        return Arrays.copyOf(framePositions, frameCount);
+    }
+
+    /**
+     * @return Frames recorded at the positions given by {@link #getFramePositions()}
+     */
+    Frame[] getFrames() {
+        return Arrays.copyOf(frames, frameCount);
+    }
+}
@@ -1,5 +1,6 @@
 package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
 
+import dev.fleisch.JSSTCompiler.NameTable;
 import dev.fleisch.JSSTCompiler.Objekt;
 import dev.fleisch.JSSTCompiler.Type;
 
@@ -7,16 +8,79 @@ import java.util.HashMap;
 
 /**
  * Class describing a constant pool which holds ConstantPoolInformation
+ * <p>
+ * Entries are deduplicated: every entry is hashed by tag and content, adding an existing entry again returns the
+ * index of the present entry.
  *
  * @author TillFleisch
  */
 public class ConstantPool extends Pool<Info.ConstantPoolInfo> {
 
+    /**
+     * Maximum number of entries, the constant_pool_count (entries + 1) is stored as u2
+     */
+    static final int MAX_ENTRIES = 0xFFFE;
+
     /**
      * Map for easy integer constant to pool reference
      */
     final HashMap<Integer, Integer> constantReference = new HashMap<>();
 
+    /**
+     * Map from {@link NameTable} IDs to the pool reference of the name's UTF8 entry
+     */
+    final HashMap<Integer, Integer> nameReference = new HashMap<>();
+
+    /**
+     * Map from entries to their pool reference
+     */
+    final HashMap<Info.ConstantPoolInfo, Integer> entryReference = new HashMap<>();
+
+    /**
+     * Adds an entry to the constant pool unless an equal entry is already present
+     *
+     * @param info The entry to add
+     * @return The pool reference of the (present) entry
+     */
+    public int addEntry(Info.ConstantPoolInfo info) {
+        Integer index = entryReference.get(info);
+        if (index == null) {
+            if (size() >= MAX_ENTRIES)
+                throw new IllegalStateException("Constant pool exceeds " + MAX_ENTRIES + " entries");
+
+            add(info);
+            index = size();
+            entryReference.put(info, index);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a UTF8 entry to the constant pool
+     *
+     * @param string The entry's content
+     * @return The pool reference of the entry
+     */
+    public int addUTF8(String string) {
+        return addEntry(new Info.ConstantPoolInfo.UTF8Info(string));
+    }
+
+    /**
+     * Adds the name of an object to the constant pool.
+     * Names are stored once and shared by all entries referring to them.
+     *
+     * @param objekt Object whose name is added
+     * @return The pool reference of the name's UTF8 entry
+     */
+    public int addName(Objekt objekt) {
+        Integer index = nameReference.get(objekt.getNameId());
+        if (index == null) {
+            index = addUTF8(NameTable.name(objekt.getNameId()));
+            nameReference.put(objekt.getNameId(), index);
+        }
+        return index;
+    }
+
     /**
      * Adds a clasz object to the Constant pool table
      *
@@ -24,32 +88,20 @@ public class ConstantPool extends Pool<Info.ConstantPoolInfo> {
      */
     public void add(Objekt.Clasz clasz) {
 
-        // Create class info with name reference
-        add(new Info.ConstantPoolInfo.ClaszInfo(size() + 2)); // Index ahead
-
-        // Add object to reference
-        poolReference.put(clasz, size());
-
         // Create name info
-        add(new Info.ConstantPoolInfo.UTF8Info(clasz.getName()));
+        int nameIndex = addName(clasz);
+
+        // Create class info with name reference and add object to reference
+        poolReference.put(clasz, addEntry(new Info.ConstantPoolInfo.ClaszInfo(nameIndex)));
     }
 
     /**
-     * Creates a method reference within the constant pool.
-     * This does not create the actual method info. Method info \w code is stored in the Method pool
+     * Creates a method descriptor for a procedure
      *
-     * @param procedure Procedure to create a reference for
-     * @param clasz     Class in which the procedure is contained
+     * @param procedure Procedure to create a descriptor for
+     * @return The procedure's descriptor
      */
-    public void add(Objekt.Procedure procedure, Objekt.Clasz clasz) {
-        // Add CONSTANT_Methodref_info used for static retrieval
-
-        // TODO: this contains Code clone from MethodPool (also creates duplicate entries within the constant pool)
-        // Constant name
-        add(new Info.ConstantPoolInfo.UTF8Info(procedure.getName()));
-        int nameIndex = size();
-
-        // Create a descriptor
+    static String descriptor(Objekt.Procedure procedure) {
         StringBuilder descriptorBuilder = new StringBuilder();
         descriptorBuilder.append("(");
         descriptorBuilder.append("I".repeat(procedure.getParameterList().size()));
@@ -58,35 +110,48 @@ public class ConstantPool extends Pool<Info.ConstantPoolInfo> {
             descriptorBuilder.append("V");
         if (procedure.getReturnType() == Type.INT)
             descriptorBuilder.append("I");
+        return descriptorBuilder.toString();
+    }
+
+    /**
+     * Creates a method reference within the constant pool.
+     * This does not create the actual method info. Method info \w code is stored in the Method pool
+     *
+     * @param procedure Procedure to create a reference for
+     * @param clasz     Class in which the procedure is contained
+     */
+    public void add(Objekt.Procedure procedure, Objekt.Clasz clasz) {
+        // Add CONSTANT_Methodref_info used for static retrieval
 
-        // Add the descriptor to the pool
-        add(new Info.ConstantPoolInfo.UTF8Info(descriptorBuilder.toString()));
-        int descriptorIndex = size();
+        // Constant name and descriptor
+        int nameIndex = addName(procedure);
+        int descriptorIndex = addUTF8(descriptor(procedure));
 
         // Retrieve constant pool
         int classIndex = getByReference(clasz);
 
         // Add NameAndType info to the constant pool
-        add(new Info.ConstantPoolInfo.NameAndTypeInfo(nameIndex, descriptorIndex));
-        int nameAndTypeIndex = size();
+        int nameAndTypeIndex = addEntry(new Info.ConstantPoolInfo.NameAndTypeInfo(nameIndex, descriptorIndex));
 
         // add a CONSTANT_Methodref_info to the constant pool
-        add(new Info.ConstantPoolInfo.MethodReferenceInfo(classIndex, nameAndTypeIndex));
-        poolReference.put(procedure, size());
+        poolReference.put(procedure, addEntry(new Info.ConstantPoolInfo.MethodReferenceInfo(classIndex, nameAndTypeIndex)));
     }
 
     /**
      * Add constant ints to the constant pool
      *
      * @param value constant to add
+     * @return The pool reference of the constant
      */
-    public void add(int value) {
+    public int add(int value) {
 
         // Check if constant already present
-        if (!constantReference.containsKey(value)) {
+        Integer index = constantReference.get(value);
+        if (index == null) {
             // Add the constant to the constant pool
-            add(new Info.ConstantPoolInfo.IntegerInfo(value));
-            constantReference.put(value, size());
+            index = addEntry(new Info.ConstantPoolInfo.IntegerInfo(value));
+            constantReference.put(value, index);
         }
+        return index;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,541 @@
+package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
+
+import dev.fleisch.JSSTCompiler.IR.BasicBlock;
+import dev.fleisch.JSSTCompiler.IR.ControlFlowGraph;
+import dev.fleisch.JSSTCompiler.IR.Instruction;
+import dev.fleisch.JSSTCompiler.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Class implementing the translation of a procedure's control flow graph into bytecode
+ * <p>
+ * Registers holding variables are mapped onto the variables' slots. Temporaries which are used once, by a later
+ * instruction of the same block, are kept on the operand stack (stackification). Operands of an instruction which
+ * are not on the stack are loaded right before the code of the instruction's stacked operands, such that the operands
+ * end up on the stack in order. All other temporaries are stored in additional slots.
+ * Additions of constants to a register, which are stored in the same slot, are written as iinc.
+ * Blocks are written in layout order, jumps to the following block are omitted.
+ *
+ * @author TillFleisch
+ */
+public class ControlFlowGraphTranslator extends Translator {
+
+    /**
+     * Marker within the load actions for loading the object reference
+     */
+    private static final int OBJECT_REFERENCE = 0;
+
+    /**
+     * The translated graph
+     */
+    private final ControlFlowGraph graph;
+
+    /**
+     * Number of reads per register
+     */
+    private final int[] uses;
+
+    /**
+     * Slot of each register held in a local variable
+     */
+    private final int[] slots;
+
+    /**
+     * Registers kept on the operand stack
+     */
+    private final BitSet stacked = new BitSet();
+
+    /**
+     * Index of the instruction at which the code leaving a stacked register's value on the stack starts
+     */
+    private final int[] treeStarts;
+
+    /**
+     * Index of the defining instruction within its block for each register kept on the stack
+     */
+    private final int[] definitions;
+
+    /**
+     * Slots assigned on all paths into each block, indexed by block id
+     */
+    private BitSet[] assignedSlots;
+
+    /**
+     * Increments of registers held in local variables by constants, written as iinc
+     */
+    private final IdentityHashMap<Instruction, Integer> increments = new IdentityHashMap<>();
+
+    /**
+     * Constant instructions whose value is the (stacked) operand of an increment, they are not written
+     */
+    private final IdentityHashMap<Instruction, Boolean> incrementConstants = new IdentityHashMap<>();
+
+    /**
+     * Labels of the blocks which are targets of branch instructions
+     */
+    private final IdentityHashMap<BasicBlock, CodeBuffer.Label> labels = new IdentityHashMap<>();
+
+    /**
+     * Creates a translator and translates the control flow graph into equivalent bytecode
+     *
+     * @param constantPool Constant pool provided by the class containing this method
+     * @param graph        The control flow graph of the procedure to translate
+     * @throws Exception If translation fails
+     */
+    public ControlFlowGraphTranslator(ConstantPool constantPool, ControlFlowGraph graph) throws Exception {
+        super(constantPool, graph.getProcedure());
+        this.graph = graph;
+
+        int registerCount = graph.getRegisterCount();
+        uses = graph.countUses();
+        slots = new int[registerCount];
+        treeStarts = new int[registerCount];
+        definitions = new int[registerCount];
+
+        // Determine which temporaries are kept on the stack
+        List<BasicBlock> blocks = graph.getBlocks();
+        int[] definitionCount = new int[registerCount];
+        for (BasicBlock block : blocks) {
+            List<Instruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                int target = instructions.get(i).getTarget();
+                if (target != Instruction.NO_REGISTER) {
+                    definitionCount[target]++;
+                    definitions[target] = i;
+                }
+            }
+        }
+        for (int register = graph.getVariableCount(); register < registerCount; register++) {
+            if (definitionCount[register] == 1 && uses[register] == 1)
+                stacked.set(register);
+        }
+        for (BasicBlock block : blocks)
+            stackify(block);
+
+        // Variables use the slots following the object reference, other temporaries are stored in additional slots
+        int slot = 1;
+        for (int register = 0; register < registerCount; register++) {
+            if (register < graph.getVariableCount() || (!stacked.get(register) && uses[register] > 0))
+                slots[register] = slot++;
+        }
+        maxLocals = slot;
+
+        for (BasicBlock block : blocks)
+            findIncrements(block);
+
+        // Create labels for all blocks which are not only entered from the previous block
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            BasicBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            List<BasicBlock> successors = block.getSuccessors();
+            switch (block.getExit()) {
+                case JUMP -> {
+                    if (successors.get(0) != next)
+                        label(successors.get(0));
+                }
+                case BRANCH -> {
+                    if (successors.get(1) != next)
+                        label(successors.get(1));
+                    if (successors.get(0) != next || successors.get(1) == next)
+                        label(successors.get(0));
+                }
+            }
+        }
+
+        assignedSlots = assignedSlots();
+
+        // Translate the blocks in layout order
+        for (int i = 0; i < blocks.size(); i++)
+            translate(blocks.get(i), i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+        finish();
+    }
+
+    /**
+     * Determines the slots which are assigned on all paths into each block by iterating until a fixed point is reached
+     *
+     * @return Assigned slots, indexed by block id
+     */
+    private BitSet[] assignedSlots() {
+        List<BasicBlock> blocks = graph.getBlocks();
+        BitSet[] assigned = new BitSet[blocks.size()];
+        BitSet[] stored = new BitSet[blocks.size()];
+        for (BasicBlock block : blocks) {
+            stored[block.getId()] = new BitSet();
+            for (Instruction instruction : block.getInstructions()) {
+                int target = instruction.getTarget();
+                if (target != Instruction.NO_REGISTER && slots[target] > 0)
+                    stored[block.getId()].set(slots[target]);
+            }
+        }
+
+        // Parameters are assigned on entry
+        assigned[0] = new BitSet();
+        assigned[0].set(1, graph.getProcedure().getParameterList().size() + 1);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < blocks.size(); i++) {
+                BitSet slots = null;
+                for (BasicBlock predecessor : blocks.get(i).getPredecessors()) {
+                    if (assigned[predecessor.getId()] == null)
+                        continue;
+                    BitSet exitSlots = (BitSet) assigned[predecessor.getId()].clone();
+                    exitSlots.or(stored[predecessor.getId()]);
+                    if (slots == null)
+                        slots = exitSlots;
+                    else
+                        slots.and(exitSlots);
+                }
+                if (slots != null && !slots.equals(assigned[i])) {
+                    assigned[i] = slots;
+                    changed = true;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Creates the label of a block if not present yet
+     *
+     * @param block The branch target
+     * @return The block's label
+     */
+    private CodeBuffer.Label label(BasicBlock block) {
+        return labels.computeIfAbsent(block, b -> new CodeBuffer.Label());
+    }
+
+    /**
+     * Removes registers from the set of stacked registers until the stacked registers of the block can be kept on the
+     * operand stack.
+     * <p>
+     * The operand stack is simulated while going through the block. When an instruction is reached, its stacked
+     * operands must be the topmost values on the stack (in order) and the code of the operands must directly precede
+     * the instruction. Otherwise the operands are stored in local variables instead and the block is simulated again.
+     *
+     * @param block The block
+     */
+    private void stackify(BasicBlock block) {
+        List<Instruction> instructions = block.getInstructions();
+        int[] stackRegisters = new int[instructions.size()];
+        int stackSize;
+
+        boolean changed;
+        do {
+            changed = false;
+            stackSize = 0;
+
+            // The block's exit is treated as instruction following the last instruction
+            for (int i = 0; i <= instructions.size() && !changed; i++) {
+                int[] operands = i < instructions.size() ? instructions.get(i).getOperands() : block.getExitOperands();
+                int[] stackedOperands = Arrays.stream(operands).filter(stacked::get).toArray();
+                int count = stackedOperands.length;
+
+                // Check the order of the operands and that their code is contiguous
+                boolean valid = count <= stackSize && (count == 0 || definitions[stackedOperands[count - 1]] == i - 1);
+                for (int j = 0; valid && j < count; j++) {
+                    valid = stackRegisters[stackSize - count + j] == stackedOperands[j] &&
+                            (j == 0 || treeStarts[stackedOperands[j]] == definitions[stackedOperands[j - 1]] + 1);
+                }
+                if (!valid) {
+                    for (int operand : stackedOperands)
+                        stacked.clear(operand);
+                    changed = true;
+                    continue;
+                }
+
+                stackSize -= count;
+                int target = i < instructions.size() ? instructions.get(i).getTarget() : Instruction.NO_REGISTER;
+                if (target != Instruction.NO_REGISTER && stacked.get(target)) {
+                    treeStarts[target] = count > 0 ? treeStarts[stackedOperands[0]] : i;
+                    stackRegisters[stackSize++] = target;
+                }
+            }
+
+            // Values which are not consumed within the block are stored
+            if (!changed && stackSize > 0) {
+                for (int i = 0; i < stackSize; i++)
+                    stacked.clear(stackRegisters[i]);
+                changed = true;
+            }
+        } while (changed);
+    }
+
+    /**
+     * Finds the instructions adding a constant to a register which is held in a local variable and stored back into
+     * it. The constant must be computed by the preceding instruction and only used by the increment.
+     *
+     * @param block The block
+     */
+    private void findIncrements(BasicBlock block) {
+        List<Instruction> instructions = block.getInstructions();
+        for (int i = 1; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            Instruction.Opcode opcode = instruction.getOpcode();
+            int target = instruction.getTarget();
+            if ((opcode != Instruction.Opcode.ADD && opcode != Instruction.Opcode.SUBTRACT) ||
+                    target == Instruction.NO_REGISTER || slots[target] == 0)
+                continue;
+
+            // The constant may be the left operand of additions
+            int[] operands = instruction.getOperands();
+            int constant = operands[0] == target ? operands[1] : operands[0];
+            if ((opcode == Instruction.Opcode.SUBTRACT && operands[0] != target) ||
+                    (operands[0] != target && operands[1] != target) || !stacked.get(constant) ||
+                    definitions[constant] != i - 1)
+                continue;
+
+            Instruction definition = instructions.get(i - 1);
+            if (definition.getOpcode() != Instruction.Opcode.CONSTANT)
+                continue;
+            int delta = opcode == Instruction.Opcode.ADD ? definition.getConstant() : -definition.getConstant();
+            if (isIncrement(delta)) {
+                increments.put(instruction, delta);
+                incrementConstants.put(definition, true);
+            }
+        }
+    }
+
+    /**
+     * Determines the values loaded in front of each instruction of a block. Non-stacked operands are loaded in front
+     * of the code of the following stacked operand, or in front of the instruction if none follows.
+     * Instructions requiring the object reference load it in front of their first operand.
+     *
+     * @param block The block
+     * @return Slots to load (or {@link #OBJECT_REFERENCE}) in front of each instruction, the last entry precedes the
+     * exit
+     */
+    private List<ArrayDeque<Integer>> loadActions(BasicBlock block) {
+        List<Instruction> instructions = block.getInstructions();
+        List<ArrayDeque<Integer>> actions = new ArrayList<>(instructions.size() + 1);
+        for (int i = 0; i <= instructions.size(); i++)
+            actions.add(new ArrayDeque<>());
+
+        for (int i = 0; i < actions.size(); i++) {
+            // Increments don't load their operands
+            if (i < instructions.size() && increments.containsKey(instructions.get(i)))
+                continue;
+            int[] operands = i < instructions.size() ? instructions.get(i).getOperands() : block.getExitOperands();
+
+            // Loads of enclosing instructions precede the loads of the instructions they contain, hence prepend
+            int position = i;
+            for (int j = operands.length - 1; j >= 0; j--) {
+                if (stacked.get(operands[j]))
+                    position = treeStarts[operands[j]];
+                else
+                    actions.get(position).addFirst(slots[operands[j]]);
+            }
+
+            if (i < instructions.size()) {
+                switch (instructions.get(i).getOpcode()) {
+                    case GET_FIELD, PUT_FIELD, CALL -> actions.get(position).addFirst(OBJECT_REFERENCE);
+                }
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Translates a block
+     *
+     * @param block The block to translate
+     * @param next  The block following in layout order, null if this is the last block
+     * @throws Exception on translations failure
+     */
+    private void translate(BasicBlock block, BasicBlock next) throws Exception {
+        CodeBuffer.Label label = labels.get(block);
+        if (label != null) {
+            // Blocks only entered by later branches start with the slots assigned on all paths into the block
+            if (!code.isReachable() && !label.isBranchTarget()) {
+                Frame frame = getInitialFrame().copy();
+                BitSet slots = assignedSlots[block.getId()];
+                for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1))
+                    frame.store(slot);
+                code.setFrame(frame);
+            }
+            code.bind(label);
+        }
+
+        List<Instruction> instructions = block.getInstructions();
+        List<ArrayDeque<Integer>> actions = loadActions(block);
+        for (int i = 0; i < instructions.size(); i++) {
+            load(actions.get(i));
+            translate(instructions.get(i));
+        }
+        load(actions.get(instructions.size()));
+
+        // Write the exit
+        List<BasicBlock> successors = block.getSuccessors();
+        int[] operands = block.getExitOperands();
+        switch (block.getExit()) {
+            case JUMP -> {
+                if (successors.get(0) != next)
+                    code.writeBranch(ByteCode.GOTO, labels.get(successors.get(0)));
+            }
+            case BRANCH -> {
+                // Both operands are consumed by the comparison
+                pop(operands.length);
+
+                BasicBlock.Comparison comparison = block.getComparison();
+                if (successors.get(1) == next) {
+                    code.writeBranch(branchInstruction(comparison, operands.length), labels.get(successors.get(0)));
+                } else if (successors.get(0) == next) {
+                    // Jump into the following block if the condition does not hold
+                    code.writeBranch(branchInstruction(comparison.negate(), operands.length),
+                            labels.get(successors.get(1)));
+                } else {
+                    code.writeBranch(branchInstruction(comparison, operands.length), labels.get(successors.get(0)));
+                    code.writeBranch(ByteCode.GOTO, labels.get(successors.get(1)));
+                }
+            }
+            case RETURN -> {
+                if (operands.length == 0) {
+                    code.write(ByteCode.RETURN);
+                } else {
+                    pop(1);
+                    code.write(ByteCode.IRETURN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes load instructions
+     *
+     * @param actions Slots to load, {@link #OBJECT_REFERENCE} loads the object reference
+     * @throws Exception If the stack size exceeds the maximum stack size
+     */
+    private void load(ArrayDeque<Integer> actions) throws Exception {
+        for (int slot : actions) {
+            if (slot == OBJECT_REFERENCE) {
+                code.write(ByteCode.ALOAD_0);
+                push(Frame.OBJECT);
+            } else {
+                writeLocalVariableAccess(ByteCode.ILOAD, ILOAD, slot);
+                push(Frame.INTEGER);
+            }
+        }
+    }
+
+    /**
+     * Translates an instruction, its operands have been put onto the stack already
+     *
+     * @param instruction The instruction to translate
+     * @throws Exception on translations failure
+     */
+    private void translate(Instruction instruction) throws Exception {
+        // Increments are written in place, their constant is part of the iinc instruction
+        if (incrementConstants.containsKey(instruction))
+            return;
+        Integer delta = increments.get(instruction);
+        if (delta != null) {
+            writeIncrement(slots[instruction.getTarget()], delta);
+            return;
+        }
+
+        int operandCount = instruction.getOperands().length;
+        boolean producesValue = true;
+
+        switch (instruction.getOpcode()) {
+            case CONSTANT -> {
+                loadConstant(instruction.getConstant());
+                push(Frame.INTEGER);
+            }
+            case COPY -> {
+                // The value has been loaded onto the stack already
+            }
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, SHIFT_LEFT, SHIFT_RIGHT, SHIFT_RIGHT_UNSIGNED, EQUAL, LESS,
+                    LESS_EQUAL, GREATER, GREATER_EQUAL -> {
+                // Both operands are consumed by the operation
+                pop(2);
+                switch (instruction.getOpcode()) {
+                    case ADD -> code.write(ByteCode.IADD);
+                    case SUBTRACT -> code.write(ByteCode.ISUB);
+                    case MULTIPLY -> code.write(ByteCode.IMUL);
+                    case DIVIDE -> code.write(ByteCode.IDIV);
+                    case SHIFT_LEFT -> code.write(ByteCode.ISHL);
+                    case SHIFT_RIGHT -> code.write(ByteCode.ISHR);
+                    case SHIFT_RIGHT_UNSIGNED -> code.write(ByteCode.IUSHR);
+                    case EQUAL -> writeComparison(ByteCode.IF_ICMPEQ);
+                    case LESS -> writeComparison(ByteCode.IF_ICMPLT);
+                    case LESS_EQUAL -> writeComparison(ByteCode.IF_ICMPLE);
+                    case GREATER -> writeComparison(ByteCode.IF_ICMPGT);
+                    case GREATER_EQUAL -> writeComparison(ByteCode.IF_ICMPGE);
+                }
+                push(Frame.INTEGER);
+            }
+            case GET_FIELD -> {
+                code.write(ByteCode.GETFIELD);
+                code.writeShort(constantPool.getByReference(instruction.getField()));
+                pop(1);
+                push(Frame.INTEGER);
+            }
+            case PUT_FIELD -> {
+                code.write(ByteCode.PUTFIELD);
+                code.writeShort(constantPool.getByReference(instruction.getField()));
+
+                // remove stored value and aload reference
+                pop(2);
+                producesValue = false;
+            }
+            case CALL -> {
+                writeInvoke(instruction.getProcedure());
+
+                // Remove parameters from the stack (+ 1 aload)
+                pop(operandCount + 1);
+                producesValue = instruction.getProcedure().getReturnType() != Type.VOID;
+                if (producesValue)
+                    push(Frame.INTEGER);
+            }
+        }
+
+        if (!producesValue)
+            return;
+
+        // Keep, discard or store the value
+        int target = instruction.getTarget();
+        if (target == Instruction.NO_REGISTER || (target >= graph.getVariableCount() && uses[target] == 0)) {
+            code.write(ByteCode.POP);
+            pop(1);
+        } else if (!stacked.get(target)) {
+            writeLocalVariableAccess(ByteCode.ISTORE, ISTORE, slots[target]);
+            pop(1);
+            code.getFrame().store(slots[target]);
+        }
+    }
+
+    /**
+     * Determines the branch instruction for a comparison
+     *
+     * @param comparison   The comparison
+     * @param operandCount 2 if two values are compared, 1 if a value is compared against 0
+     * @return The branch instruction taken if the comparison holds
+     */
+    private static ByteCode branchInstruction(BasicBlock.Comparison comparison, int operandCount) {
+        if (operandCount == 1) {
+            return switch (comparison) {
+                case EQUAL -> ByteCode.IFEQ;
+                case NOT_EQUAL -> ByteCode.IFNE;
+                case LESS -> ByteCode.IFLT;
+                case GREATER_EQUAL -> ByteCode.IFGE;
+                case GREATER -> ByteCode.IFGT;
+                case LESS_EQUAL -> ByteCode.IFLE;
+            };
+        }
+        return switch (comparison) {
+            case EQUAL -> ByteCode.IF_ICMPEQ;
+            case NOT_EQUAL -> ByteCode.IF_ICMPNE;
+            case LESS -> ByteCode.IF_ICMPLT;
+            case GREATER_EQUAL -> ByteCode.IF_ICMPGE;
+            case GREATER -> ByteCode.IF_ICMPGT;
+            case LESS_EQUAL -> ByteCode.IF_ICMPLE;
+        };
+    }
+}
@@ -31,22 +31,17 @@ public class FieldPool extends Pool<Info.FieldInfo> {
     public void add(Objekt.Constant constant) {
 
         // Constant name
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(constant.getName()));
-        int nameIndex = constantPool.size();
+        int nameIndex = constantPool.addName(constant);
 
         // Create a descriptor
         String descriptor = "I";
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(descriptor));
-        int descriptorIndex = constantPool.size();
+        int descriptorIndex = constantPool.addUTF8(descriptor);
 
         // Add the constants value to the constantPool
-        constantPool.add(new Info.ConstantPoolInfo.IntegerInfo(constant.getValue()));
-        int constantIndex = constantPool.size();
+        int constantIndex = constantPool.add(constant.getValue());
 
-        // TODO: don't create new entries for each constant
         // "Constant value" entry
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info("ConstantValue"));
-        int constantValueIndex = constantPool.size();
+        int constantValueIndex = constantPool.addUTF8("ConstantValue");
 
         // Array of attributes containing the constants value
         Info.AttributeInfo[] attributes = new Info.AttributeInfo[]{
@@ -65,13 +60,11 @@ public class FieldPool extends Pool<Info.FieldInfo> {
      */
     public void add(Objekt.Parameter parameter, Objekt.Clasz clasz) {
         // Constant name
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(parameter.getName()));
-        int nameIndex = constantPool.size();
+        int nameIndex = constantPool.addName(parameter);
 
         // Create a descriptor
         String descriptor = "I";
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(descriptor));
-        int descriptorIndex = constantPool.size();
+        int descriptorIndex = constantPool.addUTF8(descriptor);
 
         // (public)
         add(new Info.FieldInfo(0x0001, nameIndex, descriptorIndex, new Info.AttributeInfo[]{}));
@@ -83,12 +76,11 @@ public class FieldPool extends Pool<Info.FieldInfo> {
         int classIndex = constantPool.getByReference(clasz);
 
         // Add NameAndType info to the constant pool
-        constantPool.add(new Info.ConstantPoolInfo.NameAndTypeInfo(nameIndex, descriptorIndex));
-        int nameAndTypeIndex = constantPool.size();
+        int nameAndTypeIndex = constantPool.addEntry(new Info.ConstantPoolInfo.NameAndTypeInfo(nameIndex, descriptorIndex));
 
         // add a CONSTANT_Fieldref_info to the constant pool
-        constantPool.add(new Info.ConstantPoolInfo.FieldReferenceInfo(classIndex, nameAndTypeIndex));
-        constantPool.poolReference.put(parameter, constantPool.size());
+        constantPool.poolReference.put(parameter,
+                constantPool.addEntry(new Info.ConstantPoolInfo.FieldReferenceInfo(classIndex, nameAndTypeIndex)));
     }
 
 }
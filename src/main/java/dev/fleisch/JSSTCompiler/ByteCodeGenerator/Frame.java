@@ -0,0 +1,162 @@
+package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Verification types of the local variables and the operand stack at a position within a method.
+ * <p>
+ * JavaSST only knows int values and the object reference. Slot 0 always holds the object reference, all other slots
+ * hold ints once they have been initialized.
+ * <a href="https://docs.oracle.com/javase/specs/jvms/se17/html/jvms-4.html#jvms-4.10.1.2">Reference (Verification Type System)</a>
+ *
+ * @author TillFleisch
+ */
+class Frame {
+
+    /**
+     * Verification type of unusable (uninitialized) local variables
+     */
+    static final byte TOP = 0;
+
+    /**
+     * Verification type of int values
+     */
+    static final byte INTEGER = 1;
+
+    /**
+     * Verification type of object references, JavaSST only references the object itself
+     */
+    static final byte OBJECT = 7;
+
+    /**
+     * Slots holding initialized int values
+     */
+    private final BitSet locals;
+
+    /**
+     * Types on the operand stack, bottom first
+     */
+    private byte[] stack;
+
+    /**
+     * Number of values on the operand stack
+     */
+    private int stackSize;
+
+    /**
+     * Creates the frame at the beginning of a method, only the parameters are initialized
+     *
+     * @param parameterCount Number of parameters of the method
+     */
+    Frame(int parameterCount) {
+        locals = new BitSet();
+        locals.set(1, parameterCount + 1);
+        stack = new byte[8];
+        stackSize = 0;
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param frame The frame to copy
+     */
+    private Frame(Frame frame) {
+        locals = (BitSet) frame.locals.clone();
+        stack = frame.stack.clone();
+        stackSize = frame.stackSize;
+    }
+
+    /**
+     * @return A copy of this frame
+     */
+    Frame copy() {
+        return new Frame(this);
+    }
+
+    /**
+     * Pushes a value onto the stack
+     *
+     * @param type The value's verification type
+     */
+    void push(byte type) {
+        if (stackSize == stack.length)
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = type;
+    }
+
+    /**
+     * Removes values from the stack
+     *
+     * @param count Number of values to remove
+     * @throws Exception If the stack contains less values
+     */
+    void pop(int count) throws Exception {
+        if (count > stackSize)
+            throw new Exception("Stack underflow, invalid code generation!");
+        stackSize -= count;
+    }
+
+    /**
+     * @return Number of values on the stack
+     */
+    int getStackSize() {
+        return stackSize;
+    }
+
+    /**
+     * Marks a local variable as initialized
+     *
+     * @param slot The local variable's slot
+     */
+    void store(int slot) {
+        locals.set(slot);
+    }
+
+    /**
+     * Merges another frame reaching the same position into this frame.
+     * Only variables initialized in both frames remain initialized.
+     *
+     * @param frame The frame to merge
+     * @return This frame
+     * @throws Exception If the stacks of the frames differ
+     */
+    Frame merge(Frame frame) throws Exception {
+        if (!Arrays.equals(stackTypes(), frame.stackTypes()))
+            throw new Exception("Inconsistent stack at branch target, invalid code generation!");
+        locals.and(frame.locals);
+        return this;
+    }
+
+    /**
+     * Determines if this frame may flow into a position described by another frame
+     *
+     * @param frame The frame at the target position
+     * @return True if the stacks match and all variables initialized in the target are initialized in this frame
+     */
+    boolean isAssignableTo(Frame frame) {
+        BitSet missing = (BitSet) frame.locals.clone();
+        missing.andNot(locals);
+        return missing.isEmpty() && Arrays.equals(stackTypes(), frame.stackTypes());
+    }
+
+    /**
+     * Lists the types of the local variables up to the last initialized one
+     *
+     * @return Verification types of the local variables
+     */
+    byte[] localTypes() {
+        byte[] types = new byte[Math.max(locals.length(), 1)];
+        types[0] = OBJECT;
+        for (int slot = 1; slot < types.length; slot++)
+            types[slot] = locals.get(slot) ? INTEGER : TOP;
+        return types;
+    }
+
+    /**
+     * @return Verification types of the values on the stack, bottom first
+     */
+    byte[] stackTypes() {
+        return Arrays.copyOf(stack, stackSize);
+    }
+}
@@ -2,6 +2,7 @@ package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Class containing Information classes used to translate into ByteCode
@@ -205,6 +206,11 @@ public abstract class Info {
              */
             byte[] code;
 
+            /**
+             * Attributes of the code (i.e. StackMapTable)
+             */
+            AttributeInfo[] attributes;
+
 
             /**
              * Constructor for basic Code attributes
@@ -215,10 +221,24 @@ public abstract class Info {
              * @param code      ByteCode representing the function
              */
             CodeAttribute(int nameIndex, int maxStack, int maxLocals, byte[] code) {
+                this(nameIndex, maxStack, maxLocals, code, new AttributeInfo[0]);
+            }
+
+            /**
+             * Constructor for Code attributes with attributes
+             *
+             * @param nameIndex  Index to UTF8 "Code" entry within the constant Pool
+             * @param maxStack   Maximum size of the stack during execution
+             * @param maxLocals  Maximum number of variables used during execution
+             * @param code       ByteCode representing the function
+             * @param attributes Attributes of the code
+             */
+            CodeAttribute(int nameIndex, int maxStack, int maxLocals, byte[] code, AttributeInfo[] attributes) {
                 this.nameIndex = nameIndex;
                 this.maxStack = maxStack;
                 this.maxLocals = maxLocals;
                 this.code = code;
+                this.attributes = attributes;
             }
 
             @Override
@@ -253,11 +273,14 @@ public abstract class Info {
                 contentStream.write(0x00);
                 contentStream.write(0x00);
 
-                // Write attribute count (this simple compiler does not support attributes)
-                contentStream.write(0x00);
-                contentStream.write(0x00);
+                // Write attribute count
+                contentStream.write(attributes.length >> 8);
+                contentStream.write(attributes.length);
 
-                // Don't write attributes since we don't have any
+                // Write attributes
+                for (AttributeInfo attributeInfo : attributes) {
+                    contentStream.write(attributeInfo.toByteCode());
+                }
 
                 // Write attributeLength
                 outputStream.write(contentStream.size() >> 24);
@@ -272,6 +295,160 @@ public abstract class Info {
                 return outputStream.toByteArray();
             }
         }
+
+        /**
+         * StackMapTable attribute used in Code attributes, describes the frames at branch targets for verification
+         * <a href="https://docs.oracle.com/javase/specs/jvms/se17/html/jvms-4.html#jvms-4.7.4">Reference (StackMapTable_attribute)</a>
+         *
+         * @author TillFleisch
+         */
+        static class StackMapTableAttribute extends AttributeInfo {
+
+            /**
+             * Constant pool index containing UTF8 "StackMapTable"
+             */
+            int nameIndex;
+
+            /**
+             * Constant pool index of the class info of the class containing the method
+             */
+            int classIndex;
+
+            /**
+             * Frame at the beginning of the method, not part of the table
+             */
+            Frame initialFrame;
+
+            /**
+             * Positions of the frames within the code, ascending
+             */
+            int[] framePositions;
+
+            /**
+             * Frames at the given positions
+             */
+            Frame[] frames;
+
+            /**
+             * Constructor for StackMapTable attributes
+             *
+             * @param nameIndex      Index to UTF8 "StackMapTable" entry within the constant Pool
+             * @param classIndex     Index of the class info used for object references
+             * @param initialFrame   Frame at the beginning of the method
+             * @param framePositions Positions of the frames within the code, ascending
+             * @param frames         Frames at the given positions
+             */
+            StackMapTableAttribute(int nameIndex, int classIndex, Frame initialFrame, int[] framePositions, Frame[] frames) {
+                this.nameIndex = nameIndex;
+                this.classIndex = classIndex;
+                this.initialFrame = initialFrame;
+                this.framePositions = framePositions;
+                this.frames = frames;
+            }
+
+            @Override
+            public byte[] toByteCode() throws IOException {
+                ByteArrayOutputStream contentStream = new ByteArrayOutputStream();
+
+                // Write number of entries
+                contentStream.write(frames.length >> 8);
+                contentStream.write(frames.length);
+
+                // Frames are encoded relative to the previous frame
+                byte[] previousLocals = initialFrame.localTypes();
+                int previousPosition = -1;
+
+                for (int i = 0; i < frames.length; i++) {
+                    byte[] locals = frames[i].localTypes();
+                    byte[] stack = frames[i].stackTypes();
+                    int offsetDelta = framePositions[i] - previousPosition - 1;
+                    int localsDelta = locals.length - previousLocals.length;
+
+                    boolean sameLocals = Arrays.equals(locals, previousLocals);
+                    boolean prefix = Arrays.equals(locals, 0, Math.min(locals.length, previousLocals.length),
+                            previousLocals, 0, Math.min(locals.length, previousLocals.length));
+
+                    if (sameLocals && stack.length == 0) {
+                        if (offsetDelta <= 63) {
+                            // same_frame
+                            contentStream.write(offsetDelta);
+                        } else {
+                            // same_frame_extended
+                            contentStream.write(251);
+                            contentStream.write(offsetDelta >> 8);
+                            contentStream.write(offsetDelta);
+                        }
+                    } else if (sameLocals && stack.length == 1) {
+                        if (offsetDelta <= 63) {
+                            // same_locals_1_stack_item_frame
+                            contentStream.write(64 + offsetDelta);
+                        } else {
+                            // same_locals_1_stack_item_frame_extended
+                            contentStream.write(247);
+                            contentStream.write(offsetDelta >> 8);
+                            contentStream.write(offsetDelta);
+                        }
+                        writeType(contentStream, stack[0]);
+                    } else if (prefix && stack.length == 0 && localsDelta >= -3 && localsDelta <= 3) {
+                        // chop_frame (removed locals) or append_frame (additional locals)
+                        contentStream.write(251 + localsDelta);
+                        contentStream.write(offsetDelta >> 8);
+                        contentStream.write(offsetDelta);
+                        for (int slot = previousLocals.length; slot < locals.length; slot++)
+                            writeType(contentStream, locals[slot]);
+                    } else {
+                        // full_frame
+                        contentStream.write(255);
+                        contentStream.write(offsetDelta >> 8);
+                        contentStream.write(offsetDelta);
+                        contentStream.write(locals.length >> 8);
+                        contentStream.write(locals.length);
+                        for (byte type : locals)
+                            writeType(contentStream, type);
+                        contentStream.write(stack.length >> 8);
+                        contentStream.write(stack.length);
+                        for (byte type : stack)
+                            writeType(contentStream, type);
+                    }
+
+                    previousLocals = locals;
+                    previousPosition = framePositions[i];
+                }
+
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+                // Write nameIndex
+                outputStream.write(nameIndex >> 8);
+                outputStream.write(nameIndex);
+
+                // Write attributeLength
+                outputStream.write(contentStream.size() >> 24);
+                outputStream.write(contentStream.size() >> 16);
+                outputStream.write(contentStream.size() >> 8);
+                outputStream.write(contentStream.size());
+
+                // Write the entries
+                outputStream.write(contentStream.toByteArray());
+
+                return outputStream.toByteArray();
+            }
+
+            /**
+             * Writes a verification_type_info
+             *
+             * @param outputStream Stream to write to
+             * @param type         The verification type
+             */
+            private void writeType(ByteArrayOutputStream outputStream, byte type) {
+                outputStream.write(type);
+
+                // Object references refer to the class info
+                if (type == Frame.OBJECT) {
+                    outputStream.write(classIndex >> 8);
+                    outputStream.write(classIndex);
+                }
+            }
+        }
     }
 
     /**
@@ -326,6 +503,16 @@ public abstract class Info {
             public byte[] toByteCode() {
                 return new byte[]{tag, (byte) (nameIndex >> 8), (byte) nameIndex};
             }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof ClaszInfo && ((ClaszInfo) obj).nameIndex == nameIndex;
+            }
+
+            @Override
+            public int hashCode() {
+                return tag * 31 + nameIndex;
+            }
         }
 
         /***
@@ -394,6 +581,16 @@ public abstract class Info {
                 System.arraycopy(bytes, 0, output, 3, bytes.length);
                 return output;
             }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof UTF8Info && ((UTF8Info) obj).string.equals(string);
+            }
+
+            @Override
+            public int hashCode() {
+                return tag * 31 + string.hashCode();
+            }
         }
 
         /**
@@ -425,6 +622,16 @@ public abstract class Info {
                 return new byte[]{tag, (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
             }
 
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof IntegerInfo && ((IntegerInfo) obj).value == value;
+            }
+
+            @Override
+            public int hashCode() {
+                return tag * 31 + value;
+            }
+
         }
 
         /**
@@ -473,6 +680,17 @@ public abstract class Info {
 
                 return outputStream.toByteArray();
             }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof FieldReferenceInfo && ((FieldReferenceInfo) obj).classIndex == classIndex &&
+                        ((FieldReferenceInfo) obj).nameAndTypeIndex == nameAndTypeIndex;
+            }
+
+            @Override
+            public int hashCode() {
+                return (tag * 31 + classIndex) * 31 + nameAndTypeIndex;
+            }
         }
 
         /**
@@ -521,6 +739,17 @@ public abstract class Info {
 
                 return outputStream.toByteArray();
             }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof MethodReferenceInfo && ((MethodReferenceInfo) obj).classIndex == classIndex &&
+                        ((MethodReferenceInfo) obj).nameAndTypeIndex == nameAndTypeIndex;
+            }
+
+            @Override
+            public int hashCode() {
+                return (tag * 31 + classIndex) * 31 + nameAndTypeIndex;
+            }
         }
 
         /**
@@ -568,6 +797,17 @@ public abstract class Info {
 
                 return outputStream.toByteArray();
             }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof NameAndTypeInfo && ((NameAndTypeInfo) obj).nameIndex == nameIndex &&
+                        ((NameAndTypeInfo) obj).descriptorIndex == descriptorIndex;
+            }
+
+            @Override
+            public int hashCode() {
+                return (tag * 31 + nameIndex) * 31 + descriptorIndex;
+            }
         }
     }
 
@@ -32,28 +32,21 @@ public class MethodPool extends Pool<Info.MethodInfo> {
     }
 
     /**
-     * Adds a method to the method pool
+     * Adds a method whose code has already been translated to the method pool
      *
-     * @param procedure Method to add
+     * @param procedure  Method to add
+     * @param translator Translator holding the method's bytecode
+     * @param clasz      Class in which the procedure is contained
      */
-    public void add(Objekt.Procedure procedure) throws Exception {
+    public void add(Objekt.Procedure procedure, Translator translator, Objekt.Clasz clasz) {
 
         // Constant name
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(procedure.getName()));
-        int nameIndex = constantPool.size();
+        int nameIndex = constantPool.addName(procedure);
 
         // Create a descriptor
-        StringBuilder descriptorBuilder = new StringBuilder();
-        descriptorBuilder.append("(");
-        descriptorBuilder.append("I".repeat(procedure.getParameterList().size()));
-        descriptorBuilder.append(")");
-        if (procedure.getReturnType() == Type.VOID) descriptorBuilder.append("V");
-        if (procedure.getReturnType() == Type.INT) descriptorBuilder.append("I");
+        int descriptorIndex = constantPool.addUTF8(ConstantPool.descriptor(procedure));
 
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info(descriptorBuilder.toString()));
-        int descriptorIndex = constantPool.size();
-
-        Info.AttributeInfo.CodeAttribute codeAttribute = generateCodeAttribute(procedure);
+        Info.AttributeInfo.CodeAttribute codeAttribute = generateCodeAttribute(translator, clasz);
 
         // Array of attributes containing the constants value
         Info.AttributeInfo[] attributes = new Info.AttributeInfo[]{codeAttribute};
@@ -65,35 +58,26 @@ public class MethodPool extends Pool<Info.MethodInfo> {
     /**
      * Generates the Code attribute of a Method Info including the actual ByteCode used within the method
      *
-     * @param procedure Method on which the CodeAttribute is based
+     * @param translator Translator holding the method's bytecode (including the implicit return)
+     * @param clasz      Class in which the procedure is contained
      * @return Code attribute containing Bytecode for the given method.
      */
-    Info.AttributeInfo.CodeAttribute generateCodeAttribute(Objekt.Procedure procedure) throws Exception {
+    Info.AttributeInfo.CodeAttribute generateCodeAttribute(Translator translator, Objekt.Clasz clasz) {
 
         // Constant name
-        constantPool.add(new Info.ConstantPoolInfo.UTF8Info("Code"));
-        int nameIndex = constantPool.size();
-
-        // Translate procedure ast/symbol-table into ByteCode
-
-        ByteArrayOutputStream codeStream = new ByteArrayOutputStream();
-
-        // Create a Procedure Translator
-        ProcedureTranslator translator = new ProcedureTranslator(constantPool, procedure);
-
-        // Write procedure byte code
-        codeStream.write(translator.getBytecode());
-
-        if (procedure.getReturnType() == Type.VOID) {
-            // For void methods add a return just in case (implicit return)
-            codeStream.write(ByteCode.RETURN.getCode());
-        } else {
-            // otherwise add a mock return (last statement must be return) even if it is not reachable
-            codeStream.write(ByteCode.ICONST_0.getCode());
-            codeStream.write(ByteCode.IRETURN.getCode());
+        int nameIndex = constantPool.addUTF8("Code");
+
+        // Methods with branches require a StackMapTable for verification
+        Info.AttributeInfo[] attributes = new Info.AttributeInfo[0];
+        Frame[] frames = translator.getFrames();
+        if (frames.length > 0) {
+            attributes = new Info.AttributeInfo[]{new Info.AttributeInfo.StackMapTableAttribute(
+                    constantPool.addUTF8("StackMapTable"), constantPool.getByReference(clasz),
+                    translator.getInitialFrame(), translator.getFramePositions(), frames)};
         }
 
-        return new Info.AttributeInfo.CodeAttribute(nameIndex, translator.getMaxStack(), translator.getMaxLocals(), codeStream.toByteArray());
+        return new Info.AttributeInfo.CodeAttribute(nameIndex, translator.getMaxStack(), translator.getMaxLocals(),
+                translator.getBytecode(), attributes);
     }
 
 }
@@ -2,46 +2,47 @@ package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
 
 import dev.fleisch.JSSTCompiler.*;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.ListIterator;
 
 /**
  * Class implementing procedure translation into bytecode
+ * <p>
+ * The translator visits the procedure's AST, each visit writes the bytecode of the visited node.
+ * Visits don't recurse into their children, instead they schedule the translation of their children and the code
+ * following them on an explicit stack of steps. Hence the nesting depth of the AST is not limited by the thread's
+ * stack size.
  *
  * @author TillFleisch
  */
-public class ProcedureTranslator {
+public class ProcedureTranslator extends Translator implements Node.Visitor<Void, Exception> {
 
     /**
-     * List of local variables used within this method
+     * Slots of the local variables used within this method (slot 0 holds the object reference).
+     * Variables are identified by their symbol table entry.
      */
-    private final LinkedList<Objekt.Parameter> localVariableIndices = new LinkedList<>();
+    private final IdentityHashMap<Objekt.Parameter, Integer> localVariableSlots = new IdentityHashMap<>();
 
     /**
-     * Class-constant pool
+     * Pending translation steps, the step on top of the stack is executed next
      */
-    private final ConstantPool constantPool;
+    private final ArrayDeque<Step> steps = new ArrayDeque<>();
 
     /**
-     * Bytecode generated by this Translator
+     * Visitor determining if a statement leaves a value which is not used: calls of procedures returning a value
      */
-    private final byte[] bytecode;
-
-    /**
-     * Maximum nr of local variables used by this method
-     */
-    private final int maxLocals;
-
-    /**
-     * Maximum stack size during execution of this procedure
-     */
-    private int maxStack = 0;
+    private static final Node.Visitor<Boolean, RuntimeException> UNUSED_RESULT = new Node.DefaultVisitor<>() {
+        @Override
+        protected Boolean visitDefault(Node node) {
+            return false;
+        }
 
-    /**
-     * Current stack size used during bytecode generation.
-     */
-    private int stackSize = 0;
+        @Override
+        public Boolean visit(Node.ProcedureCallNode node) {
+            return node.getSymbolTableEntry().getReturnType() != Type.VOID;
+        }
+    };
 
     /**
      * Creates a Procedure Translator and translates the procedures AST into equiavalent bytecode
@@ -51,325 +52,290 @@ public class ProcedureTranslator {
      * @throws Exception If translation fails
      */
     public ProcedureTranslator(ConstantPool constantPool, Objekt.Procedure procedure) throws Exception {
-        this.constantPool = constantPool;
+        super(constantPool, procedure);
 
-        // Find all variables within the symbol table
+        // Assign slots to all variables within the symbol table, parameters come first
+        int slot = 1;
         for (Objekt objekt : procedure.getSymbolTable()) {
             if (objekt instanceof Objekt.Parameter) {
-                localVariableIndices.add((Objekt.Parameter) objekt);
+                localVariableSlots.put((Objekt.Parameter) objekt, slot++);
             }
         }
 
         // Determine how many local variables exist (+1 object reference)
-        maxLocals = procedure.getParameterList().size() + localVariableIndices.size() + 1;
+        maxLocals = slot;
 
-        // Translate procedure AST into bytecode recursively
-        bytecode = toByteCode(procedure.getAbstractSyntaxTree());
+        // Translate procedure AST into bytecode
+        toByteCode(procedure.getAbstractSyntaxTree());
 
-        // Assert that the stack is empty
-        if (stackSize != 0)
-            throw new Exception("Procedure leaves without emptying the stack!");
+        // Add an implicit return if the end of the procedure is reachable
+        if (code.isReachable()) {
+            if (procedure.getReturnType() == Type.VOID) {
+                code.write(ByteCode.RETURN);
+            } else {
+                // Mock return, the last statement of int procedures must be a return statement
+                code.write(ByteCode.ICONST_0);
+                push(Frame.INTEGER);
+                pop(1);
+                code.write(ByteCode.IRETURN);
+            }
+        }
+        finish();
     }
 
     /**
-     * Increments the stacks size counter by i and updates maxStack accordingly
+     * Translates an AST into ByteCode by executing steps until none are pending
      *
-     * @param i Amount to increment by
-     * @throws Exception If the stack size exceeds the maximum stack size
+     * @param node AST to translate
+     * @throws Exception on translations failure
      */
-    private void incrementStackSize(int i) throws Exception {
-        stackSize += i;
-        if (stackSize > maxStack)
-            maxStack = stackSize;
-        if (stackSize > 0xFFFF)
-            throw new Exception("Maximum Stack size exceeded!");
+    private void toByteCode(Node node) throws Exception {
+        steps.push(translation(node));
+        while (!steps.isEmpty())
+            steps.pop().run();
     }
 
     /**
-     * Decrements the stack size
+     * Creates a step translating a node
      *
-     * @param i Amount to decrement by
-     * @throws Exception If the stack size reaches negative values
+     * @param node Node to translate
+     * @return Step visiting the node
      */
-    private void decrementStackSize(int i) throws Exception {
-        incrementStackSize(-i);
-        if (stackSize < 0)
-            throw new Exception("Stack underflow, invalid code generation!");
+    private Step translation(Node node) {
+        return () -> node.accept(this);
     }
 
     /**
-     * The bytecode generated by this Procedure Translator
+     * Schedules steps, such that they are executed in the given order before any previously pending step
      *
-     * @return Bytecode representing the procedures content
+     * @param followingSteps Steps to execute next
      */
-    public byte[] getBytecode() {
-        return bytecode;
+    private void schedule(Step... followingSteps) {
+        for (int i = followingSteps.length - 1; i >= 0; i--)
+            steps.push(followingSteps[i]);
     }
 
     /**
-     * Highest number of local variables during execution
+     * Translates a statement sequence into ByteCode
      *
-     * @return max. number of variables used during execution
+     * @param statementSequenceNode statementSequenceNode to translate
+     * @throws Exception on translations failure
      */
-    public int getMaxLocals() {
-        return maxLocals;
-    }
+    @Override
+    public Void visit(Node.StatementSequenceNode statementSequenceNode) throws Exception {
+
+        // go through all statements and schedule their translation, last statement first
+        ListIterator<Node> iterator = statementSequenceNode.getStatements().listIterator(
+                statementSequenceNode.getStatements().size());
+        while (iterator.hasPrevious()) {
+            Node statement = iterator.previous();
+
+            // Method returns value but value is not used
+            if (statement.accept(UNUSED_RESULT)) {
+                steps.push(() -> {
+                    code.write(ByteCode.POP);
+                    pop(1);
+                });
+            }
 
-    /**
-     * Reruns the largest stack size used during execution
-     *
-     * @return Largest stack size used during execution
-     */
-    public int getMaxStack() {
-        return maxStack;
+            // Translate statement
+            steps.push(translation(statement));
+        }
+        return null;
     }
 
     /**
-     * Translates an expression given by an AST into ByteCode
+     * Translates a unaryOperationNode (return statement) into ByteCode
      *
-     * @param node Expression to translate
-     * @return Equivalent ByteCode
+     * @param unaryOperationNode unaryOperationNode to translate
+     * @throws Exception on translations failure
      */
-    private byte[] toByteCode(Node node) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Translate sequences
-        if (node instanceof Node.StatementSequenceNode) {
-            Node.StatementSequenceNode statementSequenceNode = (Node.StatementSequenceNode) node;
-            ByteArrayOutputStream sequenceStream = new ByteArrayOutputStream();
-
-            // go through all statements and translate them
-            for (Node statement : statementSequenceNode.getStatements()) {
-                // Translate statement
-                sequenceStream.write(toByteCode(statement));
-
-                if(statement instanceof Node.ProcedureCallNode){
-                    Objekt.Procedure procedure = (Objekt.Procedure) ((Node.ProcedureCallNode)statement).getSymbolTableEntry();
-                    // Method returns value but value is not used
-                    if(procedure.getReturnType()!=Type.VOID){
-                        decrementStackSize(1);
-                    }
-                }
-            }
-
-            // Write statements to output
-            outputStream.write(sequenceStream.toByteArray());
-
-            return outputStream.toByteArray();
-        }
-
-        // Translate unary operations
-        if (node instanceof Node.UnaryOperationNode) {
-            Node.UnaryOperationNode unaryOperationNode = (Node.UnaryOperationNode) node;
-
-            // Translate return statements
-            if (unaryOperationNode.getOperation() == Operation.Unary.RETURN) {
-                if (unaryOperationNode.getLeft() == null) {
-                    // Return void
-                    outputStream.write(ByteCode.RETURN.getCode());
-                } else {
-                    // Return parameter int (load int recursively)
-                    outputStream.write(toByteCode(unaryOperationNode.getLeft()));
+    @Override
+    public Void visit(Node.UnaryOperationNode unaryOperationNode) throws Exception {
+
+        // Translate return statements
+        if (unaryOperationNode.getOperation() == Operation.Unary.RETURN) {
+            if (unaryOperationNode.getLeft() == null) {
+                // Return void
+                code.write(ByteCode.RETURN);
+            } else {
+                // Return parameter int (load int first)
+                schedule(translation(unaryOperationNode.getLeft()), () -> {
                     // Return value
-                    outputStream.write(ByteCode.IRETURN.getCode());
-                    decrementStackSize(1);
-                }
+                    pop(1);
+                    code.write(ByteCode.IRETURN);
+                });
             }
-            return outputStream.toByteArray();
-        }
-
-        // Translate constant values
-        if (node instanceof Node.ConstantNode) {
-            Node.ConstantNode constantNode = (Node.ConstantNode) node;
-
-            incrementStackSize(1);
-            return loadConstant(constantNode.getValue());
-        }
-
-        // Translate identifiers (load operations)
-        if (node instanceof Node.IdentifierNode) {
-            return toByteCode((Node.IdentifierNode) node);
-        }
-
-        // Translate binary operation Nodes
-        if (node instanceof Node.BinaryOperationNode) {
-            return toByteCode((Node.BinaryOperationNode) node);
-        }
-
-        // Translate if/else statements
-        if (node instanceof Node.IfNode) {
-            return toByteCode((Node.IfNode) node);
-        }
-
-        // Translate while node
-        if (node instanceof Node.WhileNode) {
-            return toByteCode((Node.WhileNode) node);
-        }
-
-        // Translate procedure calls
-        if (node instanceof Node.ProcedureCallNode) {
-            return toByteCode((Node.ProcedureCallNode) node);
         }
+        return null;
+    }
 
-        throw new UnsupportedOperationException(String.valueOf(node.getClass()));
+    /**
+     * Translates a constantNode into ByteCode
+     *
+     * @param constantNode constantNode to translate
+     * @throws Exception on translations failure
+     */
+    @Override
+    public Void visit(Node.ConstantNode constantNode) throws Exception {
+        loadConstant(constantNode.getValue());
+        push(Frame.INTEGER);
+        return null;
     }
 
     /**
      * Translates a procedureCallNode into ByteCode
      *
      * @param procedureCallNode ProcedureCallNode to translate
-     * @return ByteCode representing the procedureCall node and subsequent nodes
-     * @throws IOException on translations failure
+     * @throws Exception on translations failure
      */
-    private byte[] toByteCode(Node.ProcedureCallNode procedureCallNode) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
+    @Override
+    public Void visit(Node.ProcedureCallNode procedureCallNode) throws Exception {
         Node.StatementSequenceNode parameters = (Node.StatementSequenceNode) procedureCallNode.getLeft();
 
         // Load object reference
-        outputStream.write(ByteCode.ALOAD_0.getCode());
-        incrementStackSize(1);
+        code.write(ByteCode.ALOAD_0);
+        push(Frame.OBJECT);
 
-        // Translate all parameters and leave them on the stack
-        for (Node statement : parameters.getStatements()) {
-            // Implicitly also adds parameters to the stack counter
-            outputStream.write(toByteCode(statement));
-        }
+        Objekt.Procedure symbolTableEntry = procedureCallNode.getSymbolTableEntry();
 
-        Objekt.Procedure symbolTableEntry = (Objekt.Procedure) procedureCallNode.getSymbolTableEntry();
+        // The call is written once all parameters have been translated
+        steps.push(() -> {
+            // Write invoke
+            writeInvoke(symbolTableEntry);
 
-        // Write invoke (find index in constant Pool)
-        // Constructor requires special call
-        outputStream.write(procedureCallNode.getSymbolTableEntry().getName().contains("init")
-                ? ByteCode.INVOKESPECIAL.getCode()
-                : ByteCode.INVOKEVIRTUAL.getCode());
-        short methodIndex = (short) constantPool.getByReference(symbolTableEntry);
-        outputStream.write(methodIndex >> 8);
-        outputStream.write(methodIndex);
+            // Remove parameters from the stack (+ 1 aload)
+            pop(parameters.getStatements().size() + 1);
 
-        // Remove nr. of parameters from the stack counter (+ 1 aload)
-        decrementStackSize(parameters.getStatements().size() + 1);
+            // Add return value to stack if it does return a value
+            if (symbolTableEntry.getReturnType() != Type.VOID)
+                push(Frame.INTEGER);
+        });
 
-        // Add return value to stack if it does return a value
-        incrementStackSize(symbolTableEntry.getReturnType() == Type.VOID ? 0 : 1);
-
-        return outputStream.toByteArray();
+        // Translate all parameters and leave them on the stack, last parameter first
+        ListIterator<Node> iterator = parameters.getStatements().listIterator(parameters.getStatements().size());
+        while (iterator.hasPrevious()) {
+            // Implicitly also adds parameters to the stack counter
+            steps.push(translation(iterator.previous()));
+        }
+        return null;
     }
 
     /**
      * Translates a whileNode into ByteCode
      * <p>
+     * Loops are rotated: the condition is placed below the loop body and entered once via goto.
+     * Each iteration then only executes a single conditional backward branch.
      *
      * @param whileNode whileNode to translate
-     * @return ByteCode representing the procedureCall node and subsequent nodes
-     * @throws IOException on translations failure
-     * @implNote for simplicity:<br>
-     * Instead of resolving the condition we rely on binary-operation translation to take care of conditions (puts 1/0 on stack).<br>
-     * We check if the stack holds value 1 and jump into the correct branch<br>
-     * This approach also allows us to check the truthiness of a variable/value but adds unnecessary complexity for simple while conditions.<br>
-     * </p>
+     * @throws Exception on translations failure
      */
-    private byte[] toByteCode(Node.WhileNode whileNode) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Determine the conditioned branch to get it's size
-        byte[] whileBranch = toByteCode(whileNode.getLeft());
-
-        // Add the constant 0 onto the stack (value we compare against, inverted -> if true we go out of the branch)
-        outputStream.write(ByteCode.ICONST_0.getCode());
-        incrementStackSize(1);
-
-        // resolve the condition (this should put a value onto the stack)
-        byte[] conditionCode = toByteCode(whileNode.getCondition());
-        outputStream.write(conditionCode);
+    @Override
+    public Void visit(Node.WhileNode whileNode) throws Exception {
+        CodeBuffer.Label bodyLabel = new CodeBuffer.Label();
+        CodeBuffer.Label conditionLabel = new CodeBuffer.Label();
 
-        // compare value
-        outputStream.write(ByteCode.IF_ICMPEQ.getCode());
-
-        // Decrement stack by 2, both arguments used
-        decrementStackSize(2);
-
-        // Write jump offset (skip else branch)
-        short elseBranchSize = (short) (whileBranch.length + 3 + 3); // + ifcmp + goto
-        outputStream.write(elseBranchSize >> 8);
-        outputStream.write(elseBranchSize);
+        // Enter the loop at the condition
+        code.writeBranch(ByteCode.GOTO, conditionLabel);
 
         // Write the conditioned statements
-        outputStream.write(whileBranch);
-
-        // Write goto back to the if Statement (negative offset)
-        outputStream.write(ByteCode.GOTO.getCode());
-        short offset = (short) -(whileBranch.length + 3 + 1 + conditionCode.length); // ifcmp (+ 1 from incomplete goto)
-        outputStream.write(offset >> 8);
-        outputStream.write(offset);
-
-        return outputStream.toByteArray();
+        code.bind(bodyLabel);
+        schedule(translation(whileNode.getLeft()), () -> {
+            // Jump back into the loop body while the condition is true
+            code.bind(conditionLabel);
+            branch(whileNode.getCondition(), true, bodyLabel);
+        });
+        return null;
     }
 
     /**
      * Translates a ifNode into ByteCode
-     * <p>
      *
      * @param ifNode ifNode to translate
-     * @return ByteCode representing the procedureCall node and subsequent nodes
-     * @throws IOException on translations failure
-     * @implNote for simplicity:<br>
-     * Instead of resolving the condition we rely on binary-operation translation to take care of conditions (puts 1/0 on stack).<br>
-     * We check if the stack holds value 1 and jump into the correct branch<br>
-     * This approach also allows us to check the truthiness of a variable/value but adds unnecessary complexity for simple if/else conditions.<br>
-     * </p>
+     * @throws Exception on translations failure
      */
-    private byte[] toByteCode(Node.IfNode ifNode) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Determine branches, such that sizes are known
-        byte[] ifBranch = toByteCode(ifNode.getLeft());
-        byte[] elseBranch = toByteCode(ifNode.getRight());
-
-        // Add the constant 0 onto the stack (value we compare against)
-        outputStream.write(ByteCode.ICONST_0.getCode());
-        incrementStackSize(1);
-
-        // resolve the condition (this should put a value onto the stack)
-        outputStream.write(toByteCode(ifNode.getCondition()));
-
-        // compare value
-        outputStream.write(ByteCode.IF_ICMPNE.getCode());
-
-        // Decrement stack by 2, both arguments used
-        decrementStackSize(2);
-
-        // Write jump offset (skip else branch)
-        short elseBranchSize = (short) (elseBranch.length + 3 + 3); // + ifcmp + goto
-        outputStream.write(elseBranchSize >> 8);
-        outputStream.write(elseBranchSize);
-
-        // Write else branch
-        outputStream.write(elseBranch);
+    @Override
+    public Void visit(Node.IfNode ifNode) throws Exception {
+        CodeBuffer.Label elseLabel = new CodeBuffer.Label();
+        CodeBuffer.Label endLabel = new CodeBuffer.Label();
+
+        Node.StatementSequenceNode elseBranch = (Node.StatementSequenceNode) ifNode.getRight();
+
+        // Jump into the else branch if the condition is false
+        schedule(() -> branch(ifNode.getCondition(), false, elseLabel),
+                // Write if branch
+                translation(ifNode.getLeft()),
+                () -> {
+                    if (elseBranch.getStatements().isEmpty()) {
+                        code.bind(elseLabel);
+                        return;
+                    }
 
-        // Jump over if branch
-        outputStream.write(ByteCode.GOTO.getCode());
-        short ifBranchSize = (short) (ifBranch.length + 3); // goto
-        outputStream.write(ifBranchSize >> 8);
-        outputStream.write(ifBranchSize);
+                    // Jump over else branch, unless the end of the if branch is unreachable (it returned)
+                    if (code.isReachable())
+                        code.writeBranch(ByteCode.GOTO, endLabel);
+
+                    // Write else branch
+                    code.bind(elseLabel);
+                    schedule(translation(elseBranch), () -> {
+                        // The end is unreachable if both branches returned
+                        if (code.isReachable() || endLabel.isBranchTarget())
+                            code.bind(endLabel);
+                    });
+                });
+        return null;
+    }
 
-        // Write if branch
-        outputStream.write(ifBranch);
+    /**
+     * Schedules the translation of a condition which jumps to a label if the condition evaluates to the given value,
+     * execution continues otherwise.
+     * Comparisons are translated into a single (possibly inverted) ifcmp instruction, other expressions are compared
+     * against 0.
+     *
+     * @param condition Condition to translate
+     * @param jumpIf    Truth value of the condition for which the jump is taken
+     * @param label     Jump target
+     * @throws Exception on translations failure
+     */
+    private void branch(Node condition, boolean jumpIf, CodeBuffer.Label label) throws Exception {
+        Operation.Binary operation = condition.accept(Node.BINARY_OPERATION);
+        if (operation != null) {
+            // Determine the comparison (inverted if we jump on false)
+            ByteCode comparison = switch (operation) {
+                case EQUAL -> jumpIf ? ByteCode.IF_ICMPEQ : ByteCode.IF_ICMPNE;
+                case LESS -> jumpIf ? ByteCode.IF_ICMPLT : ByteCode.IF_ICMPGE;
+                case LESS_EQUAL -> jumpIf ? ByteCode.IF_ICMPLE : ByteCode.IF_ICMPGT;
+                case GREATER -> jumpIf ? ByteCode.IF_ICMPGT : ByteCode.IF_ICMPLE;
+                case GREATER_EQUAL -> jumpIf ? ByteCode.IF_ICMPGE : ByteCode.IF_ICMPLT;
+                default -> null;
+            };
+
+            if (comparison != null) {
+                // Both operands are consumed by the comparison
+                schedule(translation(condition.getLeft()), translation(condition.getRight()), () -> {
+                    pop(2);
+                    code.writeBranch(comparison, label);
+                });
+                return;
+            }
+        }
 
-        return outputStream.toByteArray();
+        // Any other value is true if it's not 0
+        schedule(translation(condition), () -> {
+            pop(1);
+            code.writeBranch(jumpIf ? ByteCode.IFNE : ByteCode.IFEQ, label);
+        });
     }
 
     /**
      * Translates a binaryOperationNode into ByteCode
      *
      * @param binaryOperationNode binaryOperationNode to translate
-     * @return ByteCode representing the procedureCall node and subsequent nodes
-     * @throws IOException on translations failure
+     * @throws Exception on translations failure
      * @implNote comparisons are implemented using ifcmp. They put the resulting value onto the stack.
      */
-    private byte[] toByteCode(Node.BinaryOperationNode binaryOperationNode) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
+    @Override
+    public Void visit(Node.BinaryOperationNode binaryOperationNode) throws Exception {
         Operation.Binary operation = binaryOperationNode.getOperation();
 
         // Translate assignment
@@ -379,33 +345,35 @@ public class ProcedureTranslator {
             Objekt.Parameter assignee = (Objekt.Parameter) ((Node.IdentifierNode) binaryOperationNode.getLeft()).getSymbolTableEntry();
 
             // Store value, differentiate between local variable and static class variable
-            if (localVariableIndices.contains(assignee)) {
+            Integer slot = localVariableSlots.get(assignee);
+            Integer delta = increment(assignee, binaryOperationNode.getRight());
+            if (slot != null && delta != null) {
+                // Increment the local variable in place
+                writeIncrement(slot, delta);
+            } else if (slot != null) {
                 // resolve assignment
-                outputStream.write(toByteCode(binaryOperationNode.getRight()));
-
-                // Reference local variable via index (+1 offset objectReference)
-                outputStream.write(ByteCode.ISTORE.getCode());
-                outputStream.write(localVariableIndices.indexOf(assignee) + 1);
+                schedule(translation(binaryOperationNode.getRight()), () -> {
+                    // Reference local variable via slot
+                    writeLocalVariableAccess(ByteCode.ISTORE, ISTORE, slot);
+                    pop(1);
+                    code.getFrame().store(slot);
+                });
             } else {
                 // Load object reference
-                outputStream.write(ByteCode.ALOAD_0.getCode());
-                incrementStackSize(1);
+                code.write(ByteCode.ALOAD_0);
+                push(Frame.OBJECT);
 
                 // resolve assignment
-                outputStream.write(toByteCode(binaryOperationNode.getRight()));
-
-                // put class variable and constant pool reference
-                outputStream.write(ByteCode.PUTFIELD.getCode());
-                outputStream.write(constantPool.getByReference(assignee) >> 8);
-                outputStream.write(constantPool.getByReference(assignee));
-
-                // remove aload reference
-                decrementStackSize(1);
+                schedule(translation(binaryOperationNode.getRight()), () -> {
+                    // put class variable and constant pool reference
+                    code.write(ByteCode.PUTFIELD);
+                    code.writeShort(constantPool.getByReference(assignee));
+
+                    // remove stored value and aload reference
+                    pop(2);
+                });
             }
-
-            // Remove stored value from stack counter
-            decrementStackSize(1);
-            return outputStream.toByteArray();
+            return null;
         }
 
 
@@ -413,65 +381,71 @@ public class ProcedureTranslator {
         Node right = binaryOperationNode.getRight();
 
         // Resolve left&right part of the expression (expression leave their value on the stack)
-        outputStream.write(toByteCode(left));
-        outputStream.write(toByteCode(right));
-
-        // Write operation
-        switch (operation) {
-            case ADDITION -> outputStream.write(ByteCode.IADD.getCode());
-            case SUBTRACTION -> outputStream.write(ByteCode.ISUB.getCode());
-            case MULTIPLICATION -> outputStream.write(ByteCode.IMUL.getCode());
-            case DIVISION -> outputStream.write(ByteCode.IDIV.getCode());
-            case EQUAL -> outputStream.write(ByteCode.IF_ICMPEQ.getCode());
-            case LESS -> outputStream.write(ByteCode.IF_ICMPLT.getCode());
-            case LESS_EQUAL -> outputStream.write(ByteCode.IF_ICMPLE.getCode());
-            case GREATER -> outputStream.write(ByteCode.IF_ICMPGT.getCode());
-            case GREATER_EQUAL -> outputStream.write(ByteCode.IF_ICMPGE.getCode());
-        }
+        schedule(translation(left), translation(right), () -> {
+            // Both operands are consumed by the operation
+            pop(2);
+
+            // Write operation
+            switch (operation) {
+                case ADDITION -> code.write(ByteCode.IADD);
+                case SUBTRACTION -> code.write(ByteCode.ISUB);
+                case MULTIPLICATION -> code.write(ByteCode.IMUL);
+                case DIVISION -> code.write(ByteCode.IDIV);
+                case EQUAL -> writeComparison(ByteCode.IF_ICMPEQ);
+                case LESS -> writeComparison(ByteCode.IF_ICMPLT);
+                case LESS_EQUAL -> writeComparison(ByteCode.IF_ICMPLE);
+                case GREATER -> writeComparison(ByteCode.IF_ICMPGT);
+                case GREATER_EQUAL -> writeComparison(ByteCode.IF_ICMPGE);
+            }
 
-        if (operation == Operation.Binary.EQUAL ||
-                operation == Operation.Binary.LESS ||
-                operation == Operation.Binary.LESS_EQUAL ||
-                operation == Operation.Binary.GREATER ||
-                operation == Operation.Binary.GREATER_EQUAL) {
-            // Write the result to the stack
-
-            // jump-offset 1 if condition true
-            outputStream.write(0x00);
-            outputStream.write(0x07);
-
-            // default case (write 0) goto next (skip write 1)
-            outputStream.write(ByteCode.ICONST_0.getCode());
-            outputStream.write(ByteCode.GOTO.getCode());
-            outputStream.write(0x00);
-            outputStream.write(0x04);
-
-            // jumped case (write 1)
-            outputStream.write(ByteCode.ICONST_1.getCode());
-        }
+            // Result of binary operation is a single value
+            push(Frame.INTEGER);
+        });
+        return null;
+    }
 
-        // Result of binary operation is a single value
-        decrementStackSize(1);
+    /**
+     * Determines if an assigned expression increments the assigned variable by a constant
+     * (variable + constant, constant + variable or variable - constant)
+     *
+     * @param assignee   The assigned variable
+     * @param expression The assigned expression
+     * @return The increment, null if the expression is no increment which can be written as iinc
+     */
+    private static Integer increment(Objekt.Parameter assignee, Node expression) {
+        Operation.Binary operation = expression.accept(Node.BINARY_OPERATION);
+        if (operation != Operation.Binary.ADDITION && operation != Operation.Binary.SUBTRACTION)
+            return null;
+        Node variable = expression.getLeft();
+        Integer value = expression.getRight().accept(Node.CONSTANT_VALUE);
+
+        // The constant may be the left operand of additions
+        if (value == null && operation == Operation.Binary.ADDITION) {
+            variable = expression.getRight();
+            value = expression.getLeft().accept(Node.CONSTANT_VALUE);
+        }
 
-        return outputStream.toByteArray();
+        if (value == null || variable.accept(Node.IDENTIFIER_ENTRY) != assignee)
+            return null;
+        int delta = operation == Operation.Binary.ADDITION ? value : -value;
+        return isIncrement(delta) ? delta : null;
     }
 
-
     /**
      * Translates a identifierNode into ByteCode
      *
      * @param identifierNode identifierNode to translate
-     * @return ByteCode representing the procedureCall node and subsequent nodes
      */
-    private byte[] toByteCode(Node.IdentifierNode identifierNode) throws Exception {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    @Override
+    public Void visit(Node.IdentifierNode identifierNode) throws Exception {
 
         // Translate constant (constant values within the code)
         if (identifierNode.getSymbolTableEntry() instanceof Objekt.Constant) {
             Objekt.Constant constant = (Objekt.Constant) identifierNode.getSymbolTableEntry();
 
-            incrementStackSize(1);
-            return loadConstant(constant.getValue());
+            loadConstant(constant.getValue());
+            push(Frame.INTEGER);
+            return null;
         }
 
         // Translate variables (load variable value onto stack)
@@ -479,56 +453,35 @@ public class ProcedureTranslator {
             Objekt.Parameter variable = (Objekt.Parameter) identifierNode.getSymbolTableEntry();
 
             // Differentiate between local & global variables
-            if (localVariableIndices.contains(variable)) {
-                // Reference local variable via index (+1 offset objectReference)
-                outputStream.write(ByteCode.ILOAD.getCode());
-                outputStream.write(localVariableIndices.indexOf(variable) + 1);
+            Integer slot = localVariableSlots.get(variable);
+            if (slot != null) {
+                // Reference local variable via slot
+                writeLocalVariableAccess(ByteCode.ILOAD, ILOAD, slot);
             } else {
                 // Load object reference
-                outputStream.write(ByteCode.ALOAD_0.getCode());
-                incrementStackSize(1);
+                code.write(ByteCode.ALOAD_0);
+                push(Frame.OBJECT);
                 // get variable via get field and constant pool reference
-                outputStream.write(ByteCode.GETFIELD.getCode());
-                int index = constantPool.getByReference(variable); // get index from pool
-                outputStream.write(index >> 8);
-                outputStream.write(index);
-                decrementStackSize(1);
+                code.write(ByteCode.GETFIELD);
+                code.writeShort(constantPool.getByReference(variable)); // get index from pool
+                pop(1);
             }
-            incrementStackSize(1);
+            push(Frame.INTEGER);
         }
-        return outputStream.toByteArray();
+        return null;
     }
 
     /**
-     * Loads a constant onto the stack using the correct operation
-     *
-     * @param constant constant to load
-     * @return ByteCode loading the constant
+     * Pending step of the translation
      */
-    private byte[] loadConstant(int constant) {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Use BIPUSH if it's sufficient
-        if (constant < 127 && constant > -127) {
-            outputStream.write(ByteCode.BIPUSH.getCode());
-            outputStream.write(constant);
-            return outputStream.toByteArray();
-        }
-
-        // Use SIPUSH if it's sufficient
-        if (constant < 32767 && constant > -32767) {
-            outputStream.write(ByteCode.SIPUSH.getCode());
-            outputStream.write(constant >> 8);
-            outputStream.write(constant);
-            return outputStream.toByteArray();
-        }
-
-        // Find constant index within constant pool
-        int constantIndex = constantPool.constantReference.get(constant);
-
-        // Push the constant value onto the stack
-        outputStream.write(ByteCode.LDC.getCode());
-        outputStream.write(constantIndex);
-        return outputStream.toByteArray();
+    @FunctionalInterface
+    private interface Step {
+
+        /**
+         * Executes the step, possibly scheduling further steps
+         *
+         * @throws Exception on translations failure
+         */
+        void run() throws Exception;
     }
 }
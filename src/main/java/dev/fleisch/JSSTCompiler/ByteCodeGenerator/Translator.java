@@ -0,0 +1,303 @@
+package dev.fleisch.JSSTCompiler.ByteCodeGenerator;
+
+import dev.fleisch.JSSTCompiler.Objekt;
+
+/**
+ * Base class of translators writing the bytecode of a single procedure.
+ * <p>
+ * Holds the code buffer and keeps track of the operand stack, subclasses determine which instructions are written.
+ *
+ * @author TillFleisch
+ */
+abstract class Translator {
+
+    /**
+     * Short forms of iconst indexed by value + 1
+     */
+    private static final ByteCode[] ICONST = {ByteCode.ICONST_M1, ByteCode.ICONST_0, ByteCode.ICONST_1,
+            ByteCode.ICONST_2, ByteCode.ICONST_3, ByteCode.ICONST_4, ByteCode.ICONST_5};
+
+    /**
+     * Short forms of iload indexed by slot
+     */
+    static final ByteCode[] ILOAD = {ByteCode.ILOAD_0, ByteCode.ILOAD_1, ByteCode.ILOAD_2, ByteCode.ILOAD_3};
+
+    /**
+     * Short forms of istore indexed by slot
+     */
+    static final ByteCode[] ISTORE = {ByteCode.ISTORE_0, ByteCode.ISTORE_1, ByteCode.ISTORE_2,
+            ByteCode.ISTORE_3};
+
+    /**
+     * Class-constant pool
+     */
+    final ConstantPool constantPool;
+
+    /**
+     * Frame at the beginning of the procedure
+     */
+    private final Frame initialFrame;
+
+    /**
+     * Buffer into which the procedure's bytecode is written
+     */
+    final CodeBuffer code;
+
+    /**
+     * Bytecode generated by this Translator
+     */
+    private byte[] bytecode;
+
+    /**
+     * Maximum nr of local variables used by this method
+     */
+    int maxLocals;
+
+    /**
+     * Maximum stack size during execution of this procedure
+     */
+    private int maxStack = 0;
+
+    /**
+     * Creates a translator for a procedure
+     *
+     * @param constantPool Constant pool provided by the class containing this method
+     * @param procedure    The procedure to translate
+     */
+    Translator(ConstantPool constantPool, Objekt.Procedure procedure) {
+        this.constantPool = constantPool;
+
+        // Only the parameters are initialized when entering the procedure
+        initialFrame = new Frame(procedure.getParameterList().size());
+        code = new CodeBuffer(initialFrame);
+    }
+
+    /**
+     * Completes the translation once all instructions have been written
+     *
+     * @throws Exception If the procedure leaves values on the stack or its code exceeds the JVM's code length limit
+     */
+    void finish() throws Exception {
+        // The code length of a method is limited to 65535 bytes
+        if (code.size() > 0xFFFF)
+            throw new Exception("Code length exceeds 65535 bytes, method too large!");
+        bytecode = code.toByteArray();
+
+        // Assert that the stack is empty
+        if (code.getFrame().getStackSize() != 0)
+            throw new Exception("Procedure leaves without emptying the stack!");
+    }
+
+    /**
+     * Pushes a value onto the stack of the current frame and updates maxStack accordingly
+     *
+     * @param type The value's verification type
+     * @throws Exception If the stack size exceeds the maximum stack size
+     */
+    void push(byte type) throws Exception {
+        code.getFrame().push(type);
+        int stackSize = code.getFrame().getStackSize();
+        if (stackSize > maxStack)
+            maxStack = stackSize;
+        if (stackSize > 0xFFFF)
+            throw new Exception("Maximum Stack size exceeded!");
+    }
+
+    /**
+     * Removes values from the stack of the current frame
+     *
+     * @param count Number of values to remove
+     * @throws Exception If the stack contains less values
+     */
+    void pop(int count) throws Exception {
+        code.getFrame().pop(count);
+    }
+
+    /**
+     * The bytecode generated by this Translator
+     *
+     * @return Bytecode representing the procedures content
+     */
+    public byte[] getBytecode() {
+        return bytecode;
+    }
+
+    /**
+     * Highest number of local variables during execution
+     *
+     * @return max. number of variables used during execution
+     */
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * Reruns the largest stack size used during execution
+     *
+     * @return Largest stack size used during execution
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Frame at the beginning of the procedure, used as reference for the first recorded frame
+     *
+     * @return The initial frame
+     */
+    Frame getInitialFrame() {
+        return initialFrame;
+    }
+
+    /**
+     * Positions within the bytecode at which frames are required (branch targets and code following jumps)
+     *
+     * @return Frame positions, ascending
+     */
+    int[] getFramePositions() {
+        return code.getFramePositions();
+    }
+
+    /**
+     * Frames at the positions given by {@link #getFramePositions()}
+     *
+     * @return Frames used for the StackMapTable
+     */
+    Frame[] getFrames() {
+        return code.getFrames();
+    }
+
+    /**
+     * Writes the invocation of a procedure, the object reference and the parameters must be on the stack
+     *
+     * @param procedure The procedure to call
+     */
+    void writeInvoke(Objekt.Procedure procedure) {
+        // Find index in constant Pool, constructor requires special call
+        code.write(procedure.getName().contains("init")
+                ? ByteCode.INVOKESPECIAL
+                : ByteCode.INVOKEVIRTUAL);
+        code.writeShort(constantPool.getByReference(procedure));
+    }
+
+    /**
+     * Writes a comparison which puts the resulting value (1/0) onto the stack.
+     * The compared operands must have been removed from the current frame, the result is not added to it.
+     *
+     * @param comparison The ifcmp instruction used for comparison
+     * @throws Exception on translations failure
+     */
+    void writeComparison(ByteCode comparison) throws Exception {
+        CodeBuffer.Label trueLabel = new CodeBuffer.Label();
+        CodeBuffer.Label endLabel = new CodeBuffer.Label();
+
+        // jump to the true case if the condition holds
+        code.writeBranch(comparison, trueLabel);
+
+        // default case (write 0) goto next (skip write 1)
+        code.write(ByteCode.ICONST_0);
+        push(Frame.INTEGER);
+        code.writeBranch(ByteCode.GOTO, endLabel);
+        pop(1);
+
+        // jumped case (write 1)
+        code.bind(trueLabel);
+        code.write(ByteCode.ICONST_1);
+        push(Frame.INTEGER);
+
+        // Both cases leave the value on the stack
+        code.bind(endLabel);
+        pop(1);
+    }
+
+    /**
+     * Writes a load/store instruction for a local variable using the smallest encoding
+     *
+     * @param instruction The generic instruction (iload/istore)
+     * @param shortForms  The instruction's short forms indexed by slot
+     * @param slot        The local variable's slot
+     */
+    void writeLocalVariableAccess(ByteCode instruction, ByteCode[] shortForms, int slot) {
+        if (slot < shortForms.length) {
+            code.write(shortForms[slot]);
+        } else if (slot <= 0xFF) {
+            code.write(instruction);
+            code.write(slot);
+        } else {
+            // Slots above 255 require a 16 bit index
+            code.write(ByteCode.WIDE);
+            code.write(instruction);
+            code.writeShort(slot);
+        }
+    }
+
+    /**
+     * Determines if a local variable can be incremented by a constant using iinc
+     *
+     * @param delta The increment
+     * @return True if the increment fits into iinc's (wide) 16 bit operand
+     */
+    static boolean isIncrement(int delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Writes an increment of a local variable by a constant using the smallest encoding
+     *
+     * @param slot  The local variable's slot
+     * @param delta The increment, see {@link #isIncrement(int)}
+     */
+    void writeIncrement(int slot, int delta) {
+        if (slot <= 0xFF && delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE) {
+            code.write(ByteCode.IINC);
+            code.write(slot);
+            code.write(delta);
+        } else {
+            // Slots above 255 and increments exceeding a byte require 16 bit operands
+            code.write(ByteCode.WIDE);
+            code.write(ByteCode.IINC);
+            code.writeShort(slot);
+            code.writeShort(delta);
+        }
+    }
+
+    /**
+     * Loads a constant onto the stack using the smallest encoding
+     *
+     * @param constant constant to load
+     */
+    void loadConstant(int constant) {
+
+        // Use ICONST if possible
+        if (constant >= -1 && constant <= 5) {
+            code.write(ICONST[constant + 1]);
+            return;
+        }
+
+        // Use BIPUSH if it's sufficient
+        if (constant >= Byte.MIN_VALUE && constant <= Byte.MAX_VALUE) {
+            code.write(ByteCode.BIPUSH);
+            code.write(constant);
+            return;
+        }
+
+        // Use SIPUSH if it's sufficient
+        if (constant >= Short.MIN_VALUE && constant <= Short.MAX_VALUE) {
+            code.write(ByteCode.SIPUSH);
+            code.writeShort(constant);
+            return;
+        }
+
+        // Find constant index within constant pool (added if not present yet)
+        int constantIndex = constantPool.add(constant);
+
+        // Push the constant value onto the stack, LDC only supports 1 byte indices
+        if (constantIndex <= 0xFF) {
+            code.write(ByteCode.LDC);
+            code.write(constantIndex);
+        } else {
+            code.write(ByteCode.LDC_W);
+            code.writeShort(constantIndex);
+        }
+    }
+}
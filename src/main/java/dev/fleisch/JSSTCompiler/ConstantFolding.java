@@ -0,0 +1,396 @@
+package dev.fleisch.JSSTCompiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Class containing the constant folding and algebraic simplification of procedure ASTs.
+ * <p>
+ * The AST is traversed bottom-up, each node is visited once its children have been simplified. Visits return the
+ * simplified node replacing the visited node, or the node itself if it can't be simplified.
+ * Constants (including identifiers referring to final variables) are folded using Java's int arithmetic, hence
+ * overflows wrap around. Divisions by 0 are never folded, they still throw at runtime. Operands are only dropped if
+ * evaluating them has no effect: they contain neither procedure calls nor divisions.
+ * Branches of if statements with constant conditions and loops which are never entered are removed.
+ * Requires a semantically checked AST.
+ *
+ * @author TillFleisch
+ */
+public class ConstantFolding implements Node.TraverseCallback, Node.Visitor<Node, RuntimeException> {
+
+    /**
+     * Visitor determining the statements executed instead of if statements and loops with constant conditions,
+     * null for all other statements
+     */
+    private static final Node.Visitor<Node.StatementSequenceNode, RuntimeException> EXECUTED_STATEMENTS =
+            new Node.DefaultVisitor<>() {
+                @Override
+                public Node.StatementSequenceNode visit(Node.IfNode node) {
+                    Integer condition = node.condition.accept(Node.CONSTANT_VALUE);
+                    if (condition == null)
+                        return null;
+                    return (Node.StatementSequenceNode) (condition != 0 ? node.left : node.right);
+                }
+
+                @Override
+                public Node.StatementSequenceNode visit(Node.WhileNode node) {
+                    // Loops which are never entered don't execute any statement
+                    Integer condition = node.condition.accept(Node.CONSTANT_VALUE);
+                    if (condition == null || condition != 0)
+                        return null;
+                    return new Node.StatementSequenceNode(new ArrayList<>());
+                }
+            };
+
+    /**
+     * Visitor determining if evaluating a node (apart from its operands) has no effect: constants, identifiers and
+     * binary operations other than divisions (which might throw)
+     */
+    private static final Node.Visitor<Boolean, RuntimeException> REMOVABLE = new Node.DefaultVisitor<>() {
+        @Override
+        protected Boolean visitDefault(Node node) {
+            return false;
+        }
+
+        @Override
+        public Boolean visit(Node.ConstantNode node) {
+            return true;
+        }
+
+        @Override
+        public Boolean visit(Node.IdentifierNode node) {
+            return true;
+        }
+
+        @Override
+        public Boolean visit(Node.BinaryOperationNode node) {
+            return node.operation != Operation.Binary.DIVISION;
+        }
+    };
+
+    /**
+     * Simplified nodes replacing the nodes left so far
+     */
+    private final IdentityHashMap<Node, Node> replacements = new IdentityHashMap<>();
+
+    /**
+     * Folds the constant expressions within all procedures of a class
+     *
+     * @param clasz    Class containing the procedures
+     * @param parallel True if the procedures are folded in parallel
+     * @throws Exception If traversal fails
+     */
+    public static void run(Objekt.Clasz clasz, boolean parallel) throws Exception {
+        Parallel.map(clasz.getProcedures(), procedure -> {
+            fold(procedure);
+            return null;
+        }, parallel);
+    }
+
+    /**
+     * Folds the constant expressions within a procedure
+     *
+     * @param procedure The procedure
+     * @throws Exception If traversal fails
+     */
+    static void fold(Objekt.Procedure procedure) throws Exception {
+        // The procedure's statement sequence is simplified in place
+        procedure.abstractSyntaxTree.traverse(new ConstantFolding());
+    }
+
+    @Override
+    public void onTraverse(Node node) {
+        // Nodes are simplified once their children have been simplified
+    }
+
+    @Override
+    public void onLeave(Node node) {
+        Node replacement = node.accept(this);
+        if (replacement != node)
+            replacements.put(node, replacement);
+    }
+
+    @Override
+    public Node visit(Node.IdentifierNode node) {
+        // Final variables are replaced by their value
+        if (node.getSymbolTableEntry() instanceof Objekt.Constant)
+            return constant(((Objekt.Constant) node.getSymbolTableEntry()).getValue(), node);
+        return node;
+    }
+
+    @Override
+    public Node visit(Node.ConstantNode node) {
+        return node;
+    }
+
+    @Override
+    public Node visit(Node.BinaryOperationNode node) {
+        Node left = replacement(node.left);
+        Node right = replacement(node.right);
+        Node replacement = null;
+        if (node.operation != Operation.Binary.ASSIGNMENT)
+            replacement = simplify(node.operation, left, right, node);
+        if (replacement == null && (left != node.left || right != node.right))
+            replacement = binaryOperation(node.operation, left, right, node);
+        return replacement == null ? node : replacement;
+    }
+
+    @Override
+    public Node visit(Node.UnaryOperationNode node) {
+        if (node.left == null || replacement(node.left) == node.left)
+            return node;
+        Node replacement = new Node.UnaryOperationNode(replacement(node.left), node.operation, node.getCodePosition());
+        copyAttributes(node, replacement);
+        return replacement;
+    }
+
+    @Override
+    public Node visit(Node.IfNode node) {
+        node.condition = replacement(node.condition);
+        return node;
+    }
+
+    @Override
+    public Node visit(Node.WhileNode node) {
+        node.condition = replacement(node.condition);
+        return node;
+    }
+
+    @Override
+    public Node visit(Node.ProcedureCallNode node) {
+        // Procedure calls keep their statement sequence of parameters, which is simplified in place
+        return node;
+    }
+
+    @Override
+    public Node visit(Node.StatementSequenceNode node) {
+        replaceStatements(node.statements);
+        return node;
+    }
+
+    /**
+     * Replaces the statements (or parameters) of a statement sequence by their simplified nodes.
+     * If statements with constant conditions are replaced by the statements of the executed branch, loops with a
+     * false constant condition are removed.
+     * Parameters are never if statements or loops.
+     *
+     * @param statements The statements
+     */
+    private void replaceStatements(List<Node> statements) {
+        ListIterator<Node> iterator = statements.listIterator();
+        while (iterator.hasNext()) {
+            Node statement = replacement(iterator.next());
+            iterator.set(statement);
+
+            Node.StatementSequenceNode executed = statement.accept(EXECUTED_STATEMENTS);
+            if (executed == null)
+                continue;
+            iterator.remove();
+            for (Node executedStatement : executed.statements)
+                iterator.add(executedStatement);
+
+            // Statements following a returning branch are unreachable
+            if (executed.alwaysReturns) {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Simplifies a (non-assignment) binary operation whose operands have been simplified
+     *
+     * @param operation The operation
+     * @param left      Simplified left operand
+     * @param right     Simplified right operand
+     * @param node      The original node
+     * @return The simplified node, null if the operation can't be simplified
+     */
+    private Node simplify(Operation.Binary operation, Node left, Node right, Node node) {
+        Integer lhs = left.accept(Node.CONSTANT_VALUE);
+        Integer rhs = right.accept(Node.CONSTANT_VALUE);
+
+        // Fold constant operations, divisions by 0 are left for the runtime
+        if (lhs != null && rhs != null && !(operation == Operation.Binary.DIVISION && rhs == 0))
+            return constant(apply(operation, lhs, rhs), node);
+
+        switch (operation) {
+            case ADDITION -> {
+                // x + 0 = 0 + x = x
+                if (rhs != null && rhs == 0)
+                    return left;
+                if (lhs != null && lhs == 0)
+                    return right;
+                return reassociate(operation, left, right, node);
+            }
+            case SUBTRACTION -> {
+                // x - 0 = x, x - x = 0
+                if (rhs != null && rhs == 0)
+                    return left;
+                if (isSameVariable(left, right))
+                    return constant(0, node);
+            }
+            case MULTIPLICATION -> {
+                // x * 1 = 1 * x = x, x * 0 = 0 * x = 0
+                if (rhs != null && rhs == 1)
+                    return left;
+                if (lhs != null && lhs == 1)
+                    return right;
+                if ((rhs != null && rhs == 0 && isRemovable(left)) || (lhs != null && lhs == 0 && isRemovable(right)))
+                    return constant(0, node);
+                return reassociate(operation, left, right, node);
+            }
+            case DIVISION -> {
+                // x / 1 = x
+                if (rhs != null && rhs == 1)
+                    return left;
+            }
+            case EQUAL, LESS_EQUAL, GREATER_EQUAL -> {
+                if (isSameVariable(left, right))
+                    return constant(1, node);
+            }
+            case LESS, GREATER -> {
+                if (isSameVariable(left, right))
+                    return constant(0, node);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Combines the constants of nested additions or multiplications, e.g. 2 + (3 + x) = 5 + x.
+     * The result is the same for int arithmetic, since both operations are associative and commutative even if they
+     * overflow.
+     *
+     * @param operation Addition or multiplication
+     * @param left      Simplified left operand
+     * @param right     Simplified right operand
+     * @param node      The original node
+     * @return The combined operation, null if the operands don't contain nested constants
+     */
+    private Node reassociate(Operation.Binary operation, Node left, Node right, Node node) {
+        // Determine the constant and the nested operation
+        Integer constant = left.accept(Node.CONSTANT_VALUE);
+        Node nested = right;
+        if (constant == null) {
+            constant = right.accept(Node.CONSTANT_VALUE);
+            nested = left;
+        }
+        if (constant == null || nested.accept(Node.BINARY_OPERATION) != operation)
+            return null;
+
+        // Keep the operand order of the nested operation
+        Integer nestedLeft = nested.left.accept(Node.CONSTANT_VALUE);
+        if (nestedLeft != null) {
+            int value = apply(operation, constant, nestedLeft);
+            return binaryOperation(operation, constant(value, node), nested.right, node);
+        }
+        Integer nestedRight = nested.right.accept(Node.CONSTANT_VALUE);
+        if (nestedRight != null) {
+            int value = apply(operation, nestedRight, constant);
+            return binaryOperation(operation, nested.left, constant(value, node), node);
+        }
+        return null;
+    }
+
+    /**
+     * Determines if two operands are the same variable, such that both evaluate to the same value
+     *
+     * @param left  Left operand
+     * @param right Right operand
+     * @return True if both operands refer to the same variable
+     */
+    private static boolean isSameVariable(Node left, Node right) {
+        Objekt variable = left.accept(Node.IDENTIFIER_ENTRY);
+        return variable != null && variable == right.accept(Node.IDENTIFIER_ENTRY);
+    }
+
+    /**
+     * Determines if an expression can be dropped without changing the procedure's behaviour
+     *
+     * @param expression The expression
+     * @return True if the expression contains neither procedure calls nor divisions (which might throw)
+     */
+    private static boolean isRemovable(Node expression) {
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (!node.accept(REMOVABLE))
+                return false;
+            if (node.left != null)
+                pending.push(node.left);
+            if (node.right != null)
+                pending.push(node.right);
+        }
+        return true;
+    }
+
+    /**
+     * Applies an operation using Java's int arithmetic
+     *
+     * @param operation The operation (not an assignment)
+     * @param lhs       Left operand
+     * @param rhs       Right operand (not 0 for divisions)
+     * @return The result
+     */
+    private static int apply(Operation.Binary operation, int lhs, int rhs) {
+        try {
+            return operation.apply(lhs, rhs);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * @param node A node
+     * @return The simplified node replacing the node, the node itself if it hasn't been replaced
+     */
+    private Node replacement(Node node) {
+        return replacements.getOrDefault(node, node);
+    }
+
+    /**
+     * Creates a constant replacing a node
+     *
+     * @param value The constant's value
+     * @param node  The replaced node
+     * @return The constant
+     */
+    private static Node constant(int value, Node node) {
+        Node constant = new Node.ConstantNode(value, node.getCodePosition());
+        constant.producesValue = true;
+        return constant;
+    }
+
+    /**
+     * Creates a binary operation replacing a node
+     *
+     * @param operation The operation
+     * @param left      Left operand
+     * @param right     Right operand
+     * @param node      The replaced node
+     * @return The binary operation
+     */
+    private static Node binaryOperation(Operation.Binary operation, Node left, Node right, Node node) {
+        Node binaryOperation = new Node.BinaryOperationNode(left, right, operation, node.getCodePosition());
+        copyAttributes(node, binaryOperation);
+        return binaryOperation;
+    }
+
+    /**
+     * Copies the attributes determined by semantic analysis
+     *
+     * @param from The replaced node
+     * @param to   The replacing node
+     */
+    private static void copyAttributes(Node from, Node to) {
+        to.producesValue = from.producesValue;
+        to.alwaysReturns = from.alwaysReturns;
+    }
+}
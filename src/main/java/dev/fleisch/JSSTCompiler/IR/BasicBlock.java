@@ -0,0 +1,233 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Basic block of a {@link ControlFlowGraph}: a sequence of instructions which is only entered at its beginning and
+ * left by its exit (jump, conditional branch or return).
+ *
+ * @author TillFleisch
+ */
+public class BasicBlock {
+
+    /**
+     * Ways of leaving a block
+     */
+    public enum Exit {
+        /**
+         * Continue with the single successor
+         */
+        JUMP,
+        /**
+         * Continue with the first successor if the comparison holds, with the second one otherwise
+         */
+        BRANCH,
+        /**
+         * Leave the procedure, returning the operand if present
+         */
+        RETURN
+    }
+
+    /**
+     * Comparisons of conditional branches
+     */
+    public enum Comparison {
+        EQUAL, NOT_EQUAL, LESS, GREATER_EQUAL, GREATER, LESS_EQUAL;
+
+        /**
+         * @return The comparison which holds iff this comparison doesn't hold
+         */
+        public Comparison negate() {
+            return switch (this) {
+                case EQUAL -> NOT_EQUAL;
+                case NOT_EQUAL -> EQUAL;
+                case LESS -> GREATER_EQUAL;
+                case GREATER_EQUAL -> LESS;
+                case GREATER -> LESS_EQUAL;
+                case LESS_EQUAL -> GREATER;
+            };
+        }
+
+        /**
+         * Evaluates the comparison
+         *
+         * @param lhs Left operand
+         * @param rhs Right operand
+         * @return True if the comparison holds
+         */
+        public boolean test(int lhs, int rhs) {
+            return switch (this) {
+                case EQUAL -> lhs == rhs;
+                case NOT_EQUAL -> lhs != rhs;
+                case LESS -> lhs < rhs;
+                case GREATER_EQUAL -> lhs >= rhs;
+                case GREATER -> lhs > rhs;
+                case LESS_EQUAL -> lhs <= rhs;
+            };
+        }
+
+        /**
+         * @return The comparison's operator symbol
+         */
+        String symbol() {
+            return switch (this) {
+                case EQUAL -> "==";
+                case NOT_EQUAL -> "!=";
+                case LESS -> "<";
+                case GREATER_EQUAL -> ">=";
+                case GREATER -> ">";
+                case LESS_EQUAL -> "<=";
+            };
+        }
+    }
+
+    /**
+     * The block's number, blocks are numbered in layout order by {@link ControlFlowGraph#update()}
+     */
+    int id;
+
+    /**
+     * Instructions of this block, in order
+     */
+    final ArrayList<Instruction> instructions = new ArrayList<>();
+
+    /**
+     * The way this block is left, null while the block is being built
+     */
+    Exit exit;
+
+    /**
+     * Comparison of a {@link Exit#BRANCH}
+     */
+    Comparison comparison;
+
+    /**
+     * Registers read by the exit. Branches compare two operands, or a single operand against 0. Returns have at most
+     * one operand.
+     */
+    int[] exitOperands = new int[0];
+
+    /**
+     * Successors of this block, a branch lists the block taken if the comparison holds first
+     */
+    final ArrayList<BasicBlock> successors = new ArrayList<>(2);
+
+    /**
+     * Predecessors of this block
+     */
+    final ArrayList<BasicBlock> predecessors = new ArrayList<>(2);
+
+    /**
+     * Creates an empty block, the block is numbered once it's part of a graph
+     */
+    BasicBlock() {
+        this.id = -1;
+    }
+
+    /**
+     * Leaves the block by jumping to another block
+     *
+     * @param target The successor
+     */
+    void jump(BasicBlock target) {
+        exit = Exit.JUMP;
+        successors.add(target);
+    }
+
+    /**
+     * Leaves the block by a conditional branch
+     *
+     * @param comparison  Comparison of the operands
+     * @param operands    Two operands, or a single operand compared against 0
+     * @param trueTarget  Successor if the comparison holds
+     * @param falseTarget Successor otherwise
+     */
+    void branch(Comparison comparison, int[] operands, BasicBlock trueTarget, BasicBlock falseTarget) {
+        exit = Exit.BRANCH;
+        this.comparison = comparison;
+        exitOperands = operands;
+        successors.add(trueTarget);
+        successors.add(falseTarget);
+    }
+
+    /**
+     * Leaves the procedure
+     *
+     * @param operands The returned register, none for void returns
+     */
+    void ret(int... operands) {
+        exit = Exit.RETURN;
+        exitOperands = operands;
+    }
+
+    /**
+     * @return The block's number
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return Instructions of this block, in order
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return The way this block is left
+     */
+    public Exit getExit() {
+        return exit;
+    }
+
+    /**
+     * @return Comparison of a conditional branch
+     */
+    public Comparison getComparison() {
+        return comparison;
+    }
+
+    /**
+     * @return Registers read by the exit
+     */
+    public int[] getExitOperands() {
+        return exitOperands;
+    }
+
+    /**
+     * @return Successors of this block, a branch lists the block taken if the comparison holds first
+     */
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * @return Predecessors of this block
+     */
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Textual representation of the block's exit
+     *
+     * @param graph The graph containing the block, used for register names
+     * @return The exit in three-address notation
+     */
+    String exitToString(ControlFlowGraph graph) {
+        return switch (exit) {
+            case JUMP -> "goto B" + successors.get(0).id;
+            case BRANCH -> "if " + graph.registerName(exitOperands[0]) + " " + comparison.symbol() + " " +
+                    (exitOperands.length > 1 ? graph.registerName(exitOperands[1]) : "0") +
+                    " goto B" + successors.get(0).id + " else B" + successors.get(1).id;
+            case RETURN -> exitOperands.length > 0 ? "return " + graph.registerName(exitOperands[0]) : "return";
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id;
+    }
+}
@@ -0,0 +1,267 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import dev.fleisch.JSSTCompiler.Objekt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Control flow graph of a single procedure, made up of {@link BasicBlock}s of three-address instructions.
+ * <p>
+ * Values are held by virtual registers. The first registers hold the procedure's variables (parameters first), in the
+ * order of the procedure's SymbolTable. All other registers are temporaries introduced for intermediate values.
+ * Blocks are kept in layout order, the first block is the entry of the procedure.
+ *
+ * @author TillFleisch
+ */
+public class ControlFlowGraph {
+
+    /**
+     * The procedure described by this graph
+     */
+    final Objekt.Procedure procedure;
+
+    /**
+     * Blocks in layout order, the first block is the entry
+     */
+    final ArrayList<BasicBlock> blocks = new ArrayList<>();
+
+    /**
+     * Variables held by the first registers, parameters come first
+     */
+    final ArrayList<Objekt.Parameter> variables = new ArrayList<>();
+
+    /**
+     * Registers of the variables
+     */
+    final IdentityHashMap<Objekt.Parameter, Integer> variableRegisters = new IdentityHashMap<>();
+
+    /**
+     * Number of registers in use
+     */
+    int registerCount;
+
+    /**
+     * Creates an empty graph and assigns registers to the procedure's variables
+     *
+     * @param procedure The procedure described by this graph
+     */
+    ControlFlowGraph(Objekt.Procedure procedure) {
+        this.procedure = procedure;
+        for (Objekt objekt : procedure.getSymbolTable()) {
+            if (objekt instanceof Objekt.Parameter && !(objekt instanceof Objekt.Constant)) {
+                variableRegisters.put((Objekt.Parameter) objekt, variables.size());
+                variables.add((Objekt.Parameter) objekt);
+            }
+        }
+        registerCount = variables.size();
+    }
+
+    /**
+     * Builds the control flow graph of a procedure from its abstract syntax tree
+     *
+     * @param procedure The procedure (semantically checked)
+     * @return The procedure's control flow graph
+     * @throws Exception If the AST can't be translated
+     */
+    public static ControlFlowGraph build(Objekt.Procedure procedure) throws Exception {
+        return new ControlFlowGraphBuilder(procedure).build();
+    }
+
+    /**
+     * Allocates a new temporary register
+     *
+     * @return The register
+     */
+    int newRegister() {
+        return registerCount++;
+    }
+
+    /**
+     * Removes blocks which can't be reached from the entry, recomputes the predecessors and renumbers the blocks in
+     * layout order. Must be called after the edges of the graph have been changed.
+     */
+    void update() {
+        // Mark blocks reachable from the entry
+        IdentityHashMap<BasicBlock, Boolean> reachable = new IdentityHashMap<>();
+        ArrayDeque<BasicBlock> worklist = new ArrayDeque<>();
+        reachable.put(blocks.get(0), true);
+        worklist.push(blocks.get(0));
+        while (!worklist.isEmpty()) {
+            for (BasicBlock successor : worklist.pop().successors) {
+                if (reachable.put(successor, true) == null)
+                    worklist.push(successor);
+            }
+        }
+        blocks.removeIf(block -> !reachable.containsKey(block));
+
+        for (BasicBlock block : blocks)
+            block.predecessors.clear();
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            block.id = i;
+            for (BasicBlock successor : block.successors)
+                successor.predecessors.add(block);
+        }
+    }
+
+    /**
+     * @return The procedure described by this graph
+     */
+    public Objekt.Procedure getProcedure() {
+        return procedure;
+    }
+
+    /**
+     * @return Blocks in layout order, the first block is the entry
+     */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return Number of registers holding variables
+     */
+    public int getVariableCount() {
+        return variables.size();
+    }
+
+    /**
+     * @return Number of registers in use
+     */
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    /**
+     * Determines which registers are read by any instruction or exit
+     *
+     * @return Number of reads per register
+     */
+    public int[] countUses() {
+        int[] uses = new int[registerCount];
+        for (BasicBlock block : blocks) {
+            for (Instruction instruction : block.instructions)
+                for (int operand : instruction.operands)
+                    uses[operand]++;
+            for (int operand : block.exitOperands)
+                uses[operand]++;
+        }
+        return uses;
+    }
+
+    /**
+     * Determines the values of temporaries defined by constant instructions. Temporaries are defined once, hence such
+     * a temporary holds its value wherever it's read.
+     *
+     * @return Value of each constant temporary
+     */
+    HashMap<Integer, Integer> constants() {
+        HashMap<Integer, Integer> constants = new HashMap<>();
+        for (BasicBlock block : blocks)
+            for (Instruction instruction : block.instructions)
+                if (instruction.opcode == Instruction.Opcode.CONSTANT && instruction.target >= variables.size())
+                    constants.put(instruction.target, instruction.constant);
+        return constants;
+    }
+
+    /**
+     * Removes instructions whose results are not used. Instructions with side effects, calls, field stores and
+     * divisions (which might throw) are kept, as well as stores to variables.
+     */
+    void removeDeadCode() {
+        int[] uses = countUses();
+        Instruction[] definitions = new Instruction[registerCount];
+        for (BasicBlock block : blocks)
+            for (Instruction instruction : block.instructions)
+                if (instruction.target >= variables.size())
+                    definitions[instruction.target] = instruction;
+
+        // Removing an instruction might leave its operands unused
+        IdentityHashMap<Instruction, Boolean> dead = new IdentityHashMap<>();
+        ArrayDeque<Instruction> worklist = new ArrayDeque<>();
+        for (BasicBlock block : blocks)
+            for (Instruction instruction : block.instructions)
+                if (isDead(instruction, uses))
+                    worklist.push(instruction);
+        while (!worklist.isEmpty()) {
+            Instruction instruction = worklist.pop();
+            if (dead.put(instruction, true) != null)
+                continue;
+            for (int operand : instruction.operands) {
+                uses[operand]--;
+                if (operand >= variables.size() && definitions[operand] != null && isDead(definitions[operand], uses))
+                    worklist.push(definitions[operand]);
+            }
+        }
+
+        if (!dead.isEmpty())
+            for (BasicBlock block : blocks)
+                block.instructions.removeIf(dead::containsKey);
+    }
+
+    /**
+     * Determines if an instruction can be removed
+     *
+     * @param instruction The instruction
+     * @param uses        Number of reads per register
+     * @return True if the instruction has no side effects and its result is unused
+     */
+    private boolean isDead(Instruction instruction, int[] uses) {
+        if (instruction.opcode == Instruction.Opcode.DIVIDE ||
+                !(instruction.opcode.isPure() || instruction.opcode == Instruction.Opcode.GET_FIELD))
+            return false;
+        return instruction.target == Instruction.NO_REGISTER ||
+                (instruction.target >= variables.size() && uses[instruction.target] == 0);
+    }
+
+    /**
+     * Optimizes the graph, the graph's behaviour is preserved
+     */
+    public void optimize() {
+        GlobalValueNumbering.run(this);
+        InductionVariables.run(this);
+        StrengthReduction.run(this);
+    }
+
+    /**
+     * Name of a register used in the textual representation, variables are referred to by their name
+     *
+     * @param register The register
+     * @return The register's name
+     */
+    String registerName(int register) {
+        if (register < variables.size())
+            return variables.get(register).getName();
+        return "%" + register;
+    }
+
+    /**
+     * Textual representation of the graph (for debugging), listing the blocks with their predecessors,
+     * instructions and exits
+     *
+     * @return The graph in three-address notation
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(procedure).append("\n");
+        for (BasicBlock block : blocks) {
+            stringBuilder.append(block).append(":");
+            if (!block.predecessors.isEmpty()) {
+                stringBuilder.append(" <-");
+                for (BasicBlock predecessor : block.predecessors)
+                    stringBuilder.append(" ").append(predecessor);
+            }
+            stringBuilder.append("\n");
+
+            for (Instruction instruction : block.instructions)
+                stringBuilder.append("    ").append(instruction.toString(this)).append("\n");
+            stringBuilder.append("    ").append(block.exitToString(this)).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,398 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import dev.fleisch.JSSTCompiler.Node;
+import dev.fleisch.JSSTCompiler.Objekt;
+import dev.fleisch.JSSTCompiler.Operation;
+import dev.fleisch.JSSTCompiler.Type;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Builds the control flow graph of a procedure from its abstract syntax tree.
+ * <p>
+ * Statements are visited, visits append instructions to the current block and schedule the translation of nested
+ * statements on an explicit stack of steps. Expressions are translated by a post-order traversal, each node's value is
+ * held by a register which is passed to the enclosing node via a stack of registers.
+ * Blocks are laid out in the order in which they are started: loops are rotated, the condition is placed below the
+ * loop body.
+ *
+ * @author TillFleisch
+ */
+class ControlFlowGraphBuilder implements Node.Visitor<Void, Exception> {
+
+    /**
+     * The procedure being translated
+     */
+    private final Objekt.Procedure procedure;
+
+    /**
+     * The graph being built
+     */
+    private final ControlFlowGraph graph;
+
+    /**
+     * Block to which instructions are appended
+     */
+    private BasicBlock current;
+
+    /**
+     * Pending translation steps, the step on top of the stack is executed next
+     */
+    private final ArrayDeque<Step> steps = new ArrayDeque<>();
+
+    /**
+     * Registers holding the values of the expressions translated so far
+     */
+    private final ArrayDeque<Integer> values = new ArrayDeque<>();
+
+    /**
+     * Post-order traversal translating expressions
+     */
+    private final ExpressionTranslation expressionTranslation = new ExpressionTranslation();
+
+    /**
+     * Creates a builder for a procedure
+     *
+     * @param procedure The procedure to translate
+     */
+    ControlFlowGraphBuilder(Objekt.Procedure procedure) {
+        this.procedure = procedure;
+        this.graph = new ControlFlowGraph(procedure);
+    }
+
+    /**
+     * Translates the procedure's AST into a control flow graph
+     *
+     * @return The control flow graph
+     * @throws Exception If the AST can't be translated
+     */
+    ControlFlowGraph build() throws Exception {
+        start(new BasicBlock());
+
+        steps.push(translation(procedure.getAbstractSyntaxTree()));
+        while (!steps.isEmpty())
+            steps.pop().run();
+
+        // Add an implicit return to the end of the procedure
+        if (procedure.getReturnType() == Type.VOID) {
+            current.ret();
+        } else {
+            // Mock return, the last statement of int procedures must be a return statement
+            current.ret(constant(0));
+        }
+
+        graph.update();
+        return graph;
+    }
+
+    /**
+     * Appends a block to the layout and continues translation within it
+     *
+     * @param block The block
+     */
+    private void start(BasicBlock block) {
+        graph.blocks.add(block);
+        current = block;
+    }
+
+    /**
+     * Appends an instruction to the current block
+     *
+     * @param instruction The instruction
+     */
+    private void emit(Instruction instruction) {
+        current.instructions.add(instruction);
+    }
+
+    /**
+     * Emits a constant
+     *
+     * @param value The constant value
+     * @return Register holding the constant
+     */
+    private int constant(int value) {
+        int target = graph.newRegister();
+        emit(Instruction.constant(target, value));
+        return target;
+    }
+
+    /**
+     * Determines the register holding the value of a variable or constant, class variables are loaded into a new
+     * register
+     *
+     * @param objekt The variable or constant
+     * @return Register holding the value
+     */
+    private int load(Objekt objekt) {
+        if (objekt instanceof Objekt.Constant)
+            return constant(((Objekt.Constant) objekt).getValue());
+
+        Integer register = graph.variableRegisters.get(objekt);
+        if (register != null)
+            return register;
+
+        int target = graph.newRegister();
+        Instruction getField = new Instruction(Instruction.Opcode.GET_FIELD, target);
+        getField.field = (Objekt.Parameter) objekt;
+        emit(getField);
+        return target;
+    }
+
+    /**
+     * Translates an expression
+     *
+     * @param expression The expression
+     * @return Register holding the expression's value
+     * @throws Exception If the expression can't be translated
+     */
+    private int expression(Node expression) throws Exception {
+        expression.traverse(expressionTranslation);
+        return values.pop();
+    }
+
+    /**
+     * Ends the current block with a branch depending on a condition.
+     * Comparisons are branched on directly, other values are compared against 0.
+     *
+     * @param condition   The condition
+     * @param trueTarget  Successor if the condition holds
+     * @param falseTarget Successor otherwise
+     * @throws Exception If the condition can't be translated
+     */
+    private void branch(Node condition, BasicBlock trueTarget, BasicBlock falseTarget) throws Exception {
+        Operation.Binary operation = condition.accept(Node.BINARY_OPERATION);
+        if (operation != null) {
+            BasicBlock.Comparison comparison = switch (operation) {
+                case EQUAL -> BasicBlock.Comparison.EQUAL;
+                case LESS -> BasicBlock.Comparison.LESS;
+                case LESS_EQUAL -> BasicBlock.Comparison.LESS_EQUAL;
+                case GREATER -> BasicBlock.Comparison.GREATER;
+                case GREATER_EQUAL -> BasicBlock.Comparison.GREATER_EQUAL;
+                default -> null;
+            };
+
+            if (comparison != null) {
+                int lhs = expression(condition.getLeft());
+                int rhs = expression(condition.getRight());
+                current.branch(comparison, new int[]{lhs, rhs}, trueTarget, falseTarget);
+                return;
+            }
+        }
+
+        // Any other value is true if it's not 0
+        current.branch(BasicBlock.Comparison.NOT_EQUAL, new int[]{expression(condition)}, trueTarget, falseTarget);
+    }
+
+    /**
+     * Creates a step translating a statement
+     *
+     * @param node Statement to translate
+     * @return Step visiting the statement
+     */
+    private Step translation(Node node) {
+        return () -> node.accept(this);
+    }
+
+    /**
+     * Schedules steps, such that they are executed in the given order before any previously pending step
+     *
+     * @param followingSteps Steps to execute next
+     */
+    private void schedule(Step... followingSteps) {
+        for (int i = followingSteps.length - 1; i >= 0; i--)
+            steps.push(followingSteps[i]);
+    }
+
+    @Override
+    public Void visit(Node.StatementSequenceNode node) {
+        // Schedule the statements, last statement first
+        List<Node> statements = node.getStatements();
+        ListIterator<Node> iterator = statements.listIterator(statements.size());
+        while (iterator.hasPrevious())
+            steps.push(translation(iterator.previous()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.BinaryOperationNode node) throws Exception {
+        if (node.getOperation() != Operation.Binary.ASSIGNMENT)
+            throw new Exception("Expression used as statement at " + node.getCodePosition());
+
+        Objekt.Parameter assignee = (Objekt.Parameter) ((Node.IdentifierNode) node.getLeft()).getSymbolTableEntry();
+        int value = expression(node.getRight());
+
+        Integer register = graph.variableRegisters.get(assignee);
+        if (register == null) {
+            // Store class variable
+            Instruction putField = new Instruction(Instruction.Opcode.PUT_FIELD, Instruction.NO_REGISTER, value);
+            putField.field = assignee;
+            emit(putField);
+            return null;
+        }
+
+        // Store the value of the last instruction directly into the variable, copy it otherwise
+        List<Instruction> instructions = current.instructions;
+        if (value >= graph.getVariableCount() && !instructions.isEmpty() &&
+                instructions.get(instructions.size() - 1).target == value) {
+            instructions.get(instructions.size() - 1).target = register;
+        } else {
+            emit(new Instruction(Instruction.Opcode.COPY, register, value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.UnaryOperationNode node) throws Exception {
+        if (node.getOperation() == Operation.Unary.RETURN) {
+            if (node.getLeft() == null)
+                current.ret();
+            else
+                current.ret(expression(node.getLeft()));
+
+            // Following code is unreachable, the block is removed once the graph is complete
+            start(new BasicBlock());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.ProcedureCallNode node) throws Exception {
+        expression(node);
+
+        // The returned value (if any) is not used
+        current.instructions.get(current.instructions.size() - 1).target = Instruction.NO_REGISTER;
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.IfNode node) throws Exception {
+        BasicBlock ifBlock = new BasicBlock();
+        BasicBlock endBlock = new BasicBlock();
+        Node.StatementSequenceNode elseBranch = (Node.StatementSequenceNode) node.getRight();
+        BasicBlock elseBlock = elseBranch.getStatements().isEmpty() ? endBlock : new BasicBlock();
+
+        branch(node.getCondition(), ifBlock, elseBlock);
+
+        // Write if branch
+        start(ifBlock);
+        schedule(translation(node.getLeft()), () -> {
+            current.jump(endBlock);
+            if (elseBlock == endBlock) {
+                start(endBlock);
+                return;
+            }
+
+            // Write else branch
+            start(elseBlock);
+            schedule(translation(elseBranch), () -> {
+                current.jump(endBlock);
+                start(endBlock);
+            });
+        });
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.WhileNode node) {
+        BasicBlock bodyBlock = new BasicBlock();
+        BasicBlock conditionBlock = new BasicBlock();
+        BasicBlock exitBlock = new BasicBlock();
+
+        // Enter the loop at the condition
+        current.jump(conditionBlock);
+
+        // Write the conditioned statements, followed by the condition
+        start(bodyBlock);
+        schedule(translation(node.getLeft()), () -> {
+            current.jump(conditionBlock);
+            start(conditionBlock);
+            branch(node.getCondition(), bodyBlock, exitBlock);
+            start(exitBlock);
+        });
+        return null;
+    }
+
+    @Override
+    public Void visit(Node.ConstantNode node) throws Exception {
+        throw new Exception("Expression used as statement at " + node.getCodePosition());
+    }
+
+    @Override
+    public Void visit(Node.IdentifierNode node) throws Exception {
+        throw new Exception("Expression used as statement at " + node.getCodePosition());
+    }
+
+    /**
+     * Translates expressions bottom-up, each visited node pushes the register holding its value.
+     * Used as post-order traversal callback, hence the operands' registers are on the stack when a node is visited.
+     *
+     * @author TillFleisch
+     */
+    private class ExpressionTranslation extends Node.DefaultVisitor<Void, RuntimeException>
+            implements Node.TraverseCallback {
+
+        @Override
+        public void onTraverse(Node node) {
+            // Operands are translated first
+        }
+
+        @Override
+        public void onLeave(Node node) {
+            // Statement sequences only wrap the parameters of procedure calls, they aren't translated
+            node.accept(this);
+        }
+
+        @Override
+        public Void visit(Node.ConstantNode node) {
+            values.push(constant(node.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Node.IdentifierNode node) {
+            values.push(load(node.getSymbolTableEntry()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Node.BinaryOperationNode node) {
+            int rhs = values.pop();
+            int lhs = values.pop();
+            int target = graph.newRegister();
+            emit(new Instruction(Instruction.Opcode.of(node.getOperation()), target, lhs, rhs));
+            values.push(target);
+            return null;
+        }
+
+        @Override
+        public Void visit(Node.ProcedureCallNode node) {
+            // Parameters are on the stack in reverse order
+            int[] parameters = new int[node.getParameterCount()];
+            for (int i = parameters.length - 1; i >= 0; i--)
+                parameters[i] = values.pop();
+
+            int target = graph.newRegister();
+            Instruction call = new Instruction(Instruction.Opcode.CALL, target, parameters);
+            call.procedure = node.getSymbolTableEntry();
+            emit(call);
+            values.push(target);
+            return null;
+        }
+    }
+
+    /**
+     * Pending step of the translation
+     */
+    @FunctionalInterface
+    private interface Step {
+
+        /**
+         * Executes the step, possibly scheduling further steps
+         *
+         * @throws Exception on translations failure
+         */
+        void run() throws Exception;
+    }
+}
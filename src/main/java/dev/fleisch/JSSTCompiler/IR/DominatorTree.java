@@ -0,0 +1,220 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dominator tree of a {@link ControlFlowGraph}. A block dominates another block if every path from the entry to the
+ * other block passes through it.
+ * <p>
+ * Immediate dominators are computed by the iterative algorithm of Cooper, Harvey and Kennedy over the reverse
+ * postorder of the blocks. Blocks are referred to by their id, hence the graph must not change while the tree is used.
+ *
+ * @author TillFleisch
+ */
+public class DominatorTree {
+
+    /**
+     * The graph's blocks, indexed by id
+     */
+    private final List<BasicBlock> blocks;
+
+    /**
+     * Block ids in reverse postorder, the entry comes first
+     */
+    private final int[] reversePostorder;
+
+    /**
+     * Position of each block within the reverse postorder
+     */
+    private final int[] order;
+
+    /**
+     * Immediate dominator of each block, the entry is its own immediate dominator
+     */
+    private final int[] immediateDominators;
+
+    /**
+     * Blocks immediately dominated by each block, in reverse postorder
+     */
+    private final ArrayList<ArrayList<BasicBlock>> children;
+
+    /**
+     * Preorder number of each block within the dominator tree
+     */
+    private final int[] preorder;
+
+    /**
+     * Highest preorder number within the subtree of each block
+     */
+    private final int[] subtreeEnd;
+
+    /**
+     * Computes the dominator tree of a graph
+     *
+     * @param graph The graph, all blocks must be reachable from the entry
+     */
+    public DominatorTree(ControlFlowGraph graph) {
+        blocks = graph.getBlocks();
+        int blockCount = blocks.size();
+
+        // Determine the postorder by a depth first search, each block's successors are visited in order
+        reversePostorder = new int[blockCount];
+        order = new int[blockCount];
+        boolean[] visited = new boolean[blockCount];
+        int[] nextSuccessor = new int[blockCount];
+        ArrayDeque<BasicBlock> path = new ArrayDeque<>();
+        int position = blockCount;
+        path.push(blocks.get(0));
+        visited[0] = true;
+        while (!path.isEmpty()) {
+            BasicBlock block = path.peek();
+            if (nextSuccessor[block.id] < block.successors.size()) {
+                BasicBlock successor = block.successors.get(nextSuccessor[block.id]++);
+                if (!visited[successor.id]) {
+                    visited[successor.id] = true;
+                    path.push(successor);
+                }
+            } else {
+                path.pop();
+                reversePostorder[--position] = block.id;
+                order[block.id] = position;
+            }
+        }
+
+        // Iterate until the immediate dominators don't change
+        immediateDominators = new int[blockCount];
+        Arrays.fill(immediateDominators, -1);
+        immediateDominators[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < blockCount; i++) {
+                BasicBlock block = blocks.get(reversePostorder[i]);
+                int dominator = -1;
+                for (BasicBlock predecessor : block.predecessors) {
+                    if (immediateDominators[predecessor.id] == -1)
+                        continue;
+                    dominator = dominator == -1 ? predecessor.id : intersect(dominator, predecessor.id);
+                }
+                if (immediateDominators[block.id] != dominator) {
+                    immediateDominators[block.id] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        children = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++)
+            children.add(new ArrayList<>(2));
+        for (int i = 1; i < blockCount; i++) {
+            int id = reversePostorder[i];
+            children.get(immediateDominators[id]).add(blocks.get(id));
+        }
+
+        // Number the tree in preorder, such that dominance can be checked in constant time
+        preorder = new int[blockCount];
+        subtreeEnd = new int[blockCount];
+        int number = 0;
+        ArrayDeque<BasicBlock> stack = new ArrayDeque<>();
+        stack.push(blocks.get(0));
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.pop();
+            preorder[block.id] = number++;
+            List<BasicBlock> blockChildren = children.get(block.id);
+            for (int i = blockChildren.size() - 1; i >= 0; i--)
+                stack.push(blockChildren.get(i));
+        }
+        for (int i = blockCount - 1; i >= 0; i--) {
+            int id = reversePostorder[i];
+            subtreeEnd[id] = Math.max(subtreeEnd[id], preorder[id]);
+            if (i > 0)
+                subtreeEnd[immediateDominators[id]] = Math.max(subtreeEnd[immediateDominators[id]], subtreeEnd[id]);
+        }
+    }
+
+    /**
+     * Finds the closest common dominator of two blocks by walking up the partial tree
+     *
+     * @param first  Id of the first block
+     * @param second Id of the second block
+     * @return Id of the common dominator
+     */
+    private int intersect(int first, int second) {
+        while (first != second) {
+            while (order[first] > order[second])
+                first = immediateDominators[first];
+            while (order[second] > order[first])
+                second = immediateDominators[second];
+        }
+        return first;
+    }
+
+    /**
+     * @param block A block other than the entry
+     * @return The block's immediate dominator
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        return blocks.get(immediateDominators[block.id]);
+    }
+
+    /**
+     * @param block A block
+     * @return Blocks immediately dominated by the block, in reverse postorder
+     */
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return children.get(block.id);
+    }
+
+    /**
+     * Determines if a block dominates another block, every block dominates itself
+     *
+     * @param dominator The dominating block
+     * @param block     The dominated block
+     * @return True if every path from the entry to block passes through dominator
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        return preorder[dominator.id] <= preorder[block.id] && preorder[block.id] <= subtreeEnd[dominator.id];
+    }
+
+    /**
+     * @return The blocks in reverse postorder, the entry comes first
+     */
+    public List<BasicBlock> getReversePostorder() {
+        ArrayList<BasicBlock> list = new ArrayList<>(reversePostorder.length);
+        for (int id : reversePostorder)
+            list.add(blocks.get(id));
+        return list;
+    }
+
+    /**
+     * Determines the dominance frontiers, the blocks at which the dominance of a block ends. Blocks in the dominance
+     * frontier of a definition are the places at which phi functions are required.
+     *
+     * @return The dominance frontier of each block, indexed by block id
+     */
+    public ArrayList<ArrayList<BasicBlock>> dominanceFrontiers() {
+        ArrayList<ArrayList<BasicBlock>> frontiers = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++)
+            frontiers.add(new ArrayList<>(2));
+
+        for (BasicBlock block : blocks) {
+            if (block.predecessors.size() < 2)
+                continue;
+
+            // The block is in the frontier of all blocks between its predecessors and its immediate dominator
+            for (BasicBlock predecessor : block.predecessors) {
+                int runner = predecessor.id;
+                while (runner != immediateDominators[block.id]) {
+                    ArrayList<BasicBlock> frontier = frontiers.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != block)
+                        frontier.add(block);
+                    runner = immediateDominators[runner];
+                }
+            }
+        }
+        return frontiers;
+    }
+}
@@ -0,0 +1,539 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Removes redundant computations by dominator based global value numbering over the SSA form of a procedure.
+ * <p>
+ * Each value computed by the procedure gets a value number, two registers with the same value number hold the same
+ * value. The SSA form of the procedure's variables is built implicitly: phi functions are placed at the iterated
+ * dominance frontiers of the variables' definitions, renaming assigns the value numbers of the reaching definitions
+ * while walking the dominator tree. Pure computations whose operation and operand values match a computation of a
+ * dominating instruction are redundant, they are replaced by the register holding the dominating result.
+ * The instructions remain in their non-SSA form, hence no copies are required to leave the SSA form.
+ *
+ * @author TillFleisch
+ */
+class GlobalValueNumbering {
+
+    /**
+     * Smallest tree size (number of bytecode instructions) of a computation worth replacing by a load if the result of
+     * the dominating computation has to be stored in an additional local variable
+     */
+    private static final int MINIMUM_SPILLED_SIZE = 4;
+
+    /**
+     * The optimized graph
+     */
+    private final ControlFlowGraph graph;
+
+    /**
+     * Dominator tree of the graph
+     */
+    private final DominatorTree dominatorTree;
+
+    /**
+     * Value number of each temporary register
+     */
+    private int[] valueNumbers;
+
+    /**
+     * Current value number of each variable, according to the definitions reaching the currently visited block
+     */
+    private final int[] variableValueNumbers;
+
+    /**
+     * Value numbers of the variables at the end of each visited block
+     */
+    private final int[][] exitValueNumbers;
+
+    /**
+     * Variables requiring a phi function at the beginning of each block
+     */
+    private final ArrayList<BitSet> phis;
+
+    /**
+     * Value numbers of constants
+     */
+    private final HashMap<Integer, Integer> constants = new HashMap<>();
+
+    /**
+     * Computations available in the currently visited block, the scope ends with the dominator subtree of the block
+     * which computed them
+     */
+    private final HashMap<Expression, Expression> available = new HashMap<>();
+
+    /**
+     * Number of definitions of each variable
+     */
+    private final int[] definitionCounts;
+
+    /**
+     * Number of reads per register before optimization
+     */
+    private final int[] uses;
+
+    /**
+     * Index of the defining instruction within its block for each temporary
+     */
+    private final int[] definitionIndexes;
+
+    /**
+     * Copies to insert after leaders whose result is kept in a new temporary register
+     */
+    private final IdentityHashMap<Instruction, Instruction> insertedCopies = new IdentityHashMap<>();
+
+    /**
+     * True if any computation has been replaced
+     */
+    private boolean changed = false;
+
+    /**
+     * Registers holding the results of dominating computations which replace redundant computations
+     */
+    private final IdentityHashMap<Instruction, Integer> leaderRegisters = new IdentityHashMap<>();
+
+    /**
+     * Redundant computations removed from their blocks
+     */
+    private final IdentityHashMap<Instruction, Boolean> removed = new IdentityHashMap<>();
+
+    /**
+     * Registers replaced by other registers holding the same value
+     */
+    private final HashMap<Integer, Integer> replacements = new HashMap<>();
+
+    /**
+     * Next unused value number
+     */
+    private int nextValueNumber = 0;
+
+    /**
+     * Prepares value numbering for a graph
+     *
+     * @param graph The graph to optimize
+     */
+    private GlobalValueNumbering(ControlFlowGraph graph) {
+        this.graph = graph;
+        dominatorTree = new DominatorTree(graph);
+
+        int variableCount = graph.getVariableCount();
+        variableValueNumbers = new int[variableCount];
+        exitValueNumbers = new int[graph.blocks.size()][];
+        definitionCounts = new int[variableCount];
+        valueNumbers = new int[graph.registerCount];
+        uses = graph.countUses();
+        definitionIndexes = new int[graph.registerCount];
+
+        // Parameters are defined on entry
+        for (int variable = 0; variable < graph.procedure.getParameterList().size(); variable++)
+            definitionCounts[variable]++;
+
+        // Place phi functions at the iterated dominance frontiers of each variable's definitions
+        ArrayList<ArrayList<BasicBlock>> frontiers = dominatorTree.dominanceFrontiers();
+        ArrayList<ArrayList<BasicBlock>> definitionBlocks = new ArrayList<>(variableCount);
+        for (int variable = 0; variable < variableCount; variable++)
+            definitionBlocks.add(new ArrayList<>());
+        for (BasicBlock block : graph.blocks) {
+            for (int i = 0; i < block.instructions.size(); i++) {
+                Instruction instruction = block.instructions.get(i);
+                if (instruction.target >= variableCount)
+                    definitionIndexes[instruction.target] = i;
+                if (instruction.target != Instruction.NO_REGISTER && instruction.target < variableCount) {
+                    definitionCounts[instruction.target]++;
+                    ArrayList<BasicBlock> blocks = definitionBlocks.get(instruction.target);
+                    if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block)
+                        blocks.add(block);
+                }
+            }
+        }
+
+        phis = new ArrayList<>(graph.blocks.size());
+        for (int i = 0; i < graph.blocks.size(); i++)
+            phis.add(new BitSet(variableCount));
+        for (int variable = 0; variable < variableCount; variable++) {
+            ArrayDeque<BasicBlock> worklist = new ArrayDeque<>(definitionBlocks.get(variable));
+            while (!worklist.isEmpty()) {
+                for (BasicBlock frontierBlock : frontiers.get(worklist.pop().id)) {
+                    BitSet blockPhis = phis.get(frontierBlock.id);
+                    if (!blockPhis.get(variable)) {
+                        // The phi function is a new definition of the variable
+                        blockPhis.set(variable);
+                        worklist.push(frontierBlock);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes redundant computations from a graph
+     *
+     * @param graph The graph to optimize
+     */
+    static void run(ControlFlowGraph graph) {
+        new GlobalValueNumbering(graph).run();
+    }
+
+    /**
+     * Numbers the values while walking the dominator tree and replaces redundant computations
+     */
+    private void run() {
+        // All variables hold unknown values on entry
+        for (int variable = 0; variable < variableValueNumbers.length; variable++)
+            variableValueNumbers[variable] = nextValueNumber++;
+
+        // Walk the dominator tree, leaving a block restores the state of its dominator
+        ArrayDeque<Object> undoLog = new ArrayDeque<>();
+        ArrayDeque<Visit> visits = new ArrayDeque<>();
+        visits.push(new Visit(graph.blocks.get(0), false));
+        while (!visits.isEmpty()) {
+            Visit visit = visits.pop();
+            if (visit.leave) {
+                undo(undoLog);
+                continue;
+            }
+
+            undoLog.push(visit);
+            visits.push(new Visit(visit.block, true));
+            visit(visit.block, undoLog);
+
+            List<BasicBlock> children = dominatorTree.getChildren(visit.block);
+            for (int i = children.size() - 1; i >= 0; i--)
+                visits.push(new Visit(children.get(i), false));
+        }
+
+        if (!changed)
+            return;
+
+        // Replace the uses of removed temporaries and insert the copies of leaders into their variables
+        for (BasicBlock block : graph.blocks) {
+            ArrayList<Instruction> instructions = new ArrayList<>(block.instructions.size() + 1);
+            for (Instruction instruction : block.instructions) {
+                if (removed.containsKey(instruction))
+                    continue;
+                replaceOperands(instruction.operands);
+                instructions.add(instruction);
+                Instruction copy = insertedCopies.get(instruction);
+                if (copy != null)
+                    instructions.add(copy);
+            }
+            replaceOperands(block.exitOperands);
+            block.instructions.clear();
+            block.instructions.addAll(instructions);
+        }
+        graph.removeDeadCode();
+    }
+
+    /**
+     * Assigns value numbers to the values defined within a block and replaces its redundant computations
+     *
+     * @param block   The block
+     * @param undoLog Log of changes to revert once the dominator subtree of the block has been visited
+     */
+    private void visit(BasicBlock block, ArrayDeque<Object> undoLog) {
+        // Phi functions merge the values of the predecessors, unknown if a predecessor hasn't been visited yet
+        BitSet blockPhis = phis.get(block.id);
+        for (int variable = blockPhis.nextSetBit(0); variable >= 0; variable = blockPhis.nextSetBit(variable + 1)) {
+            int valueNumber = -1;
+            for (BasicBlock predecessor : block.predecessors) {
+                int[] predecessorValueNumbers = exitValueNumbers[predecessor.id];
+                if (predecessorValueNumbers == null ||
+                        (valueNumber != -1 && valueNumber != predecessorValueNumbers[variable])) {
+                    valueNumber = -1;
+                    break;
+                }
+                valueNumber = predecessorValueNumbers[variable];
+            }
+            define(variable, valueNumber == -1 ? nextValueNumber++ : valueNumber, undoLog);
+        }
+
+        List<Instruction> instructions = block.instructions;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            Instruction.Opcode opcode = instruction.opcode;
+
+            int valueNumber;
+            if (opcode == Instruction.Opcode.CONSTANT) {
+                valueNumber = constants.computeIfAbsent(instruction.constant, constant -> nextValueNumber++);
+            } else if (opcode == Instruction.Opcode.COPY) {
+                valueNumber = valueNumber(instruction.operands[0]);
+            } else if (opcode.isBinary()) {
+                Expression expression = new Expression(opcode, valueNumber(instruction.operands[0]),
+                        valueNumber(instruction.operands[1]));
+                Expression leader = available.get(expression);
+                if (leader == null) {
+                    valueNumber = nextValueNumber++;
+                    expression.valueNumber = valueNumber;
+                    expression.instruction = instruction;
+                    available.put(expression, expression);
+                    undoLog.push(expression);
+                } else {
+                    // Redundant computation, replaced by the dominating result if that's cheaper
+                    valueNumber = leader.valueNumber;
+                    replace(block, i, leader.instruction);
+                }
+            } else {
+                // Field accesses and calls may yield different values each time
+                valueNumber = nextValueNumber++;
+            }
+
+            if (instruction.target != Instruction.NO_REGISTER)
+                define(instruction.target, valueNumber, undoLog);
+        }
+
+        exitValueNumbers[block.id] = variableValueNumbers.clone();
+    }
+
+    /**
+     * Replaces a redundant computation by the result of a dominating computation, unless keeping the result of the
+     * dominating computation in a local variable costs more than recomputing the value
+     *
+     * @param block  Block containing the redundant computation
+     * @param index  Index of the redundant computation within the block
+     * @param leader The dominating computation of the same value
+     */
+    private void replace(BasicBlock block, int index, Instruction leader) {
+        Instruction instruction = block.instructions.get(index);
+        Integer leaderRegister = leaderRegisters.get(leader);
+
+        // The result is available for free if it's kept in a local variable anyway
+        boolean available = leaderRegister != null || isSingleAssignment(leader.target) &&
+                (leader.target < graph.getVariableCount() || uses[leader.target] > 1);
+        if (!available && treeSize(block, index) < MINIMUM_SPILLED_SIZE)
+            return;
+
+        if (leaderRegister == null) {
+            leaderRegister = leader.target;
+            if (!isSingleAssignment(leader.target)) {
+                // The variable might be reassigned, keep the value in a new temporary register
+                leaderRegister = graph.newRegister();
+                valueNumbers = Arrays.copyOf(valueNumbers, graph.registerCount);
+                valueNumbers[leaderRegister] = valueNumber(leader.target);
+                insertedCopies.put(leader, new Instruction(Instruction.Opcode.COPY, leader.target, leaderRegister));
+                leader.target = leaderRegister;
+            }
+            leaderRegisters.put(leader, leaderRegister);
+        }
+
+        // The operands are computed by redundant computations too, which can't throw since the dominating ones didn't
+        removeOperands(block, index);
+        if (instruction.target >= graph.getVariableCount()) {
+            // Uses of the temporary read the leader's register instead
+            replacements.put(instruction.target, leaderRegister);
+            instruction.target = Instruction.NO_REGISTER;
+            removed.put(instruction, true);
+        } else {
+            instruction.opcode = Instruction.Opcode.COPY;
+            instruction.operands = new int[]{leaderRegister};
+        }
+        changed = true;
+    }
+
+    /**
+     * Determines if a register is assigned exactly once, such that it holds the same value wherever its definition
+     * dominates
+     *
+     * @param register The register
+     * @return True if the register is a temporary or a variable with a single definition
+     */
+    private boolean isSingleAssignment(int register) {
+        return register >= graph.getVariableCount() || definitionCounts[register] == 1;
+    }
+
+    /**
+     * Determines the number of bytecode instructions computing the result of an instruction, operands computed by
+     * single use temporaries of the same block are included
+     *
+     * @param block Block containing the instruction
+     * @param index Index of the instruction
+     * @return Number of instructions
+     */
+    private int treeSize(BasicBlock block, int index) {
+        int size = 0;
+        ArrayDeque<Instruction> pending = new ArrayDeque<>();
+        pending.push(block.instructions.get(index));
+        while (!pending.isEmpty()) {
+            Instruction instruction = pending.pop();
+            size++;
+            for (int operand : instruction.operands) {
+                if (operand >= graph.getVariableCount() && uses[operand] == 1) {
+                    Instruction definition = block.instructions.get(definitionIndexes[operand]);
+                    if (definition.target == operand) {
+                        pending.push(definition);
+                        continue;
+                    }
+                }
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes the computations of an instruction's operands which are computed by single use temporaries of the same
+     * block, the same operands {@link #treeSize} counts
+     *
+     * @param block Block containing the instruction
+     * @param index Index of the instruction
+     */
+    private void removeOperands(BasicBlock block, int index) {
+        ArrayDeque<Instruction> pending = new ArrayDeque<>();
+        pending.push(block.instructions.get(index));
+        while (!pending.isEmpty()) {
+            for (int operand : pending.pop().operands) {
+                if (operand >= graph.getVariableCount() && uses[operand] == 1) {
+                    Instruction definition = block.instructions.get(definitionIndexes[operand]);
+                    if (definition.target == operand) {
+                        removed.put(definition, true);
+                        pending.push(definition);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the value number of a register
+     *
+     * @param register    The defined register
+     * @param valueNumber The value number
+     * @param undoLog     Log of changes, variable definitions are reverted once the dominator subtree has been left
+     */
+    private void define(int register, int valueNumber, ArrayDeque<Object> undoLog) {
+        if (register < variableValueNumbers.length) {
+            undoLog.push(new int[]{register, variableValueNumbers[register]});
+            variableValueNumbers[register] = valueNumber;
+        } else {
+            valueNumbers[register] = valueNumber;
+        }
+    }
+
+    /**
+     * @param register A register
+     * @return The register's value number at the current position
+     */
+    private int valueNumber(int register) {
+        Integer replacement = replacements.get(register);
+        if (replacement != null)
+            register = replacement;
+        return register < variableValueNumbers.length ? variableValueNumbers[register] : valueNumbers[register];
+    }
+
+    /**
+     * Reverts the changes made while visiting a block
+     *
+     * @param undoLog Log of changes, starting with the visit of the block
+     */
+    private void undo(ArrayDeque<Object> undoLog) {
+        while (true) {
+            Object change = undoLog.pop();
+            if (change instanceof Visit)
+                return;
+            if (change instanceof Expression)
+                available.remove(change);
+            else
+                variableValueNumbers[((int[]) change)[0]] = ((int[]) change)[1];
+        }
+    }
+
+    /**
+     * Replaces operands by the registers replacing them
+     *
+     * @param operands The operands
+     */
+    private void replaceOperands(int[] operands) {
+        for (int i = 0; i < operands.length; i++)
+            operands[i] = replacements.getOrDefault(operands[i], operands[i]);
+    }
+
+    /**
+     * Visit of a block within the dominator tree walk
+     */
+    private static class Visit {
+
+        /**
+         * The visited block
+         */
+        final BasicBlock block;
+
+        /**
+         * True if the dominator subtree of the block is left
+         */
+        final boolean leave;
+
+        /**
+         * @param block The visited block
+         * @param leave True if the dominator subtree of the block is left
+         */
+        Visit(BasicBlock block, boolean leave) {
+            this.block = block;
+            this.leave = leave;
+        }
+    }
+
+    /**
+     * Computation identified by its operation and the value numbers of its operands
+     */
+    private static class Expression {
+
+        /**
+         * The operation
+         */
+        final Instruction.Opcode opcode;
+
+        /**
+         * Value number of the left operand
+         */
+        final int lhs;
+
+        /**
+         * Value number of the right operand
+         */
+        final int rhs;
+
+        /**
+         * Value number of the computed value
+         */
+        int valueNumber;
+
+        /**
+         * Instruction computing the value
+         */
+        Instruction instruction;
+
+        /**
+         * Creates an expression, the operands of commutative operations are ordered
+         *
+         * @param opcode The operation
+         * @param lhs    Value number of the left operand
+         * @param rhs    Value number of the right operand
+         */
+        Expression(Instruction.Opcode opcode, int lhs, int rhs) {
+            boolean commutative = opcode == Instruction.Opcode.ADD || opcode == Instruction.Opcode.MULTIPLY ||
+                    opcode == Instruction.Opcode.EQUAL;
+            this.opcode = opcode;
+            this.lhs = commutative ? Math.min(lhs, rhs) : lhs;
+            this.rhs = commutative ? Math.max(lhs, rhs) : rhs;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Expression))
+                return false;
+            Expression expression = (Expression) obj;
+            return opcode == expression.opcode && lhs == expression.lhs && rhs == expression.rhs;
+        }
+
+        @Override
+        public int hashCode() {
+            return (opcode.ordinal() * 31 + lhs) * 31 + rhs;
+        }
+    }
+}
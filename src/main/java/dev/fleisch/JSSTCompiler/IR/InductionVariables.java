@@ -0,0 +1,242 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Reduces multiplications of induction variables by constants within loops to additions.
+ * <p>
+ * Loops are identified by their back edges, edges leading to a block which dominates the edge's source (the loop
+ * header). A basic induction variable of a loop is a variable which is defined exactly once within the loop, by adding
+ * a constant to itself (or subtracting it). Multiplications of a basic induction variable by a constant within the
+ * loop are replaced by a new register. The register is initialized with the product in front of the loop and
+ * incremented by the product of the step and the constant right after the induction variable is incremented, hence it
+ * holds the product wherever the multiplication is evaluated. Since int arithmetic wraps around, this holds even if
+ * the values overflow.
+ * Inner loops are reduced first, the products initialized in front of an inner loop may be reduced by the outer loop.
+ *
+ * @author TillFleisch
+ */
+class InductionVariables {
+
+    /**
+     * The optimized graph
+     */
+    private final ControlFlowGraph graph;
+
+    /**
+     * Dominator tree of the graph
+     */
+    private final DominatorTree dominatorTree;
+
+    /**
+     * Value of each temporary register defined by a constant instruction
+     */
+    private final HashMap<Integer, Integer> constants;
+
+    /**
+     * Prepares the reduction of induction variables for a graph
+     *
+     * @param graph The graph to optimize
+     */
+    private InductionVariables(ControlFlowGraph graph) {
+        this.graph = graph;
+        dominatorTree = new DominatorTree(graph);
+        constants = graph.constants();
+    }
+
+    /**
+     * Reduces the multiplications of induction variables within the loops of a graph
+     *
+     * @param graph The graph to optimize
+     */
+    static void run(ControlFlowGraph graph) {
+        new InductionVariables(graph).run();
+    }
+
+    /**
+     * Finds the loops and reduces them, constants which are no longer used are removed afterwards
+     */
+    private void run() {
+        // Blocks of the loop of each header, a header may be the target of multiple back edges
+        List<BasicBlock> blocks = graph.blocks;
+        BitSet[] loops = new BitSet[blocks.size()];
+        for (BasicBlock block : blocks) {
+            for (BasicBlock successor : block.successors) {
+                if (!dominatorTree.dominates(successor, block))
+                    continue;
+                if (loops[successor.id] == null) {
+                    loops[successor.id] = new BitSet(blocks.size());
+                    loops[successor.id].set(successor.id);
+                }
+                addLoopBlocks(loops[successor.id], block);
+            }
+        }
+
+        // Loop conditions are placed below the loop body, hence inner loop headers precede outer loop headers
+        boolean changed = false;
+        for (BasicBlock block : blocks)
+            if (loops[block.id] != null && reduce(block, loops[block.id]))
+                changed = true;
+
+        if (changed)
+            graph.removeDeadCode();
+    }
+
+    /**
+     * Adds the blocks from which the source of a back edge can be reached without passing the loop header
+     *
+     * @param loop  Blocks of the loop, containing the header
+     * @param latch Source of the back edge
+     */
+    private void addLoopBlocks(BitSet loop, BasicBlock latch) {
+        if (loop.get(latch.id))
+            return;
+        loop.set(latch.id);
+
+        ArrayDeque<BasicBlock> worklist = new ArrayDeque<>();
+        worklist.push(latch);
+        while (!worklist.isEmpty()) {
+            for (BasicBlock predecessor : worklist.pop().predecessors) {
+                if (!loop.get(predecessor.id)) {
+                    loop.set(predecessor.id);
+                    worklist.push(predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reduces the multiplications of the basic induction variables within a loop
+     *
+     * @param header The loop header
+     * @param loop   Blocks of the loop
+     * @return True if any multiplication has been replaced
+     */
+    private boolean reduce(BasicBlock header, BitSet loop) {
+        // Products are initialized at the end of the only block entering the loop, which must not branch
+        BasicBlock preheader = null;
+        for (BasicBlock predecessor : header.predecessors) {
+            if (loop.get(predecessor.id))
+                continue;
+            if (preheader != null)
+                return false;
+            preheader = predecessor;
+        }
+        if (preheader == null || preheader.successors.size() != 1)
+            return false;
+
+        // Count the definitions of each variable within the loop
+        int variableCount = graph.getVariableCount();
+        int[] definitionCounts = new int[variableCount];
+        Instruction[] definitions = new Instruction[variableCount];
+        for (int id = loop.nextSetBit(0); id >= 0; id = loop.nextSetBit(id + 1)) {
+            for (Instruction instruction : graph.blocks.get(id).instructions) {
+                if (instruction.target != Instruction.NO_REGISTER && instruction.target < variableCount) {
+                    definitionCounts[instruction.target]++;
+                    definitions[instruction.target] = instruction;
+                }
+            }
+        }
+
+        // Registers holding the reduced products of each induction variable and constant
+        HashMap<Long, Integer> products = new HashMap<>();
+        // Increments of the products, inserted after the increments of the induction variables
+        IdentityHashMap<Instruction, List<Instruction>> insertions = new IdentityHashMap<>();
+        for (int id = loop.nextSetBit(0); id >= 0; id = loop.nextSetBit(id + 1)) {
+            for (Instruction instruction : graph.blocks.get(id).instructions) {
+                if (instruction.opcode != Instruction.Opcode.MULTIPLY)
+                    continue;
+
+                // Multiplication is commutative, the constant may be either operand
+                int variable = instruction.operands[0];
+                Integer factor = constants.get(instruction.operands[1]);
+                if (factor == null) {
+                    variable = instruction.operands[1];
+                    factor = constants.get(instruction.operands[0]);
+                }
+                if (factor == null || variable >= variableCount || definitionCounts[variable] != 1)
+                    continue;
+                Integer step = step(definitions[variable]);
+                if (step == null)
+                    continue;
+
+                long key = ((long) variable << 32) | (factor & 0xFFFFFFFFL);
+                Integer product = products.get(key);
+                if (product == null) {
+                    product = graph.newRegister();
+                    products.put(key, product);
+
+                    // product = variable * factor in front of the loop
+                    preheader.instructions.add(new Instruction(Instruction.Opcode.MULTIPLY, product, variable,
+                            constant(factor, preheader.instructions)));
+
+                    // product = product + step * factor after each increment
+                    List<Instruction> increment = insertions.computeIfAbsent(definitions[variable],
+                            d -> new ArrayList<>(2));
+                    increment.add(new Instruction(Instruction.Opcode.ADD, product, product,
+                            constant(step * factor, increment)));
+                }
+
+                instruction.opcode = Instruction.Opcode.COPY;
+                instruction.operands = new int[]{product};
+            }
+        }
+
+        if (products.isEmpty())
+            return false;
+
+        for (int id = loop.nextSetBit(0); id >= 0; id = loop.nextSetBit(id + 1)) {
+            BasicBlock block = graph.blocks.get(id);
+            ArrayList<Instruction> instructions = new ArrayList<>(block.instructions.size() + 2);
+            for (Instruction instruction : block.instructions) {
+                instructions.add(instruction);
+                List<Instruction> inserted = insertions.get(instruction);
+                if (inserted != null)
+                    instructions.addAll(inserted);
+            }
+            block.instructions.clear();
+            block.instructions.addAll(instructions);
+        }
+        return true;
+    }
+
+    /**
+     * Determines the step of a basic induction variable
+     *
+     * @param definition The only definition of the variable within a loop
+     * @return The constant added to the variable, null if the definition doesn't increment the variable
+     */
+    private Integer step(Instruction definition) {
+        int[] operands = definition.operands;
+        if (definition.opcode == Instruction.Opcode.ADD) {
+            // The constant may be either operand
+            if (operands[0] == definition.target)
+                return constants.get(operands[1]);
+            if (operands[1] == definition.target)
+                return constants.get(operands[0]);
+        } else if (definition.opcode == Instruction.Opcode.SUBTRACT && operands[0] == definition.target) {
+            Integer constant = constants.get(operands[1]);
+            return constant == null ? null : -constant;
+        }
+        return null;
+    }
+
+    /**
+     * Appends a constant instruction
+     *
+     * @param value        The constant value
+     * @param instructions Instructions to which the constant is appended
+     * @return The new temporary holding the constant
+     */
+    private int constant(int value, List<Instruction> instructions) {
+        int register = graph.newRegister();
+        instructions.add(Instruction.constant(register, value));
+        constants.put(register, value);
+        return register;
+    }
+}
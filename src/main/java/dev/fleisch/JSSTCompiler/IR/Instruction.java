@@ -0,0 +1,226 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import dev.fleisch.JSSTCompiler.Objekt;
+import dev.fleisch.JSSTCompiler.Operation;
+
+import java.util.Arrays;
+
+/**
+ * Three-address instruction operating on the int values held by virtual registers.
+ * <p>
+ * An instruction defines at most one register (its target) and reads its operand registers. Constants are introduced
+ * by {@link Opcode#CONSTANT} instructions, class variables are accessed by {@link Opcode#GET_FIELD} and
+ * {@link Opcode#PUT_FIELD} instructions. Shifts have no JavaSST equivalent, they are introduced by
+ * {@link StrengthReduction}.
+ *
+ * @author TillFleisch
+ */
+public class Instruction {
+
+    /**
+     * Register value of instructions without target
+     */
+    public static final int NO_REGISTER = -1;
+
+    /**
+     * Operations of instructions
+     *
+     * @author TillFleisch
+     */
+    public enum Opcode {
+        CONSTANT, COPY, ADD, SUBTRACT, MULTIPLY, DIVIDE, SHIFT_LEFT, SHIFT_RIGHT, SHIFT_RIGHT_UNSIGNED, EQUAL, LESS, LESS_EQUAL, GREATER, GREATER_EQUAL,
+        GET_FIELD, PUT_FIELD, CALL;
+
+        /**
+         * Determines the opcode of a (non-assignment) binary operation
+         *
+         * @param operation The binary operation
+         * @return The equivalent opcode
+         */
+        static Opcode of(Operation.Binary operation) {
+            return switch (operation) {
+                case ADDITION -> ADD;
+                case SUBTRACTION -> SUBTRACT;
+                case MULTIPLICATION -> MULTIPLY;
+                case DIVISION -> DIVIDE;
+                case EQUAL -> EQUAL;
+                case LESS -> LESS;
+                case LESS_EQUAL -> LESS_EQUAL;
+                case GREATER -> GREATER;
+                case GREATER_EQUAL -> GREATER_EQUAL;
+                case ASSIGNMENT -> throw new IllegalArgumentException("Assignments are not an operation");
+            };
+        }
+
+        /**
+         * @return True if the opcode combines two operands into its target
+         */
+        public boolean isBinary() {
+            return ordinal() >= ADD.ordinal() && ordinal() <= GREATER_EQUAL.ordinal();
+        }
+
+        /**
+         * @return True if the opcode's value is determined by its operands only (no side effects or memory access)
+         */
+        public boolean isPure() {
+            return this == CONSTANT || this == COPY || isBinary();
+        }
+    }
+
+    /**
+     * The instruction's operation
+     */
+    Opcode opcode;
+
+    /**
+     * Register defined by this instruction, {@link #NO_REGISTER} if none
+     */
+    int target;
+
+    /**
+     * Registers read by this instruction
+     */
+    int[] operands;
+
+    /**
+     * Value of {@link Opcode#CONSTANT} instructions
+     */
+    int constant;
+
+    /**
+     * Class variable accessed by {@link Opcode#GET_FIELD} and {@link Opcode#PUT_FIELD} instructions
+     */
+    Objekt.Parameter field;
+
+    /**
+     * Procedure invoked by {@link Opcode#CALL} instructions
+     */
+    Objekt.Procedure procedure;
+
+    /**
+     * Creates an instruction
+     *
+     * @param opcode   The instruction's operation
+     * @param target   The defined register, {@link #NO_REGISTER} if none
+     * @param operands The registers read
+     */
+    Instruction(Opcode opcode, int target, int... operands) {
+        this.opcode = opcode;
+        this.target = target;
+        this.operands = operands;
+    }
+
+    /**
+     * Creates a constant instruction
+     *
+     * @param target   The defined register
+     * @param constant The constant value
+     * @return The instruction
+     */
+    static Instruction constant(int target, int constant) {
+        Instruction instruction = new Instruction(Opcode.CONSTANT, target);
+        instruction.constant = constant;
+        return instruction;
+    }
+
+    /**
+     * @return The instruction's operation
+     */
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return The register defined by this instruction, {@link #NO_REGISTER} if none
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The registers read by this instruction, in order
+     */
+    public int[] getOperands() {
+        return operands;
+    }
+
+    /**
+     * @return The value of a constant instruction
+     */
+    public int getConstant() {
+        return constant;
+    }
+
+    /**
+     * @return The class variable accessed by a field instruction
+     */
+    public Objekt.Parameter getField() {
+        return field;
+    }
+
+    /**
+     * @return The procedure invoked by a call instruction
+     */
+    public Objekt.Procedure getProcedure() {
+        return procedure;
+    }
+
+    /**
+     * Textual representation of the instruction
+     *
+     * @param graph The graph containing the instruction, used for register names
+     * @return The instruction in three-address notation
+     */
+    String toString(ControlFlowGraph graph) {
+        StringBuilder stringBuilder = new StringBuilder();
+        if (target != NO_REGISTER)
+            stringBuilder.append(graph.registerName(target)).append(" = ");
+
+        switch (opcode) {
+            case CONSTANT -> stringBuilder.append(constant);
+            case COPY -> stringBuilder.append(graph.registerName(operands[0]));
+            case GET_FIELD -> stringBuilder.append("this.").append(field.getName());
+            case PUT_FIELD -> stringBuilder.append("this.").append(field.getName()).append(" = ")
+                    .append(graph.registerName(operands[0]));
+            case CALL -> {
+                stringBuilder.append(procedure.getName()).append("(");
+                for (int i = 0; i < operands.length; i++) {
+                    if (i > 0)
+                        stringBuilder.append(", ");
+                    stringBuilder.append(graph.registerName(operands[i]));
+                }
+                stringBuilder.append(")");
+            }
+            default -> stringBuilder.append(graph.registerName(operands[0])).append(" ").append(symbol(opcode))
+                    .append(" ").append(graph.registerName(operands[1]));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @param opcode A binary opcode
+     * @return The opcode's operator symbol
+     */
+    private static String symbol(Opcode opcode) {
+        return switch (opcode) {
+            case ADD -> "+";
+            case SUBTRACT -> "-";
+            case MULTIPLY -> "*";
+            case DIVIDE -> "/";
+            case SHIFT_LEFT -> "<<";
+            case SHIFT_RIGHT -> ">>";
+            case SHIFT_RIGHT_UNSIGNED -> ">>>";
+            case EQUAL -> "==";
+            case LESS -> "<";
+            case LESS_EQUAL -> "<=";
+            case GREATER -> ">";
+            case GREATER_EQUAL -> ">=";
+            default -> opcode.name();
+        };
+    }
+
+    @Override
+    public String toString() {
+        return opcode + " " + target + " " + Arrays.toString(operands);
+    }
+}
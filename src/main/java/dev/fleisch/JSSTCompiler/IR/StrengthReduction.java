@@ -0,0 +1,187 @@
+package dev.fleisch.JSSTCompiler.IR;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Replaces multiplications and divisions by constants with cheaper shifts and additions.
+ * <p>
+ * Multiplications by powers of two become left shifts. Multiplications by 2^k + 1 and 2^k - 1 become a shift followed
+ * by an addition or subtraction, if the other operand already lives in a local variable (reading it twice doesn't
+ * require an additional store). Signed divisions by positive powers of two become arithmetic right shifts, negative
+ * dividends are biased by 2^k - 1 first, such that the result is rounded toward zero like idiv does.
+ * The results are the same as those of imul and idiv for all int values, including overflows.
+ *
+ * @author TillFleisch
+ */
+class StrengthReduction {
+
+    /**
+     * The optimized graph
+     */
+    private final ControlFlowGraph graph;
+
+    /**
+     * Value of each temporary register defined by a constant instruction
+     */
+    private final HashMap<Integer, Integer> constants;
+
+    /**
+     * Number of reads per register before optimization
+     */
+    private final int[] uses;
+
+    /**
+     * Prepares strength reduction for a graph
+     *
+     * @param graph The graph to optimize
+     */
+    private StrengthReduction(ControlFlowGraph graph) {
+        this.graph = graph;
+        uses = graph.countUses();
+        constants = graph.constants();
+    }
+
+    /**
+     * Replaces multiplications and divisions by constants within a graph
+     *
+     * @param graph The graph to optimize
+     */
+    static void run(ControlFlowGraph graph) {
+        new StrengthReduction(graph).run();
+    }
+
+    /**
+     * Reduces the instructions of all blocks, constants which are no longer used are removed afterwards
+     */
+    private void run() {
+        boolean changed = false;
+        for (BasicBlock block : graph.blocks) {
+            ArrayList<Instruction> instructions = new ArrayList<>(block.instructions.size());
+            for (Instruction instruction : block.instructions) {
+                if (reduce(instruction, instructions))
+                    changed = true;
+                else
+                    instructions.add(instruction);
+            }
+            block.instructions.clear();
+            block.instructions.addAll(instructions);
+        }
+
+        if (changed)
+            graph.removeDeadCode();
+    }
+
+    /**
+     * Emits a cheaper sequence of instructions computing the same value as an instruction
+     *
+     * @param instruction  The instruction
+     * @param instructions Instructions of the block, the sequence is appended
+     * @return True if the instruction has been replaced, false if it must be kept
+     */
+    private boolean reduce(Instruction instruction, List<Instruction> instructions) {
+        if (instruction.opcode == Instruction.Opcode.MULTIPLY) {
+            // Multiplication is commutative, the constant may be either operand
+            int operand = instruction.operands[0];
+            Integer factor = constants.get(instruction.operands[1]);
+            if (factor == null) {
+                operand = instruction.operands[1];
+                factor = constants.get(instruction.operands[0]);
+            }
+            return factor != null && multiply(instruction.target, operand, factor, instructions);
+        }
+        if (instruction.opcode == Instruction.Opcode.DIVIDE) {
+            Integer divisor = constants.get(instruction.operands[1]);
+            return divisor != null && divide(instruction.target, instruction.operands[0], divisor, instructions);
+        }
+        return false;
+    }
+
+    /**
+     * Emits a multiplication by a constant as shifts and additions
+     *
+     * @param target       Register defined by the multiplication
+     * @param operand      Register holding the other factor
+     * @param factor       The constant factor
+     * @param instructions Instructions of the block, the sequence is appended
+     * @return True if the multiplication has been replaced
+     */
+    private boolean multiply(int target, int operand, int factor, List<Instruction> instructions) {
+        // x * 2^k = x << k, this includes 2^31 since the product wraps around
+        if (Integer.bitCount(factor) == 1 && factor != 1) {
+            shift(Instruction.Opcode.SHIFT_LEFT, target, operand, Integer.numberOfTrailingZeros(factor), instructions);
+            return true;
+        }
+
+        // The operand is read twice, which is only cheaper if it doesn't have to be stored first
+        if (factor < 3 || !(operand < graph.getVariableCount() || uses[operand] > 1))
+            return false;
+
+        // x * (2^k + 1) = (x << k) + x, x * (2^k - 1) = (x << k) - x
+        Instruction.Opcode opcode;
+        int distance;
+        if (Integer.bitCount(factor - 1) == 1) {
+            opcode = Instruction.Opcode.ADD;
+            distance = Integer.numberOfTrailingZeros(factor - 1);
+        } else if (Integer.bitCount(factor + 1) == 1) {
+            opcode = Instruction.Opcode.SUBTRACT;
+            distance = Integer.numberOfTrailingZeros(factor + 1);
+        } else {
+            return false;
+        }
+        int shifted = shift(Instruction.Opcode.SHIFT_LEFT, graph.newRegister(), operand, distance, instructions);
+        instructions.add(new Instruction(opcode, target, shifted, operand));
+        return true;
+    }
+
+    /**
+     * Emits a signed division by a positive power of two as shifts, rounding toward zero
+     *
+     * @param target       Register defined by the division
+     * @param operand      Register holding the dividend
+     * @param divisor      The constant divisor
+     * @param instructions Instructions of the block, the sequence is appended
+     * @return True if the division has been replaced
+     */
+    private boolean divide(int target, int operand, int divisor, List<Instruction> instructions) {
+        // Divisions by 0 must still throw, negative divisors are left to idiv
+        if (divisor <= 1 || Integer.bitCount(divisor) != 1)
+            return false;
+        int distance = Integer.numberOfTrailingZeros(divisor);
+
+        // The bias is 2^k - 1 for negative dividends and 0 otherwise: (x >> 31) >>> (32 - k)
+        int bias;
+        if (distance == 1) {
+            bias = shift(Instruction.Opcode.SHIFT_RIGHT_UNSIGNED, graph.newRegister(), operand, 31, instructions);
+        } else {
+            int sign = shift(Instruction.Opcode.SHIFT_RIGHT, graph.newRegister(), operand, 31, instructions);
+            bias = shift(Instruction.Opcode.SHIFT_RIGHT_UNSIGNED, graph.newRegister(), sign, 32 - distance,
+                    instructions);
+        }
+
+        // The bias is added first, such that it can remain on the stack
+        int biased = graph.newRegister();
+        instructions.add(new Instruction(Instruction.Opcode.ADD, biased, bias, operand));
+        shift(Instruction.Opcode.SHIFT_RIGHT, target, biased, distance, instructions);
+        return true;
+    }
+
+    /**
+     * Emits a shift by a constant distance
+     *
+     * @param opcode       The shift operation
+     * @param target       Register defined by the shift
+     * @param operand      Register holding the shifted value
+     * @param distance     The shift distance
+     * @param instructions Instructions of the block, the shift is appended
+     * @return The target register
+     */
+    private int shift(Instruction.Opcode opcode, int target, int operand, int distance,
+                      List<Instruction> instructions) {
+        int distanceRegister = graph.newRegister();
+        instructions.add(Instruction.constant(distanceRegister, distance));
+        instructions.add(new Instruction(opcode, target, operand, distanceRegister));
+        return target;
+    }
+}
@@ -2,19 +2,40 @@ package dev.fleisch.JSSTCompiler;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Input class which manages basic file processing of JavaSST source files.
+ * <p>
+ * Characters are served from a {@link ByteBuffer}. Source files are memory-mapped, input streams are read in large
+ * chunks. This avoids issuing system calls for every single character.
  *
  * @author TillFleisch
  */
 public class Input {
 
     /**
-     * Inputsteam
+     * Size of the chunks read from input streams
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Sentinel character returned once the end of the input has been reached.
+     * Source bytes are mapped onto 0..255, hence this value can't occur within the input.
+     */
+    public static final char EOF = '\uFFFF';
+
+    /**
+     * Inputsteam, null if the source file has been memory-mapped
      */
     private final InputStream inputStream;
 
+    /**
+     * Buffer from which characters are read
+     */
+    private ByteBuffer buffer;
+
     /**
      * The input stream's position within the file.
      */
@@ -26,31 +47,42 @@ public class Input {
     private boolean available = true;
 
     /**
-     * Creates a Input object for a given JavaSST source file
+     * Creates a Input object for a given JavaSST source file.
+     * The file is memory-mapped and read directly from the mapped buffer.
      *
      * @param filePath Path pointing to a JavaSST source file
      * @throws FileNotFoundException If the source file is not available
+     * @throws IOException           If the source file cannot be mapped
      */
-    public Input(String filePath) throws FileNotFoundException {
-        inputStream = new FileInputStream(filePath);
+    public Input(String filePath) throws IOException {
+        inputStream = null;
+        try (FileChannel channel = new FileInputStream(filePath).getChannel()) {
+            // The mapping remains valid after the channel has been closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 
     /**
-     * Creates a Input object for a given JavaSST input stream
+     * Creates a Input object for a given JavaSST input stream.
+     * The stream is read in chunks of {@link #CHUNK_SIZE} bytes.
      */
     public Input(InputStream inputStream) {
         this.inputStream = inputStream;
+        this.buffer = ByteBuffer.wrap(new byte[CHUNK_SIZE], 0, 0);
     }
 
     /**
      * Reads the next character available on the input file.
      *
-     * @return Next file
-     * @throws IOException If reading fails, or EOF has been reached.
+     * @return Next character, {@link #EOF} if the end of the input has been reached
+     * @throws IOException If reading fails
      */
     public char next() throws IOException {
-        if (available && inputStream.available() != 0) {
-            char c = (char) inputStream.read();
+        if (!available)
+            return EOF;
+
+        if (buffer.hasRemaining() || refill()) {
+            char c = (char) (buffer.get() & 0xFF);
 
             // Increase position and line to keep track of the streams position
             codePosition.setColumn(codePosition.getColumn() + 1);
@@ -62,11 +94,31 @@ public class Input {
             return c;
         } else {
             available = false;
-            inputStream.close();
-            throw new EOFException();
+            if (inputStream != null)
+                inputStream.close();
+            return EOF;
         }
     }
 
+    /**
+     * Refills the buffer with the next chunk from the input stream.
+     *
+     * @return true if new content is available within the buffer
+     * @throws IOException If reading from the input stream fails
+     */
+    private boolean refill() throws IOException {
+        // Memory-mapped files are read in their entirety
+        if (inputStream == null)
+            return false;
+
+        int read = inputStream.read(buffer.array());
+        if (read <= 0)
+            return false;
+
+        buffer.position(0).limit(read);
+        return true;
+    }
+
     /**
      * Determines if the input is available
      *
@@ -0,0 +1,105 @@
+package dev.fleisch.JSSTCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Deterministic finite automaton recognizing all {@link Keyword}s.
+ * <p>
+ * The automaton is a trie built once from the Keyword ENUM. Each state has a transition table over ASCII characters,
+ * hence a token is recognized in O(length) without creating intermediate strings.
+ *
+ * @author TillFleisch
+ */
+final class KeywordAutomaton {
+
+    /**
+     * Initial state of the automaton
+     */
+    static final int START = 0;
+
+    /**
+     * Dead state, no keyword can be reached from this state
+     */
+    static final int DEAD = -1;
+
+    /**
+     * Number of characters covered by the transition table (ASCII)
+     */
+    private static final int ALPHABET_SIZE = 128;
+
+    /**
+     * Transition table indexed by state and character
+     */
+    private static final int[][] transitions;
+
+    /**
+     * Keyword accepted in a given state, null for non-accepting states
+     */
+    private static final Keyword[] accepting;
+
+    static {
+        ArrayList<int[]> transitionList = new ArrayList<>();
+        ArrayList<Keyword> acceptingList = new ArrayList<>();
+
+        // Create the start state
+        transitionList.add(newState());
+        acceptingList.add(null);
+
+        // Insert all keywords into the trie
+        for (Keyword keyword : Keyword.values()) {
+            int state = START;
+            for (char c : keyword.getKeyword().toCharArray()) {
+                if (transitionList.get(state)[c] == DEAD) {
+                    transitionList.add(newState());
+                    acceptingList.add(null);
+                    transitionList.get(state)[c] = transitionList.size() - 1;
+                }
+                state = transitionList.get(state)[c];
+            }
+            acceptingList.set(state, keyword);
+        }
+
+        transitions = transitionList.toArray(new int[0][]);
+        accepting = acceptingList.toArray(new Keyword[0]);
+    }
+
+    private KeywordAutomaton() {
+    }
+
+    /**
+     * Creates the transition table for a new state without any transitions
+     *
+     * @return Transition table leading into the dead state
+     */
+    private static int[] newState() {
+        int[] state = new int[ALPHABET_SIZE];
+        Arrays.fill(state, DEAD);
+        return state;
+    }
+
+    /**
+     * Determines the following state for a given character
+     *
+     * @param state The current state
+     * @param c     The character read
+     * @return The following state, {@link #DEAD} if no keyword can be reached anymore
+     */
+    static int next(int state, char c) {
+        if (state == DEAD || c >= ALPHABET_SIZE)
+            return DEAD;
+        return transitions[state][c];
+    }
+
+    /**
+     * Determines the keyword accepted in a given state
+     *
+     * @param state The state to check
+     * @return The accepted keyword, null if the state is not accepting
+     */
+    static Keyword accepts(int state) {
+        if (state == DEAD)
+            return null;
+        return accepting[state];
+    }
+}
@@ -1,8 +1,8 @@
 package dev.fleisch.JSSTCompiler;
 
 import dev.fleisch.JSSTCompiler.ByteCodeGenerator.ByteCodeGenerator;
+import dev.fleisch.JSSTCompiler.IR.ControlFlowGraph;
 
-import java.io.EOFException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -18,22 +18,23 @@ public class Main {
         try {
             Parser parser = new Parser(new Scanner(new Input(args[0])));
 
-            byteCodeGeneration(parser, args.length >= 2 && Boolean.parseBoolean(args[1]));
+            byteCodeGeneration(parser, args.length >= 2 && Boolean.parseBoolean(args[1]),
+                    args.length >= 3 && Boolean.parseBoolean(args[2]),
+                    args.length >= 4 && Boolean.parseBoolean(args[3]));
         } catch (ScannerException | IOException | ParserException e) {
             throw new RuntimeException(e);
         }
     }
 
     public static void scannerTest() {
+        Scanner.ScannerTest.runTests();
+
         try {
             Input input = new Input("JavaSSTSourceCode/ScannerTest.jsst");
             Scanner scanner = new Scanner(input);
-            while (true) {
-                Symbol<?> symbol = scanner.nextSymbol();
-                System.out.println(symbol);
+            while (scanner.nextToken() != Token.EOF) {
+                System.out.println(scanner.tokenToString());
             }
-        } catch (EOFException e) {
-
         } catch (IOException | ScannerException e) {
             throw new RuntimeException(e);
         }
@@ -54,21 +55,36 @@ public class Main {
         }
     }
 
-    public static void byteCodeGeneration(Parser parser, boolean createDotFile) {
+    public static void optimizerTest() {
+        ByteCodeGenerator.OptimizerTest.runTests();
+    }
+
+    public static void byteCodeGeneration(Parser parser, boolean createDotFile, boolean parallel,
+                                          boolean optimize) {
         try {
             Objekt.Clasz clasz = parser.parse();
 
-            SemanticAnalysis.run(clasz);
+            SemanticAnalysis.run(clasz, parallel);
 
-            // Write dot file if required
+            // Write dot file if required, it shows the ASTs as parsed (before constant folding)
             if (createDotFile) {
                 try (PrintWriter fileOutputStream = new PrintWriter(new FileOutputStream(clasz.name + ".dot"))) {
                     fileOutputStream.write(clasz.toDot(true, true, true));
                 }
             }
 
+            ConstantFolding.run(clasz, parallel);
+
             // Create a bytecode generator
-            ByteCodeGenerator byteCodeGenerator = new ByteCodeGenerator(clasz);
+            ByteCodeGenerator byteCodeGenerator = new ByteCodeGenerator(clasz, parallel, optimize);
+
+            // Write the control flow graphs if required
+            if (createDotFile && optimize) {
+                try (PrintWriter fileOutputStream = new PrintWriter(new FileOutputStream(clasz.name + ".ir"))) {
+                    for (ControlFlowGraph controlFlowGraph : byteCodeGenerator.getControlFlowGraphs())
+                        fileOutputStream.write(controlFlowGraph + "\n");
+                }
+            }
 
             // Generate ByteCode and write to file
             try (FileOutputStream fileOutputStream = new FileOutputStream(clasz.name + ".class")) {
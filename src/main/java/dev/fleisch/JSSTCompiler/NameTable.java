@@ -0,0 +1,155 @@
+package dev.fleisch.JSSTCompiler;
+
+/**
+ * Compiler-wide name table which interns identifiers into integer IDs.
+ * <p>
+ * Every name is stored exactly once. The Scanner, the SymbolTable entries and the ConstantPool refer to names by
+ * their ID, hence name comparisons are int comparisons.
+ * The table uses open addressing and can intern character sequences without creating a String for known names.
+ *
+ * @author TillFleisch
+ */
+public final class NameTable {
+
+    /**
+     * Hash table containing name IDs + 1, 0 marks empty slots
+     */
+    private static int[] table = new int[1024];
+
+    /**
+     * Interned names indexed by their ID
+     */
+    private static String[] names = new String[512];
+
+    /**
+     * Number of interned names
+     */
+    private static int size = 0;
+
+    private NameTable() {
+    }
+
+    /**
+     * Interns a name given as a sequence of characters
+     *
+     * @param characters Array containing the name
+     * @param offset     Offset of the name within the array
+     * @param length     Length of the name
+     * @return The name's ID
+     */
+    public static synchronized int intern(char[] characters, int offset, int length) {
+        // Same hash as String.hashCode(), such that both intern methods find the same slots
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + characters[i];
+
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == 0)
+                return insert(slot, new String(characters, offset, length));
+
+            String name = names[table[slot] - 1];
+            if (name.hashCode() == hash && matches(name, characters, offset, length))
+                return table[slot] - 1;
+        }
+    }
+
+    /**
+     * Interns a name
+     *
+     * @param name The name to intern
+     * @return The name's ID
+     */
+    public static synchronized int intern(String name) {
+        int hash = name.hashCode();
+
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == 0)
+                return insert(slot, name);
+
+            if (names[table[slot] - 1].equals(name))
+                return table[slot] - 1;
+        }
+    }
+
+    /**
+     * Retrieves an interned name
+     *
+     * @param id The name's ID
+     * @return The name represented by the ID
+     */
+    public static synchronized String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Inserts a new name into an empty slot and grows the table if required
+     *
+     * @param slot Empty slot within the hash table
+     * @param name The name to insert
+     * @return The new name's ID
+     */
+    private static int insert(int slot, String name) {
+        if (size == names.length) {
+            String[] grownNames = new String[size * 2];
+            System.arraycopy(names, 0, grownNames, 0, size);
+            names = grownNames;
+        }
+
+        int id = size++;
+        names[id] = name;
+        table[slot] = id + 1;
+
+        // Keep the load factor below 1/2
+        if (size * 2 > table.length)
+            rehash();
+
+        return id;
+    }
+
+    /**
+     * Doubles the size of the hash table and reinserts all names
+     */
+    private static void rehash() {
+        int[] grownTable = new int[table.length * 2];
+        int mask = grownTable.length - 1;
+
+        for (int id = 0; id < size; id++) {
+            int slot = spread(names[id].hashCode()) & mask;
+            while (grownTable[slot] != 0)
+                slot = (slot + 1) & mask;
+            grownTable[slot] = id + 1;
+        }
+
+        table = grownTable;
+    }
+
+    /**
+     * Spreads the higher bits of a hash to the lower bits used for slot selection
+     *
+     * @param hash Hash to spread
+     * @return Spread hash
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Determines if a name matches a sequence of characters
+     *
+     * @param name       Name to compare
+     * @param characters Array containing the character sequence
+     * @param offset     Offset of the sequence within the array
+     * @param length     Length of the sequence
+     * @return True if the name and the sequence are equal
+     */
+    private static boolean matches(String name, char[] characters, int offset, int length) {
+        if (name.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+            if (name.charAt(i) != characters[offset + i])
+                return false;
+        return true;
+    }
+}
@@ -1,6 +1,9 @@
 package dev.fleisch.JSSTCompiler;
 
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Class containing Nodes making up an abstract syntax Tree.
@@ -15,6 +18,16 @@ public abstract class Node {
 
     private CodePosition codePosition;
 
+    /**
+     * Attribute determined by semantic analysis: the node leaves a value, i.e. it can be used as an expression
+     */
+    boolean producesValue;
+
+    /**
+     * Attribute determined by semantic analysis: all paths through the node end with a return statement
+     */
+    boolean alwaysReturns;
+
     /**
      * Constructor for basic binary tree Notes.
      *
@@ -66,15 +79,95 @@ public abstract class Node {
 
     /**
      * Traverse the tree starting from this node(root)
+     * <p>
+     * Nodes are passed to {@link TraverseCallback#onTraverse(Node)} before and to
+     * {@link TraverseCallback#onLeave(Node)} after their children. The traversal is driven by an explicit stack,
+     * hence the depth of the tree is not limited by the thread's stack size.
      */
     public void traverse(TraverseCallback traverseCallback) throws Exception {
-        traverseCallback.onTraverse(this);
-        if (left != null)
-            left.traverse(traverseCallback);
+        Traversal traversal = new Traversal();
+        traversal.push(this, Traversal.EXPAND);
+
+        while (!traversal.nodes.isEmpty()) {
+            Node node = traversal.nodes.pop();
+            switch (traversal.steps.pop()) {
+                case Traversal.EXPAND -> node.expand(traversal);
+                case Traversal.ENTER -> traverseCallback.onTraverse(node);
+                case Traversal.LEAVE -> traverseCallback.onLeave(node);
+            }
+        }
+    }
+
+    /**
+     * Pushes the traversal steps of this node, the step pushed last is executed first.
+     * The node is entered, followed by the left and right subtree before it's left.
+     *
+     * @param traversal Pending traversal steps
+     */
+    void expand(Traversal traversal) {
+        traversal.push(this, Traversal.LEAVE);
         if (right != null)
-            right.traverse(traverseCallback);
+            traversal.push(right, Traversal.EXPAND);
+        if (left != null)
+            traversal.push(left, Traversal.EXPAND);
+        traversal.push(this, Traversal.ENTER);
     }
 
+    /**
+     * Explicit stack of pending traversal steps
+     *
+     * @author TillFleisch
+     */
+    static class Traversal {
+
+        /**
+         * Step pushing the traversal steps of a node
+         */
+        static final int EXPAND = 0;
+
+        /**
+         * Step calling the pre-order callback
+         */
+        static final int ENTER = 1;
+
+        /**
+         * Step calling the post-order callback
+         */
+        static final int LEAVE = 2;
+
+        /**
+         * Nodes of the pending steps
+         */
+        final ArrayDeque<Node> nodes = new ArrayDeque<>();
+
+        /**
+         * Kinds of the pending steps
+         */
+        final ArrayDeque<Integer> steps = new ArrayDeque<>();
+
+        /**
+         * Pushes a step
+         *
+         * @param node The node to process
+         * @param step The kind of step
+         */
+        void push(Node node, int step) {
+            nodes.push(node);
+            steps.push(step);
+        }
+    }
+
+    /**
+     * Dispatches this node to the visitor's method for the node's type
+     *
+     * @param visitor The visitor
+     * @param <R>     Result type of the visitor
+     * @param <E>     Exception type thrown by the visitor
+     * @return The visitor's result for this node
+     * @throws E If visiting fails
+     */
+    public abstract <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E;
+
     @Override
     public abstract String toString();
 
@@ -110,6 +203,11 @@ public abstract class Node {
             return operation;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "BinaryOperationNode:\\l\t" + operation.name() + "\\l\t " + getCodePosition();
@@ -148,6 +246,11 @@ public abstract class Node {
             return operation;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "UnaryOperationNode:\\l\t" + operation.name() + "\\l\t " + getCodePosition();
@@ -185,6 +288,11 @@ public abstract class Node {
             return value;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "ConstantNode:\\l\t" + value + "\\l\t " + getCodePosition();
@@ -201,6 +309,11 @@ public abstract class Node {
          */
         String identifier;
 
+        /**
+         * The identifier as {@link NameTable} ID
+         */
+        final int nameId;
+
         /**
          * Reference to symbol table entry
          */
@@ -213,8 +326,19 @@ public abstract class Node {
          * @param codePosition The Nodes position within the code
          */
         public IdentifierNode(String identifier, CodePosition codePosition) {
+            this(NameTable.intern(identifier), codePosition);
+        }
+
+        /**
+         * Constructor for identifier nodes with an interned identifier
+         *
+         * @param nameId       The identifiers name as {@link NameTable} ID
+         * @param codePosition The Nodes position within the code
+         */
+        public IdentifierNode(int nameId, CodePosition codePosition) {
             super(null, null, codePosition);
-            this.identifier = identifier;
+            this.identifier = NameTable.name(nameId);
+            this.nameId = nameId;
         }
 
         /**
@@ -235,6 +359,11 @@ public abstract class Node {
             return symbolTableEntry;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "IdentifierNode:\\l\t" + identifier + "\\l\t " + getCodePosition();
@@ -272,15 +401,21 @@ public abstract class Node {
             return condition;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "WhileNode" + "\\l\t " + getCodePosition();
         }
 
         @Override
-        public void traverse(TraverseCallback traverseCallback) throws Exception {
-            condition.traverse(traverseCallback);
-            super.traverse(traverseCallback);
+        void expand(Traversal traversal) {
+            // The condition is traversed before the node itself
+            super.expand(traversal);
+            traversal.push(condition, Traversal.EXPAND);
         }
     }
 
@@ -316,15 +451,21 @@ public abstract class Node {
             return condition;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "IfNode" + "\\l\t " + getCodePosition();
         }
 
         @Override
-        public void traverse(TraverseCallback traverseCallback) throws Exception {
-            condition.traverse(traverseCallback);
-            super.traverse(traverseCallback);
+        void expand(Traversal traversal) {
+            // The condition is traversed before the node itself
+            super.expand(traversal);
+            traversal.push(condition, Traversal.EXPAND);
         }
     }
 
@@ -340,6 +481,11 @@ public abstract class Node {
 
         String identifier;
 
+        /**
+         * The procedures identifier as {@link NameTable} ID
+         */
+        final int nameId;
+
         /**
          * Constructor for Procedure call nodes
          *
@@ -348,8 +494,20 @@ public abstract class Node {
          * @param codePosition The Nodes position within the code
          */
         public ProcedureCallNode(String identifier, StatementSequenceNode parameters, CodePosition codePosition) {
+            this(NameTable.intern(identifier), parameters, codePosition);
+        }
+
+        /**
+         * Constructor for Procedure call nodes with an interned identifier
+         *
+         * @param nameId       The procedures identifier as {@link NameTable} ID
+         * @param parameters   The parameters to use for the procedure calls
+         * @param codePosition The Nodes position within the code
+         */
+        public ProcedureCallNode(int nameId, StatementSequenceNode parameters, CodePosition codePosition) {
             super(parameters, null, codePosition);
-            this.identifier = identifier;
+            this.identifier = NameTable.name(nameId);
+            this.nameId = nameId;
         }
 
         /**
@@ -361,15 +519,29 @@ public abstract class Node {
             this.symbolTableEntry = symbolTableEntry;
         }
 
+        /**
+         * Returns the number of parameters passed to the procedure
+         *
+         * @return The number of parameters
+         */
+        public int getParameterCount() {
+            return ((StatementSequenceNode) left).statements.size();
+        }
+
         /**
          * Returns the SymbolTable reference held by this Node
          *
-         * @return This nodes SymbolTable reference
+         * @return The procedure bound to this call
          */
-        public Objekt getSymbolTableEntry() {
+        public Objekt.Procedure getSymbolTableEntry() {
             return symbolTableEntry;
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "ProcedureCallNode:\\l\t" + identifier + "\\l\t " + getCodePosition();
@@ -409,11 +581,13 @@ public abstract class Node {
         }
 
         @Override
-        public void traverse(TraverseCallback traverseCallback) throws Exception {
-            traverseCallback.onTraverse(this);
-            for (Node statement : statements) {
-                statement.traverse(traverseCallback);
+        void expand(Traversal traversal) {
+            traversal.push(this, Traversal.LEAVE);
+            ListIterator<Node> iterator = statements.listIterator(statements.size());
+            while (iterator.hasPrevious()) {
+                traversal.push(iterator.previous(), Traversal.EXPAND);
             }
+            traversal.push(this, Traversal.ENTER);
         }
 
         @Override
@@ -425,6 +599,11 @@ public abstract class Node {
             }
         }
 
+        @Override
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E {
+            return visitor.visit(this);
+        }
+
         @Override
         public String toString() {
             return "StatementSequenceNode";
@@ -449,43 +628,308 @@ public abstract class Node {
      * @throws ParserException If the contents are not static and cannot be parsed into a constant expression
      */
     public int evaluateConstantExpression() throws ParserException {
+        ConstantExpressionEvaluation evaluation = new ConstantExpressionEvaluation();
+        try {
+            traverse(evaluation);
+        } catch (ParserException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ParserException(e.getMessage());
+        }
+        return evaluation.values.pop();
+    }
+
+    /**
+     * Evaluates constant expressions bottom-up, only constants and (non-assignment) binary operations are allowed.
+     * Used as post-order traversal callback, the values of evaluated subexpressions are kept on a stack.
+     *
+     * @author TillFleisch
+     */
+    private static class ConstantExpressionEvaluation implements TraverseCallback, Visitor<Void, ParserException> {
+
+        /**
+         * Values of the evaluated subexpressions, the value of the last subexpression is on top
+         */
+        final ArrayDeque<Integer> values = new ArrayDeque<>();
 
-        // Return value of constant nodes
-        if (this instanceof ConstantNode) {
-            return ((ConstantNode) this).value;
+        @Override
+        public void onTraverse(Node node) {
+            // Operations are evaluated once the values of their operands are known
         }
 
-        // resolve valid binary operations recursively
-        if (this instanceof BinaryOperationNode) {
-            BinaryOperationNode node = (BinaryOperationNode) this;
+        @Override
+        public void onLeave(Node node) throws ParserException {
+            node.accept(this);
+        }
 
+        @Override
+        public Void visit(BinaryOperationNode node) throws ParserException {
             if (node.operation == Operation.Binary.ASSIGNMENT) {
                 throw new ParserException("Evaluating constant failed! Non-constant found!");
             }
 
+            // The right operand has been evaluated last
+            int right = values.pop();
+            int left = values.pop();
             try {
-                return node.operation.apply(node.left.evaluateConstantExpression(), node.right.evaluateConstantExpression());
+                values.push(node.operation.apply(left, right));
             } catch (IllegalAccessException e) {
                 throw new ParserException(e.getMessage());
             }
+            return null;
+        }
+
+        @Override
+        public Void visit(ConstantNode node) {
+            values.push(node.value);
+            return null;
+        }
+
+        @Override
+        public Void visit(UnaryOperationNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        @Override
+        public Void visit(IdentifierNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        @Override
+        public Void visit(WhileNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        @Override
+        public Void visit(IfNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        @Override
+        public Void visit(ProcedureCallNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        @Override
+        public Void visit(StatementSequenceNode node) throws ParserException {
+            return nonConstant(node);
+        }
+
+        /**
+         * @param node Node which is not part of a constant expression
+         * @throws ParserException always
+         */
+        private Void nonConstant(Node node) throws ParserException {
+            throw new ParserException("Evaluating constant failed! Non-constant found " + node.getClass());
         }
+    }
+
+    /**
+     * Typed visitor over the node types of an abstract syntax tree.
+     * The visitor decides whether and in which order children are visited.
+     *
+     * @param <R> Result type
+     * @param <E> Exception type thrown while visiting
+     */
+    public interface Visitor<R, E extends Exception> {
+
+        /**
+         * @param node Binary operation (including assignments)
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(BinaryOperationNode node) throws E;
+
+        /**
+         * @param node Unary operation (return statement)
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(UnaryOperationNode node) throws E;
+
+        /**
+         * @param node Constant value
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(ConstantNode node) throws E;
 
-        throw new ParserException("Evaluating constant failed! Non-constant found " + this.getClass());
+        /**
+         * @param node Identifier (variable or constant)
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(IdentifierNode node) throws E;
+
+        /**
+         * @param node While loop
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(WhileNode node) throws E;
+
+        /**
+         * @param node If statement
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(IfNode node) throws E;
+
+        /**
+         * @param node Procedure call
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(ProcedureCallNode node) throws E;
+
+        /**
+         * @param node Statement sequence
+         * @return Result for the node
+         * @throws E If visiting fails
+         */
+        R visit(StatementSequenceNode node) throws E;
     }
 
+    /**
+     * Visitor for passes which only handle some node types.
+     * All visit methods which are not overridden return the result of {@link #visitDefault(Node)}.
+     *
+     * @param <R> Result type
+     * @param <E> Exception type thrown while visiting
+     */
+    public abstract static class DefaultVisitor<R, E extends Exception> implements Visitor<R, E> {
+
+        /**
+         * @param node Node whose type is not handled by the visitor
+         * @return Result for the node, null by default
+         * @throws E If visiting fails
+         */
+        protected R visitDefault(Node node) throws E {
+            return null;
+        }
+
+        @Override
+        public R visit(BinaryOperationNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(UnaryOperationNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(ConstantNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(IdentifierNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(WhileNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(IfNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(ProcedureCallNode node) throws E {
+            return visitDefault(node);
+        }
+
+        @Override
+        public R visit(StatementSequenceNode node) throws E {
+            return visitDefault(node);
+        }
+    }
+
+    /**
+     * Visitor determining the operation of binary operation nodes, null for all other nodes
+     */
+    public static final Visitor<Operation.Binary, RuntimeException> BINARY_OPERATION = new DefaultVisitor<>() {
+        @Override
+        public Operation.Binary visit(BinaryOperationNode node) {
+            return node.operation;
+        }
+    };
+
+    /**
+     * Visitor determining the value of constant nodes, null for all other nodes
+     */
+    public static final Visitor<Integer, RuntimeException> CONSTANT_VALUE = new DefaultVisitor<>() {
+        @Override
+        public Integer visit(ConstantNode node) {
+            return node.value;
+        }
+    };
+
+    /**
+     * Visitor determining the symbol table entry of identifier nodes, null for all other nodes
+     */
+    public static final Visitor<Objekt, RuntimeException> IDENTIFIER_ENTRY = new DefaultVisitor<>() {
+        @Override
+        public Objekt visit(IdentifierNode node) {
+            return node.getSymbolTableEntry();
+        }
+    };
+
     /**
      * Graph traversal callback
      */
     public interface TraverseCallback {
 
         /**
-         * Called upon traversal
+         * Called upon traversal, before the node's children are traversed
          *
          * @param node The node begin traversed
          */
         void onTraverse(Node node) throws Exception;
+
+        /**
+         * Called after the node's children have been traversed
+         *
+         * @param node The node begin traversed
+         */
+        default void onLeave(Node node) throws Exception {
+        }
     }
 
+    /**
+     * Visitor determining the dot shape of nodes according to their type
+     */
+    private static final Visitor<String, RuntimeException> DOT_SHAPE = new DefaultVisitor<>() {
+        @Override
+        protected String visitDefault(Node node) {
+            return "shape=box";
+        }
+
+        @Override
+        public String visit(WhileNode node) {
+            return "shape=diamond";
+        }
+
+        @Override
+        public String visit(IfNode node) {
+            return "shape=diamond";
+        }
+
+        @Override
+        public String visit(ProcedureCallNode node) {
+            return "shape=csd";
+        }
+
+        @Override
+        public String visit(UnaryOperationNode node) {
+            return node.operation == Operation.Unary.RETURN ? "shape=oval" : "shape=box";
+        }
+    };
+
     /**
      * Determine the dot-representation for this node and it's children
      *
@@ -499,62 +943,61 @@ public abstract class Node {
         traverse(child -> {
             stringBuilder.append(child.hashCode()).append(" [label=\"").append(child).append("\"");
             // Shape nodes according to type
-            if (child instanceof Node.IfNode || child instanceof Node.WhileNode) {
-                stringBuilder.append("shape=diamond");
-            } else if (child instanceof Node.ProcedureCallNode) {
-                stringBuilder.append("shape=csd");
-            } else if (child instanceof Node.UnaryOperationNode &&
-                    ((Node.UnaryOperationNode) child).operation == Operation.Unary.RETURN) {
-                stringBuilder.append("shape=oval");
-            } else {
-                stringBuilder.append("shape=box");
-            }
+            stringBuilder.append(child.accept(DOT_SHAPE));
             stringBuilder.append("]\n");
         });
 
         stringBuilder.append("\n\n");
 
-        // Traverse graph and retrieve edges
-        traverse(child -> {
-
-            // Add left and right sub-graphs
-            if (child.left != null) {
-                stringBuilder.append(child.hashCode()).append("->").append(child.left.hashCode()).append("[color=green]\n");
-            }
-
-            if (child.right != null) {
-                stringBuilder.append(child.hashCode()).append("->").append(child.right.hashCode()).append("[color=red]\n");
+        // Edges which are not part of the left and right sub-graphs
+        Visitor<Void, RuntimeException> implicitEdges = new DefaultVisitor<>() {
+            @Override
+            public Void visit(IfNode node) {
+                // Add condition sub-graph edges for if
+                stringBuilder.append(node.hashCode()).append("->").append(node.condition.hashCode())
+                        .append("[color=blue]\n");
+                return null;
             }
 
-            // Add condition sub-graph edges for while/if
-            if (child instanceof Node.IfNode || child instanceof Node.WhileNode) {
-                stringBuilder.append(child.hashCode());
-                stringBuilder.append("->");
-                if (child instanceof Node.IfNode) {
-                    stringBuilder.append(((Node.IfNode) child).condition.hashCode());
-                }
-                if (child instanceof Node.WhileNode) {
-                    stringBuilder.append(((Node.WhileNode) child).condition.hashCode());
-                }
-                stringBuilder.append("[color=blue]\n");
+            @Override
+            public Void visit(WhileNode node) {
+                // Add condition sub-graph edges for while
+                stringBuilder.append(node.hashCode()).append("->").append(node.condition.hashCode())
+                        .append("[color=blue]\n");
+                return null;
             }
 
-            // add implicit edges from sequence nodes
-            if (child instanceof Node.StatementSequenceNode) {
-                List<Node> statements = ((Node.StatementSequenceNode) child).statements;
-
+            @Override
+            public Void visit(StatementSequenceNode node) {
                 // Add edges between statement of Statement Sequence Nodes
-                for (int i = 0; i < statements.size(); i++) {
-                    stringBuilder.append(statements.get(i).hashCode());
-                    if (i < statements.size() - 1) {
+                Iterator<Node> statements = node.statements.iterator();
+                while (statements.hasNext()) {
+                    stringBuilder.append(statements.next().hashCode());
+                    if (statements.hasNext()) {
                         stringBuilder.append("->");
                     }
                 }
 
-                if (statements.size() > 0)
+                if (!node.statements.isEmpty())
                     stringBuilder.append("[color=black]\n");
+                return null;
+            }
+        };
+
+        // Traverse graph and retrieve edges
+        traverse(child -> {
+
+            // Add left and right sub-graphs
+            if (child.left != null) {
+                stringBuilder.append(child.hashCode()).append("->").append(child.left.hashCode()).append("[color=green]\n");
+            }
+
+            if (child.right != null) {
+                stringBuilder.append(child.hashCode()).append("->").append(child.right.hashCode()).append("[color=red]\n");
             }
 
+            // Add condition edges and implicit edges from sequence nodes
+            child.accept(implicitEdges);
         });
 
         stringBuilder.append("}");
@@ -13,13 +13,28 @@ public abstract class Objekt {
      */
     String name;
 
+    /**
+     * The objects name as {@link NameTable} ID
+     */
+    final int nameId;
+
     /**
      * Basic constructor with name attribute
      *
      * @param name The objects name
      */
     public Objekt(String name) {
-        this.name = name;
+        this(NameTable.intern(name));
+    }
+
+    /**
+     * Basic constructor with an interned name
+     *
+     * @param nameId The objects name as {@link NameTable} ID
+     */
+    public Objekt(int nameId) {
+        this.name = NameTable.name(nameId);
+        this.nameId = nameId;
     }
 
     /**
@@ -31,6 +46,15 @@ public abstract class Objekt {
         return name;
     }
 
+    /**
+     * retrieve the name's {@link NameTable} ID
+     *
+     * @return The name's ID
+     */
+    public int getNameId() {
+        return nameId;
+    }
+
     /**
      * Class describing classes.
      */
@@ -48,7 +72,17 @@ public abstract class Objekt {
          * @param symboltable The SymbolTable contained within the class
          */
         public Clasz(String name, SymbolTable symboltable) {
-            super(name);
+            this(NameTable.intern(name), symboltable);
+        }
+
+        /**
+         * Class-Constructor with an interned name and a given SymbolTable
+         *
+         * @param nameId      The Classes name as {@link NameTable} ID
+         * @param symboltable The SymbolTable contained within the class
+         */
+        public Clasz(int nameId, SymbolTable symboltable) {
+            super(nameId);
             this.symbolTable = symboltable;
         }
 
@@ -61,10 +95,35 @@ public abstract class Objekt {
             return symbolTable;
         }
 
+        /**
+         * Finds a procedure declared within this class.
+         * The class's SymbolTable indexes procedures by name and number of parameters, hence this takes constant time.
+         *
+         * @param nameId         The procedure's name ID
+         * @param parameterCount The procedure's number of parameters
+         * @return The matching procedure, null if not present
+         */
+        public Procedure getProcedure(int nameId, int parameterCount) {
+            return symbolTable.lookupProcedure(nameId, parameterCount);
+        }
+
+        /**
+         * Returns the procedures declared within this class
+         *
+         * @return Procedures in the order of the SymbolTable
+         */
+        public LinkedList<Procedure> getProcedures() {
+            LinkedList<Procedure> procedures = new LinkedList<>();
+            for (Objekt objekt : symbolTable)
+                if (objekt instanceof Procedure)
+                    procedures.add((Procedure) objekt);
+            return procedures;
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (obj instanceof Clasz)
-                return ((Clasz) obj).name.equals(name);
+                return ((Clasz) obj).nameId == nameId;
             return super.equals(obj);
         }
 
@@ -100,6 +159,41 @@ public abstract class Objekt {
             }
             stringBuilder.append("}\n");
 
+            // Adds the edges from nodes to the symbol table entries they refer to
+            Node.Visitor<Void, RuntimeException> references = new Node.DefaultVisitor<>() {
+                @Override
+                public Void visit(Node.IdentifierNode node) {
+                    if (showIdentifierReferences) {
+                        Objekt reference = node.symbolTableEntry;
+                        // Add an edge from the current node to the referred declaration
+                        stringBuilder.append(node.hashCode()).append("->").append(reference.hashCode())
+                                .append("[color=gray];\n");
+                    }
+                    return null;
+                }
+
+                @Override
+                public Void visit(Node.ProcedureCallNode node) {
+                    if (showProcedureCallReferences) {
+                        Procedure reference = node.symbolTableEntry;
+                        // Add an edge from the current node to the referred declaration
+                        if (reference.symbolTable.size() > 0) {
+                            // Point to first node within the methods declaration and cap the arrow at the
+                            // cluster bounding box
+                            stringBuilder.append(node.hashCode()).append("->")
+                                    .append(reference.symbolTable.get(0).hashCode())
+                                    .append("[color=orange ")
+                                    .append("lhead=\"cluster_declarations_").append(reference.hashCode())
+                                    .append("\"];\n");
+                        } else {
+                            stringBuilder.append(node.hashCode()).append("->").append(reference.hashCode())
+                                    .append("[color=orange];\n");
+                        }
+                    }
+                    return null;
+                }
+            };
+
             // generate basic AST for methods declared within the class
             for (Objekt objekt : symbolTable) {
                 if (objekt instanceof Procedure) {
@@ -113,33 +207,7 @@ public abstract class Objekt {
                     stringBuilder.append("}\n");
                     // traverse each graph and add symbol table references
 
-                    ((Procedure) objekt).abstractSyntaxTree.traverse(node -> {
-                        // Find reference if present
-                        if (showIdentifierReferences && node instanceof Node.IdentifierNode) {
-                            Objekt reference = ((Node.IdentifierNode) node).symbolTableEntry;
-                            // Add an edge from the current node to the referred declaration
-                            stringBuilder.append(node.hashCode()).append("->").append(reference.hashCode())
-                                    .append("[color=gray];\n");
-                        }
-                        if (showProcedureCallReferences && node instanceof Node.ProcedureCallNode) {
-                            Procedure reference = ((Node.ProcedureCallNode) node).symbolTableEntry;
-                            // Add an edge from the current node to the referred declaration
-                            if (reference.symbolTable.size() > 0) {
-                                // Point to first node within the methods declaration and cap the arrow at the
-                                // cluster bounding box
-                                stringBuilder.append(node.hashCode()).append("->")
-                                        .append(reference.symbolTable.get(0).hashCode())
-                                        .append("[color=orange ")
-                                        .append("lhead=\"cluster_declarations_").append(reference.hashCode())
-                                        .append("\"];\n");
-                            } else {
-                                stringBuilder.append(node.hashCode()).append("->").append(reference.hashCode())
-                                        .append("[color=orange];\n");
-                            }
-
-                        }
-
-                    });
+                    ((Procedure) objekt).abstractSyntaxTree.traverse(node -> node.accept(references));
 
                     // Add an edge from the procedure definition to the ast
                     if (linkProcedureASTs) {
@@ -188,14 +256,24 @@ public abstract class Objekt {
          * @param type The parameter's type.
          */
         public Parameter(String name, Type type) {
-            super(name);
+            this(NameTable.intern(name), type);
+        }
+
+        /**
+         * Constructor for parameters with type and interned name.
+         *
+         * @param nameId The parameter's name as {@link NameTable} ID.
+         * @param type   The parameter's type.
+         */
+        public Parameter(int nameId, Type type) {
+            super(nameId);
             this.type = type;
         }
 
         @Override
         public boolean equals(Object obj) {
             if (obj instanceof Parameter) {
-                return ((Parameter) obj).name.equals(name) && ((Parameter) obj).type.equals(type);
+                return ((Parameter) obj).nameId == nameId && ((Parameter) obj).type.equals(type);
             }
             return super.equals(obj);
         }
@@ -226,7 +304,18 @@ public abstract class Objekt {
          * @param value The constant's value
          */
         public Constant(String name, Type type, int value) {
-            super(name, type);
+            this(NameTable.intern(name), type, value);
+        }
+
+        /**
+         * Constructor for Constants with an interned name,type and final value
+         *
+         * @param nameId The constant's name as {@link NameTable} ID
+         * @param type   The constant's type
+         * @param value  The constant's value
+         */
+        public Constant(int nameId, Type type, int value) {
+            super(nameId, type);
             this.value = value;
         }
 
@@ -279,7 +368,19 @@ public abstract class Objekt {
          * @param symbolTable   The procedure's SymbolTable
          */
         public Procedure(String name, LinkedList<Parameter> parameterList, Type returnType, SymbolTable symbolTable) {
-            super(name);
+            this(NameTable.intern(name), parameterList, returnType, symbolTable);
+        }
+
+        /**
+         * Constructor for Procedure Objects with an interned name.
+         *
+         * @param nameId        The procedure's name as {@link NameTable} ID
+         * @param parameterList The procedure's parameter list
+         * @param returnType    The procedure's return type
+         * @param symbolTable   The procedure's SymbolTable
+         */
+        public Procedure(int nameId, LinkedList<Parameter> parameterList, Type returnType, SymbolTable symbolTable) {
+            super(nameId);
             this.parameterList = parameterList;
             this.symbolTable = symbolTable;
             this.returnType = returnType;
@@ -358,7 +459,7 @@ public abstract class Objekt {
             if (obj instanceof Procedure)
                 // We only need to check if the number of parameters is unique since JavaSST only supports a single type.
                 // Check for same name and parameter list size
-                return (((Procedure) obj).name.equals(name) &&
+                return (((Procedure) obj).nameId == nameId &&
                         ((Objekt.Procedure) obj).parameterList.size() == parameterList.size());
             return super.equals(obj);
         }
@@ -0,0 +1,129 @@
+package dev.fleisch.JSSTCompiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fans independent tasks (i.e. per-procedure analysis or translation) out over the common {@link ForkJoinPool}.
+ * <p>
+ * Results are collected in the order of the elements, hence the outcome does not depend on the order in which the
+ * tasks finish. If tasks fail, the exception of the first failing element is thrown.
+ *
+ * @author TillFleisch
+ */
+public final class Parallel {
+
+    private Parallel() {
+    }
+
+    /**
+     * Applies a task to all elements
+     *
+     * @param elements Elements to process
+     * @param task     Task to apply to each element
+     * @param parallel True if the elements are processed in parallel, in order on the calling thread otherwise
+     * @param <T>      Element type
+     * @param <R>      Result type
+     * @return Results of the task, in the order of the elements
+     * @throws Exception The exception thrown by the task for the first failing element
+     */
+    public static <T, R> List<R> map(List<T> elements, Task<T, R> task, boolean parallel) throws Exception {
+        List<R> results = new ArrayList<>(elements.size());
+
+        if (!parallel) {
+            for (T element : elements)
+                results.add(task.apply(element));
+            return results;
+        }
+
+        // Fork all elements first, such that they are processed concurrently
+        List<Fork<T, R>> forks = new ArrayList<>(elements.size());
+        for (T element : elements) {
+            Fork<T, R> fork = new Fork<>(task, element);
+            fork.fork();
+            forks.add(fork);
+        }
+
+        // Join in order
+        for (int i = 0; i < forks.size(); i++) {
+            Fork<T, R> fork = forks.get(i);
+            fork.join();
+            if (fork.exception != null) {
+                // Pending tasks are of no use anymore
+                for (int j = i + 1; j < forks.size(); j++)
+                    forks.get(j).cancel(false);
+                throw fork.exception;
+            }
+            results.add(fork.result);
+        }
+        return results;
+    }
+
+    /**
+     * Applies a task to a single element within the pool.
+     * The task's exception is kept as is, such that it can be rethrown by the joining thread without being wrapped.
+     *
+     * @param <T> Element type
+     * @param <R> Result type
+     * @author TillFleisch
+     */
+    private static final class Fork<T, R> extends RecursiveAction {
+
+        /**
+         * The applied task
+         */
+        private final Task<T, R> task;
+
+        /**
+         * The element to process
+         */
+        private final T element;
+
+        /**
+         * Result of the task, once completed
+         */
+        private R result;
+
+        /**
+         * Exception thrown by the task, null if it succeeded
+         */
+        private Exception exception;
+
+        /**
+         * @param task    The applied task
+         * @param element The element to process
+         */
+        Fork(Task<T, R> task, T element) {
+            this.task = task;
+            this.element = element;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = task.apply(element);
+            } catch (Exception e) {
+                exception = e;
+            }
+        }
+    }
+
+    /**
+     * Task applied to a single element
+     *
+     * @param <T> Element type
+     * @param <R> Result type
+     */
+    @FunctionalInterface
+    public interface Task<T, R> {
+
+        /**
+         * @param element The element to process
+         * @return Result for the element
+         * @throws Exception If processing fails
+         */
+        R apply(T element) throws Exception;
+    }
+}
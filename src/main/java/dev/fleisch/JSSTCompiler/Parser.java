@@ -1,8 +1,9 @@
 package dev.fleisch.JSSTCompiler;
 
 import java.io.ByteArrayInputStream;
-import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.logging.Logger;
 
@@ -19,9 +20,24 @@ public class Parser {
     Scanner scanner;
 
     /**
-     * The current symbol read by the parser
+     * Kind of the current token read by the parser, the token's content is held by the scanner
      */
-    Symbol<?> currentSymbol;
+    int currentToken;
+
+    /**
+     * Level of {@link #parseExpression(int)} parsing non-terminal <i>factor</i>
+     */
+    private static final int FACTOR = 0;
+
+    /**
+     * Level of {@link #parseExpression(int)} parsing non-terminal <i>simple_expression</i>
+     */
+    private static final int SIMPLE_EXPRESSION = 1;
+
+    /**
+     * Level of {@link #parseExpression(int)} parsing non-terminal <i>expression</i>
+     */
+    private static final int EXPRESSION = 2;
 
     /**
      * Create a parse for a given scanner
@@ -30,11 +46,7 @@ public class Parser {
      */
     public Parser(Scanner scanner) throws ScannerException, IOException, ParserException {
         this.scanner = scanner;
-        try {
-            next();
-        } catch (EOFException e) {
-            throw new ParserException("Unexpected EOF");
-        }
+        next();
     }
 
     /**
@@ -47,45 +59,62 @@ public class Parser {
     public Objekt.Clasz parse() throws ParserException {
         try {
             Objekt.Clasz clasz = parseClass();
-            updateSyntaxTreeReferences(clasz.symbolTable);
+            updateSyntaxTreeReferences(clasz);
             return clasz;
-        } catch (EOFException e) {
-            throw new ParserException("Unexpected EOF");
+        } catch (ParserException.UnexpectedEOFException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Read the next symbol from the Scanner to cache.
+     * Read the next token from the Scanner to cache.
+     *
+     * @throws ParserException.UnexpectedEOFException If the end of the input has been reached
+     */
+    private void next() throws ScannerException, IOException, ParserException.UnexpectedEOFException {
+        currentToken = scanner.nextToken();
+        if (currentToken == Token.EOF)
+            throw new ParserException.UnexpectedEOFException();
+    }
+
+    /**
+     * Checks if the current token is a given keyword
+     *
+     * @param keyword The keyword used for comparison
+     * @return True if the current token is the given keyword
      */
-    private void next() throws ScannerException, IOException {
-        currentSymbol = scanner.nextSymbol();
+    private boolean is(Keyword keyword) {
+        return currentToken == keyword.ordinal();
     }
 
     /**
-     * Checks if the current Symbol is equal to Keyword <b>and read the next symbol</b>
+     * Checks if the current token is equal to Keyword <b>and read the next token</b>
      *
      * @param keyword The keyword used for comparison
-     * @throws ParserException.ExpectedButFoundException if the symbol does not match the given keyword
+     * @throws ParserException.ExpectedButFoundException if the token does not match the given keyword
      */
-    private void assertKeyword(Keyword keyword) throws ParserException.ExpectedButFoundException, ScannerException,
-            IOException {
-        if (!currentSymbol.equals(new Symbol<>(keyword)))
-            throw new ParserException.ExpectedButFoundException(keyword, currentSymbol, scanner.getPosition());
+    private void assertKeyword(Keyword keyword) throws ParserException.ExpectedButFoundException,
+            ParserException.UnexpectedEOFException, ScannerException, IOException {
+        if (!is(keyword))
+            throw new ParserException.ExpectedButFoundException(keyword.toString(), scanner.tokenToString(),
+                    scanner.getPosition());
         next();
     }
 
     /**
      * Parse arbitrary identifiers
      *
-     * @return The parsed identifier
+     * @return The parsed identifier's {@link NameTable} ID
      */
-    private String parseIdentifier() throws ParserException.ExpectedButFoundException, ScannerException, IOException {
-        if (!currentSymbol.getType().equals(Symbol.Type.IDENTIFIER))
-            throw new ParserException.ExpectedButFoundException(Symbol.Type.IDENTIFIER, currentSymbol, scanner.getPosition());
+    private int parseIdentifier() throws ParserException.ExpectedButFoundException,
+            ParserException.UnexpectedEOFException, ScannerException, IOException {
+        if (currentToken != Token.IDENTIFIER)
+            throw new ParserException.ExpectedButFoundException(Token.toString(Token.IDENTIFIER),
+                    scanner.tokenToString(), scanner.getPosition());
 
-        String identifier = (String) currentSymbol.content;
+        int identifier = scanner.getIdentifierId();
         next();
         return identifier;
     }
@@ -96,10 +125,12 @@ public class Parser {
      *
      * @return Number parsed
      */
-    private int parseNumber() throws ParserException.ExpectedButFoundException, ScannerException, IOException {
-        if (!currentSymbol.getType().equals(Symbol.Type.NUMBER))
-            throw new ParserException.ExpectedButFoundException(Symbol.Type.NUMBER, currentSymbol, scanner.getPosition());
-        int number = (int) currentSymbol.content;
+    private int parseNumber() throws ParserException.ExpectedButFoundException,
+            ParserException.UnexpectedEOFException, ScannerException, IOException {
+        if (currentToken != Token.NUMBER)
+            throw new ParserException.ExpectedButFoundException(Token.toString(Token.NUMBER),
+                    scanner.tokenToString(), scanner.getPosition());
+        int number = scanner.getNumber();
         next();
         return number;
     }
@@ -113,35 +144,7 @@ public class Parser {
      * @return Syntax tree describing the parsed factor
      */
     private Node parseFactor() throws ScannerException, IOException, ParserException {
-
-        if (currentSymbol.getType() == Symbol.Type.NUMBER) {
-            CodePosition constantPosition = new CodePosition(scanner.getPosition());
-            int number = parseNumber();
-            return new Node.ConstantNode(number, constantPosition);
-        }
-
-        if (currentSymbol.getType() == Symbol.Type.IDENTIFIER) {
-            CodePosition identifierPosition = new CodePosition(scanner.getPosition());
-            String identifier = parseIdentifier();
-            // differentiate stand-alone identifiers and procedure calls
-            if (currentSymbol.equals(new Symbol<>(Keyword.ROUND_OPENING_BRACKET))) {
-                Node.StatementSequenceNode parameters = parseActualParameters();
-                return new Node.ProcedureCallNode(identifier, parameters, identifierPosition);
-            }
-            return new Node.IdentifierNode(identifier, identifierPosition);
-        }
-
-        if (currentSymbol.equals(new Symbol<>(Keyword.ROUND_OPENING_BRACKET))) {
-            assertKeyword(Keyword.ROUND_OPENING_BRACKET);
-
-            // Parse expression
-            Node subExpression = parseExpression();
-
-            assertKeyword(Keyword.ROUND_CLOSING_BRACKET);
-            return subExpression;
-        }
-
-        throw new ParserException("invalid factor", scanner.getPosition());
+        return parseExpression(FACTOR);
     }
 
     /**
@@ -159,7 +162,7 @@ public class Parser {
      */
     private Node.ProcedureCallNode parseProcedureCall() throws ScannerException, ParserException, IOException {
         CodePosition identifierPosition = new CodePosition(scanner.getPosition());
-        String identifier = parseIdentifier();
+        int identifier = parseIdentifier();
         Node.StatementSequenceNode parameters = parseActualParameters();
         assertKeyword(Keyword.SEMICOLON);
 
@@ -181,16 +184,18 @@ public class Parser {
         assertKeyword(Keyword.ROUND_OPENING_BRACKET);
 
         //Check for optional parameters
-        if (!currentSymbol.equals(new Symbol<>(Keyword.ROUND_CLOSING_BRACKET))) {
+        if (!is(Keyword.ROUND_CLOSING_BRACKET)) {
             // must be expression potentially followed by more expressions
             try {
                 parameters.add(parseExpression());
 
                 // parse further comma separated parameters
-                while (currentSymbol.equals(new Symbol<>(Keyword.COMMA))) {
+                while (is(Keyword.COMMA)) {
                     assertKeyword(Keyword.COMMA);
                     parameters.add(parseExpression());
                 }
+            } catch (ParserException.UnexpectedEOFException e) {
+                throw e;
             } catch (ParserException e) {
                 throw new ParserException("Bad Procedure call parameters", scanner.getPosition());
             }
@@ -211,32 +216,7 @@ public class Parser {
      * @return Syntax tree describing the parsed expression
      */
     private Node parseExpression() throws ScannerException, IOException, ParserException {
-
-        Node firstExpression = parseSimpleExpression();
-
-        // Parse optional second simple expression
-        if (currentSymbol.equals(new Symbol<>(Keyword.EQUAL)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.LESS)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.LESS_EQUAL)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.GREATER)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.GREATER_EQUAL))) {
-            Operation.Binary binaryOperation;
-            CodePosition binaryOperationPosition = new CodePosition(scanner.getPosition());
-            try {
-                // Determine the binary Operation
-                binaryOperation = Operation.Binary.toBinaryOperation((Keyword) currentSymbol.content);
-            } catch (ParserException e) {
-                throw new ParserException(e.getMessage(), scanner.getPosition());
-            }
-            next();
-
-            Node secondExpression = parseSimpleExpression();
-
-            // Return the simple expression as a binary operation with LHS and RHS subexpressions.
-            return new Node.BinaryOperationNode(firstExpression, secondExpression, binaryOperation, binaryOperationPosition);
-        }
-
-        return firstExpression;
+        return parseExpression(EXPRESSION);
     }
 
     /**
@@ -248,57 +228,96 @@ public class Parser {
      * @return Syntax tree describing the parsed simple expression
      */
     private Node parseSimpleExpression() throws ScannerException, IOException, ParserException {
-
-        Node firstTerm = parseTerm();
-        if (currentSymbol.equals(new Symbol<>(Keyword.PLUS)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.MINUS))) {
-            Operation.Binary binaryOperation;
-            CodePosition binaryOperationPosition = new CodePosition(scanner.getPosition());
-            try {
-                // Determine the binary Operation
-                binaryOperation = Operation.Binary.toBinaryOperation((Keyword) currentSymbol.content);
-            } catch (ParserException e) {
-                throw new ParserException(e.getMessage(), scanner.getPosition());
-            }
-            next();
-
-            // Resolve subsequent operand recursively
-            Node secondTerm = parseSimpleExpression();
-
-            return new Node.BinaryOperationNode(firstTerm, secondTerm, binaryOperation, binaryOperationPosition);
-        }
-        return firstTerm;
+        return parseExpression(SIMPLE_EXPRESSION);
     }
 
     /**
-     * Parse non-terminal <i>term</i>
+     * Parse non-terminals <i>expression</i>, <i>simple_expression</i>, <i>term</i> and <i>factor</i>
      * <p>
-     * factor {("*"|"/") factor}
+     * term = factor {("*"|"/") factor}
      * </p>
+     * <p>
+     * Factors are parsed one after another, each factor is added to the non-terminals it completes. Bracketed
+     * expressions and procedure call parameters are parsed on an explicit stack of nested expressions, hence their
+     * nesting depth is not limited by the thread's stack size.
      *
-     * @return Syntax tree describing the parsed term
+     * @param level The non-terminal to parse ({@link #FACTOR}, {@link #SIMPLE_EXPRESSION} or {@link #EXPRESSION})
+     * @return Syntax tree describing the parsed non-terminal
      */
-    private Node parseTerm() throws ScannerException, IOException, ParserException {
+    private Node parseExpression(int level) throws ScannerException, IOException, ParserException {
+        ArrayDeque<NestedExpression> enclosing = new ArrayDeque<>();
+        NestedExpression expression = new NestedExpression(level);
+
+        try {
+            while (true) {
+                Node factor;
+                if (currentToken == Token.NUMBER) {
+                    CodePosition constantPosition = new CodePosition(scanner.getPosition());
+                    int number = parseNumber();
+                    factor = new Node.ConstantNode(number, constantPosition);
+                } else if (currentToken == Token.IDENTIFIER) {
+                    CodePosition identifierPosition = new CodePosition(scanner.getPosition());
+                    int identifier = parseIdentifier();
+                    // differentiate stand-alone identifiers and procedure calls
+                    if (!is(Keyword.ROUND_OPENING_BRACKET)) {
+                        factor = new Node.IdentifierNode(identifier, identifierPosition);
+                    } else {
+                        assertKeyword(Keyword.ROUND_OPENING_BRACKET);
+
+                        // Continue with the first parameter
+                        if (!is(Keyword.ROUND_CLOSING_BRACKET)) {
+                            enclosing.push(expression);
+                            expression = new NestedExpression(identifier, identifierPosition);
+                            continue;
+                        }
+                        assertKeyword(Keyword.ROUND_CLOSING_BRACKET);
+                        factor = new Node.ProcedureCallNode(identifier,
+                                new Node.StatementSequenceNode(new LinkedList<>()), identifierPosition);
+                    }
+                } else if (is(Keyword.ROUND_OPENING_BRACKET)) {
+                    assertKeyword(Keyword.ROUND_OPENING_BRACKET);
+
+                    // Continue with the bracketed expression
+                    enclosing.push(expression);
+                    expression = new NestedExpression(EXPRESSION);
+                    continue;
+                } else {
+                    throw new ParserException("invalid factor", scanner.getPosition());
+                }
 
-        Node firstFactor = parseFactor();
+                // Completed nested expressions are factors of the enclosing expression
+                Node node = factor;
+                while ((node = expression.add(node)) != null) {
+                    NestedExpression completed = expression;
+                    if (completed.parameters == null && enclosing.isEmpty())
+                        return node;
 
-        if (currentSymbol.equals(new Symbol<>(Keyword.MULTIPLY)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.DIVIDE))) {
-            Operation.Binary binaryOperation;
-            CodePosition binaryOperationPosition = new CodePosition(scanner.getPosition());
-            try {
-                // Determine the binary Operation
-                binaryOperation =
-                        Operation.Binary.toBinaryOperation((Keyword) currentSymbol.content);
-            } catch (ParserException e) {
-                throw new ParserException(e.getMessage(), scanner.getPosition());
+                    if (completed.parameters != null) {
+                        completed.parameters.add(node);
+
+                        // Continue with the next parameter
+                        if (is(Keyword.COMMA)) {
+                            assertKeyword(Keyword.COMMA);
+                            break;
+                        }
+                    }
+
+                    // The closing bracket is part of the enclosing expression
+                    expression = enclosing.pop();
+                    assertKeyword(Keyword.ROUND_CLOSING_BRACKET);
+                    if (completed.parameters != null)
+                        node = new Node.ProcedureCallNode(completed.identifier,
+                                new Node.StatementSequenceNode(completed.parameters), completed.position);
+                }
             }
-            next();
-            // Determine subsequent terms recursively
-            Node secondFactor = parseTerm();
-            return new Node.BinaryOperationNode(firstFactor, secondFactor, binaryOperation, binaryOperationPosition);
+        } catch (ParserException.UnexpectedEOFException e) {
+            throw e;
+        } catch (ParserException e) {
+            // Errors within procedure call parameters are reported as such
+            if (expression.parameters == null && enclosing.stream().allMatch(nested -> nested.parameters == null))
+                throw e;
+            throw new ParserException("Bad Procedure call parameters", scanner.getPosition());
         }
-        return firstFactor;
     }
 
     /**
@@ -306,35 +325,34 @@ public class Parser {
      * <p>
      * assignment | procedure_call | if_statement | while_statement | return_statement
      * </p>
-     * <p>
-     * This method includes assignment and procedure call parsing, since they share their starting symbols
      *
      * @return Syntax tree describing the parsed Statement
      */
     private Node parseStatement() throws ScannerException, IOException, ParserException {
-        // Check for if statement
-        if (currentSymbol.equals(new Symbol<>(Keyword.IF))) {
-            return parseIf();
-        }
-
-        // Check for while statement
-        if (currentSymbol.equals(new Symbol<>(Keyword.WHILE))) {
-            return parseWhile();
-        }
+        return parseStatements(true).getFirst();
+    }
 
+    /**
+     * Parse non-terminals <i>assignment</i>, <i>procedure_call</i> and <i>return_statement</i>
+     * <p>
+     * This method includes assignment and procedure call parsing, since they share their starting symbols
+     *
+     * @return Syntax tree describing the parsed Statement
+     */
+    private Node parseSimpleStatement() throws ScannerException, IOException, ParserException {
         // Check for return statement
-        if (currentSymbol.equals(new Symbol<>(Keyword.RETURN))) {
+        if (is(Keyword.RETURN)) {
             return parseReturn();
         }
 
         // Check for identifier (assignment and procedure call)
-        if (currentSymbol.getType() == Symbol.Type.IDENTIFIER) {
+        if (currentToken == Token.IDENTIFIER) {
             CodePosition identifierPosition = new CodePosition(scanner.getPosition());
-            String identifier = parseIdentifier();
+            int identifier = parseIdentifier();
 
             // Check for assignment
             // identifier "=" expression ";"
-            if (currentSymbol.equals(new Symbol<>(Keyword.ASSIGN))) {
+            if (is(Keyword.ASSIGN)) {
                 assertKeyword(Keyword.ASSIGN);
                 Node assignment = parseExpression();
                 assertKeyword(Keyword.SEMICOLON);
@@ -343,7 +361,7 @@ public class Parser {
 
             // Check for procedure call
             // identifier actual_parameters ";"
-            if (currentSymbol.equals(new Symbol<>(Keyword.ROUND_OPENING_BRACKET))) {
+            if (is(Keyword.ROUND_OPENING_BRACKET)) {
                 Node.StatementSequenceNode parameters = parseActualParameters();
                 assertKeyword(Keyword.SEMICOLON);
                 return new Node.ProcedureCallNode(identifier, parameters, identifierPosition);
@@ -367,7 +385,7 @@ public class Parser {
         assertKeyword(Keyword.RETURN);
 
         // Check for optional parameters
-        if (!currentSymbol.equals(new Symbol<>(Keyword.SEMICOLON))) {
+        if (!is(Keyword.SEMICOLON)) {
             Node expression = parseSimpleExpression();
             assertKeyword(Keyword.SEMICOLON);
             return new Node.UnaryOperationNode(expression, Operation.Unary.RETURN, returnPosition);
@@ -377,59 +395,34 @@ public class Parser {
     }
 
     /**
-     * Parse non-terminal <i>while_statement</i>
+     * Parse the heads of non-terminals <i>while_statement</i> and <i>if_statement</i>
      * <p>
      * "while" "(" expression ")" "{" statement_sequence "}"
      * </p>
-     *
-     * @return Syntax tree describing the parsed if statement
-     */
-    private Node.WhileNode parseWhile() throws ScannerException, IOException, ParserException {
-        CodePosition whilePosition = new CodePosition(scanner.getPosition());
-        assertKeyword(Keyword.WHILE);
-        assertKeyword(Keyword.ROUND_OPENING_BRACKET);
-        Node condition;
-        try {
-            condition = parseExpression();
-            assertKeyword(Keyword.ROUND_CLOSING_BRACKET);
-        } catch (ParserException e) {
-            throw new ParserException("Bad while-condition", scanner.getPosition());
-        }
-        assertKeyword(Keyword.CURLY_OPENING_BRACKET);
-        Node.StatementSequenceNode node = parseStatementSequence();
-        assertKeyword(Keyword.CURLY_CLOSING_BRACKET);
-
-        return new Node.StatementSequenceNode.WhileNode(condition, node, whilePosition);
-    }
-
-    /**
-     * Parse non-terminal <i>if_statement</i>
      * <p>
      * "if" "(" expression ")" "{" statement_sequence "}" "else" "{" statement_sequence "}"
      * </p>
+     * The statement sequences are parsed by {@link #parseStatements(boolean)}.
      *
-     * @return Syntax tree describing the parsed if statement
+     * @return The block of the while body or if branch
      */
-    private Node.IfNode parseIf() throws ScannerException, IOException, ParserException {
-        CodePosition ifPosition = new CodePosition(scanner.getPosition());
-        assertKeyword(Keyword.IF);
+    private Block parseBlockHead() throws ScannerException, IOException, ParserException {
+        CodePosition position = new CodePosition(scanner.getPosition());
+        boolean loop = is(Keyword.WHILE);
+        assertKeyword(loop ? Keyword.WHILE : Keyword.IF);
         assertKeyword(Keyword.ROUND_OPENING_BRACKET);
         Node condition;
         try {
             condition = parseExpression();
             assertKeyword(Keyword.ROUND_CLOSING_BRACKET);
+        } catch (ParserException.UnexpectedEOFException e) {
+            throw e;
         } catch (ParserException e) {
-            throw new ParserException("Bad if-condition", scanner.getPosition());
+            throw new ParserException(loop ? "Bad while-condition" : "Bad if-condition", scanner.getPosition());
         }
         assertKeyword(Keyword.CURLY_OPENING_BRACKET);
-        Node.StatementSequenceNode ifStatements = parseStatementSequence();
-        assertKeyword(Keyword.CURLY_CLOSING_BRACKET);
-        assertKeyword(Keyword.ELSE);
-        assertKeyword(Keyword.CURLY_OPENING_BRACKET);
-        Node.StatementSequenceNode elseStatements = parseStatementSequence();
-        assertKeyword(Keyword.CURLY_CLOSING_BRACKET);
 
-        return new Node.IfNode(condition, ifStatements, elseStatements, ifPosition);
+        return new Block(condition, position, loop, null);
     }
 
     /**
@@ -441,16 +434,54 @@ public class Parser {
      * @return Syntax tree describing the parsed if statement
      */
     private Node.StatementSequenceNode parseStatementSequence() throws ScannerException, IOException, ParserException {
-        LinkedList<Node> statementNodes = new LinkedList<>();
+        return new Node.StatementSequenceNode(parseStatements(false));
+    }
 
-        statementNodes.add(parseStatement());
+    /**
+     * Parses statements, the statement sequences of if/while statements are parsed on an explicit stack of blocks.
+     * Hence the nesting depth of if/while statements is not limited by the thread's stack size.
+     *
+     * @param single True if only a single statement is parsed, a statement sequence is parsed otherwise
+     * @return The parsed statements
+     */
+    private LinkedList<Node> parseStatements(boolean single) throws ScannerException, IOException, ParserException {
+        ArrayDeque<Block> enclosing = new ArrayDeque<>();
+        Block block = new Block(null, null, false, null);
+
+        while (true) {
+            // Statement sequences contain at least one statement
+            // Check for possible statement (assign, procedure-call) identifier | if | while | return
+            if (block.statements.isEmpty() ||
+                    (isEligibleForStatement() && !(single && enclosing.isEmpty()))) {
+                if (is(Keyword.IF) || is(Keyword.WHILE)) {
+                    // Continue with the nested statement sequence
+                    enclosing.push(block);
+                    block = parseBlockHead();
+                } else {
+                    block.statements.add(parseSimpleStatement());
+                }
+                continue;
+            }
 
-        // Check for possible statement
-        // (assign, procedure-call) identifier | if | while | return
-        while (isEligibleForStatement())
-            statementNodes.add(parseStatement());
+            if (enclosing.isEmpty())
+                return block.statements;
+            assertKeyword(Keyword.CURLY_CLOSING_BRACKET);
+            Node.StatementSequenceNode statements = new Node.StatementSequenceNode(block.statements);
+
+            // Continue with the else branch
+            if (!block.loop && block.ifStatements == null) {
+                assertKeyword(Keyword.ELSE);
+                assertKeyword(Keyword.CURLY_OPENING_BRACKET);
+                block = new Block(block.condition, block.position, false, statements);
+                continue;
+            }
 
-        return new Node.StatementSequenceNode(statementNodes);
+            // The completed statement belongs to the enclosing statement sequence
+            Node statement = block.loop ? new Node.WhileNode(block.condition, statements, block.position) :
+                    new Node.IfNode(block.condition, block.ifStatements, statements, block.position);
+            block = enclosing.pop();
+            block.statements.add(statement);
+        }
     }
 
     /**
@@ -469,10 +500,8 @@ public class Parser {
         while (!isEligibleForStatement()) {
             Objekt.Parameter declaration = parseLocalDeclaration();
             // Check if the parameters is already present within the  local symbol-table(redefinition)
-            for (Objekt obj : symbolTable) {
-                if (declaration.equals(obj))
-                    throw new ParserException("Variable redefinition: " + declaration.name, scanner.getPosition());
-            }
+            if (declaration.equals(symbolTable.lookup(declaration.nameId)))
+                throw new ParserException("Variable redefinition: " + declaration.name, scanner.getPosition());
             symbolTable.add(declaration);
         }
 
@@ -493,7 +522,7 @@ public class Parser {
     private Objekt.Parameter parseLocalDeclaration() throws ScannerException, IOException,
             ParserException {
         Type type = parseType();
-        String identifier = parseIdentifier();
+        int identifier = parseIdentifier();
         assertKeyword(Keyword.SEMICOLON);
         return new Objekt.Parameter(identifier, type);
     }
@@ -507,7 +536,7 @@ public class Parser {
      * @return The parsed Type
      */
     private Type parseType() throws ScannerException, IOException, ParserException {
-        if (currentSymbol.equals(new Symbol<>(Keyword.INT))) {
+        if (is(Keyword.INT)) {
             next();
             return Type.INT;
         }
@@ -547,7 +576,7 @@ public class Parser {
     private Objekt.Procedure parseMethodHead(SymbolTable enclosingTable) throws ScannerException, IOException, ParserException {
         assertKeyword(Keyword.PUBLIC);
         Type type = parseMethodType();
-        String identifier = parseIdentifier();
+        int identifier = parseIdentifier();
         LinkedList<Objekt.Parameter> parameters = parseFormalParameters();
 
         return new Objekt.Procedure(identifier, parameters, type, new SymbolTable(enclosingTable));
@@ -563,7 +592,7 @@ public class Parser {
      */
     private Type parseMethodType() throws ScannerException, IOException,
             ParserException {
-        if (currentSymbol.equals(new Symbol<>(Keyword.VOID))) {
+        if (is(Keyword.VOID)) {
             assertKeyword(Keyword.VOID);
             return Type.VOID;
         }
@@ -584,11 +613,11 @@ public class Parser {
 
         LinkedList<Objekt.Parameter> parameters = new LinkedList<>();
         // Check for formal parameter section
-        if (!currentSymbol.equals(new Symbol<>(Keyword.ROUND_CLOSING_BRACKET))) {
+        if (!is(Keyword.ROUND_CLOSING_BRACKET)) {
             parameters.add(parseFormalParameterSection());
 
             // Parse further comma separated sections
-            while (currentSymbol.equals(new Symbol<>(Keyword.COMMA))) {
+            while (is(Keyword.COMMA)) {
                 assertKeyword(Keyword.COMMA);
                 Objekt.Parameter parameter = parseFormalParameterSection();
 
@@ -617,7 +646,7 @@ public class Parser {
     private Objekt.Parameter parseFormalParameterSection() throws ScannerException, IOException,
             ParserException {
         Type type = parseType();
-        String identifier = parseIdentifier();
+        int identifier = parseIdentifier();
         return new Objekt.Parameter(identifier, type);
     }
 
@@ -636,11 +665,11 @@ public class Parser {
         SymbolTable symbolTable = new SymbolTable(enclosingTable);
 
         // check for { "final" type identifier "=" expression ";" }
-        while (currentSymbol.equals(new Symbol<>(Keyword.FINAL))) {
+        while (is(Keyword.FINAL)) {
             assertKeyword(Keyword.FINAL);
 
             Type type = parseType();
-            String identifier = parseIdentifier();
+            int identifier = parseIdentifier();
 
             assertKeyword(Keyword.ASSIGN);
 
@@ -650,11 +679,8 @@ public class Parser {
             Objekt.Constant constant = new Objekt.Constant(identifier, type, value);
 
             // Check if the constants name is already present within the  local symbol-table(redefinition)
-            for (Objekt obj : symbolTable) {
-                // check final overlapping
-                if (constant.equals(obj))
-                    throw new ParserException("Variable redefinition: " + identifier, scanner.getPosition());
-            }
+            if (constant.equals(symbolTable.lookup(constant.nameId)))
+                throw new ParserException("Variable redefinition: " + constant.name, scanner.getPosition());
 
             symbolTable.push(constant);
             assertKeyword(Keyword.SEMICOLON);
@@ -662,31 +688,28 @@ public class Parser {
 
         // check for { type identifier ";" }
         // This checks for all possible types, not elegant
-        while (currentSymbol.equals(new Symbol<>(Keyword.INT))) {
+        while (is(Keyword.INT)) {
             Type type = parseType();
-            String identifier = parseIdentifier();
+            int identifier = parseIdentifier();
             Objekt.Parameter parameter = new Objekt.Parameter(identifier, type);
 
             // Check if the parameters is already present within the  local symbol-table(redefinition)
-            for (Objekt obj : symbolTable) {
-                // check final overlapping
-                if (parameter.equals(obj) || (obj instanceof Objekt.Constant && obj.name.equals(identifier)))
-                    throw new ParserException("Variable redefinition: " + identifier, scanner.getPosition());
-            }
+            Objekt obj = symbolTable.lookup(parameter.nameId);
+            // check final overlapping
+            if (parameter.equals(obj) || obj instanceof Objekt.Constant)
+                throw new ParserException("Variable redefinition: " + parameter.name, scanner.getPosition());
 
             symbolTable.push(parameter);
             assertKeyword(Keyword.SEMICOLON);
         }
 
         // { method_declaration }
-        while (currentSymbol.equals(new Symbol<>(Keyword.PUBLIC))) {
+        while (is(Keyword.PUBLIC)) {
             Objekt.Procedure procedure = parseMethodDeclaration(symbolTable);
 
             // Check if a procedure with same name and same parameter set is present
-            for (Objekt obj : symbolTable) {
-                if (procedure.equals(obj))
-                    throw new ParserException("Unambiguous method declaration for: " + procedure.name, scanner.getPosition());
-            }
+            if (symbolTable.lookupProcedure(procedure.nameId, procedure.parameterList.size()) != null)
+                throw new ParserException("Unambiguous method declaration for: " + procedure.name, scanner.getPosition());
 
             symbolTable.push(procedure);
         }
@@ -708,13 +731,12 @@ public class Parser {
 
         SymbolTable symbolTable = parseDeclarations(enclosingTable);
 
-        try {
-            if (!currentSymbol.equals(new Symbol<>(Keyword.CURLY_CLOSING_BRACKET)))
-                throw new ParserException.ExpectedButFoundException(Keyword.CURLY_CLOSING_BRACKET, currentSymbol, scanner.getPosition());
-            next();
-        } catch (EOFException ignored) {
-            // EOF is fine, since nothing is expected after curly closing bracket
-        }
+        if (!is(Keyword.CURLY_CLOSING_BRACKET))
+            throw new ParserException.ExpectedButFoundException(Keyword.CURLY_CLOSING_BRACKET.toString(),
+                    scanner.tokenToString(), scanner.getPosition());
+
+        // EOF is fine, since nothing is expected after curly closing bracket
+        currentToken = scanner.nextToken();
 
         return symbolTable;
     }
@@ -727,7 +749,7 @@ public class Parser {
      */
     private Objekt.Clasz parseClass() throws ScannerException, IOException, ParserException {
         assertKeyword(Keyword.CLASS);
-        String identifier = parseIdentifier();
+        int identifier = parseIdentifier();
         SymbolTable symbolTable = parseClassBody(new SymbolTable());
 
         return new Objekt.Clasz(identifier, symbolTable);
@@ -739,83 +761,52 @@ public class Parser {
      * @return True if the current symbol ist the start of either and Identifier | IF | WHILE | RETURN
      */
     private boolean isEligibleForStatement() {
-        return currentSymbol.getType() == (Symbol.Type.IDENTIFIER) ||
-                currentSymbol.equals(new Symbol<>(Keyword.IF)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.WHILE)) ||
-                currentSymbol.equals(new Symbol<>(Keyword.RETURN));
+        return currentToken == Token.IDENTIFIER ||
+                is(Keyword.IF) ||
+                is(Keyword.WHILE) ||
+                is(Keyword.RETURN);
     }
 
     /**
      * Update references within the AST such that they refer to the correct entry within the symbol table.
+     * Procedure calls are bound through the class's procedure index.
      *
-     * @param symbolTable The symbol Table from which ASTs (from methods) should be retrieved
+     * @param clasz The class from which ASTs (from methods) should be retrieved
      * @throws Exception If references could not be resolved
      */
-    public void updateSyntaxTreeReferences(SymbolTable symbolTable) throws Exception {
+    public void updateSyntaxTreeReferences(Objekt.Clasz clasz) throws Exception {
         // find all method declarations
-        for (Object obj : symbolTable) {
+        for (Object obj : clasz.symbolTable) {
             if (obj instanceof Objekt.Procedure) {
                 // Determine symbol table for the method
                 SymbolTable procedureSymbolTable = ((Objekt.Procedure) obj).symbolTable;
 
                 // Traverse the ast and update references
-                Node.TraverseCallback linkSymbolTables = node -> {
-                    // Link all Identifier nodes with their symbol table entry,
-                    // skip procedures, since those are handled separately
-                    if (node instanceof Node.IdentifierNode) {
+                Node.Visitor<Void, ParserException> linkSymbolTables = new Node.DefaultVisitor<>() {
+                    @Override
+                    public Void visit(Node.IdentifierNode identifierNode) throws ParserException {
+                        // Link all Identifier nodes with their symbol table entry,
                         // find definition within the local scope, if not present proceed to a higher scope
-                        Node.IdentifierNode identifierNode = ((Node.IdentifierNode) node);
-                        SymbolTable currentSymbolTable = procedureSymbolTable;
-
-                        boolean foundLink = false;
-                        while (currentSymbolTable != null && !foundLink) {
-                            for (Objekt obj1 : currentSymbolTable) {
-                                // Find symbol table entry with same name
-                                if (identifierNode.identifier.equals(obj1.name)) {
-
-                                    // Skip method declarations
-                                    if (!(obj1 instanceof Objekt.Procedure)) {
-                                        identifierNode.setSymbolTableEntry(obj1);
-                                        foundLink = true;
-                                    }
-                                }
-                            }
-                            // Continue with the next (higher) scope
-                            currentSymbolTable = currentSymbolTable.enclosingTable;
-                        }
+                        Objekt declaration = procedureSymbolTable.resolve(identifierNode.nameId);
 
-                        if (!foundLink)
+                        if (declaration == null)
                             throw new ParserException("Undefined variable: " + identifierNode.identifier);
+                        identifierNode.setSymbolTableEntry(declaration);
+                        return null;
                     }
 
-                    // Check for Procedure calls
-                    if (node instanceof Node.ProcedureCallNode) {
+                    @Override
+                    public Void visit(Node.ProcedureCallNode procedureCallNode) throws ParserException {
                         // Find matching method definition (same identifier and nr. of parameter)
-                        Node.ProcedureCallNode procedureCallNode = ((Node.ProcedureCallNode) node);
-                        SymbolTable currentSymbolTable = procedureSymbolTable;
-
-                        boolean foundLink = false;
-                        while (currentSymbolTable != null && !foundLink) {
-                            for (Objekt obj1 : currentSymbolTable) {
-                                // Find symbol table entry with same name
-                                if (obj1 instanceof Objekt.Procedure &&
-                                        procedureCallNode.identifier.equals(obj1.name)) {
-
-                                    if (((Objekt.Procedure) obj1).parameterList.size() ==
-                                            ((Node.StatementSequenceNode) procedureCallNode.left).statements.size()) {
-                                        procedureCallNode.setSymbolTableEntry((Objekt.Procedure) obj1);
-                                        foundLink = true;
-                                    }
-                                }
-                            }
-                            // Continue with the next (higher) scope
-                            currentSymbolTable = currentSymbolTable.enclosingTable;
-                        }
+                        Objekt.Procedure declaration = clasz.getProcedure(procedureCallNode.nameId,
+                                procedureCallNode.getParameterCount());
 
-                        if (!foundLink) {
+                        if (declaration != null) {
+                            procedureCallNode.setSymbolTableEntry(declaration);
+                        } else {
                             // fancy exception with corr. nr of parameters
                             StringBuilder parameters = new StringBuilder("(");
-                            int nrParameter = ((Node.StatementSequenceNode) procedureCallNode.left).statements.size();
+                            int nrParameter = procedureCallNode.getParameterCount();
                             for (int i = 0; i < nrParameter; i++) {
                                 parameters.append("int");
                                 if (i < nrParameter - 1)
@@ -825,20 +816,258 @@ public class Parser {
                             throw new ParserException("No matching Method found for: " + procedureCallNode.identifier
                                     + parameters);
                         }
+                        return null;
                     }
-
                 };
 
-                ((Objekt.Procedure) obj).abstractSyntaxTree.traverse(linkSymbolTables);
+                ((Objekt.Procedure) obj).abstractSyntaxTree.traverse(node -> node.accept(linkSymbolTables));
             }
 
             if (obj instanceof Objekt.Clasz) {
                 // Resolve sub-classes
-                updateSyntaxTreeReferences(((Objekt.Clasz) obj).symbolTable);
+                updateSyntaxTreeReferences((Objekt.Clasz) obj);
+            }
+        }
+    }
+
+
+    /**
+     * Operands and operators of a chain of binary operations (i.e. a + b - c).
+     * Chains are parsed iteratively and combined into a right-nested tree (a + (b - c)), such that long chains
+     * don't exhaust the stack.
+     *
+     * @author TillFleisch
+     */
+    private class OperationChain {
+
+        /**
+         * Operands of the chain, in order
+         */
+        final ArrayList<Node> operands = new ArrayList<>();
+
+        /**
+         * Operators between the operands
+         */
+        final ArrayList<Operation.Binary> operations = new ArrayList<>();
+
+        /**
+         * Positions of the operators
+         */
+        final ArrayList<CodePosition> positions = new ArrayList<>();
+
+        /**
+         * Creates a chain starting with its first operand
+         *
+         * @param firstOperand The first operand
+         */
+        OperationChain(Node firstOperand) {
+            operands.add(firstOperand);
+        }
+
+        /**
+         * Adds the current token as operator to the chain
+         */
+        void addOperation() throws ScannerException, IOException, ParserException {
+            positions.add(new CodePosition(scanner.getPosition()));
+            try {
+                // Determine the binary Operation
+                operations.add(Operation.Binary.toBinaryOperation(Token.toKeyword(currentToken)));
+            } catch (ParserException e) {
+                throw new ParserException(e.getMessage(), scanner.getPosition());
             }
+            next();
+        }
+
+        /**
+         * Combines the chain into a syntax tree, starting with the last operation
+         *
+         * @return Syntax tree describing the chain
+         */
+        Node toNode() {
+            Node node = operands.get(operands.size() - 1);
+            for (int i = operations.size() - 1; i >= 0; i--)
+                node = new Node.BinaryOperationNode(operands.get(i), node, operations.get(i), positions.get(i));
+            return node;
         }
     }
 
+    /**
+     * Partially parsed expression, which is nested within brackets or procedure call parameters unless it's the
+     * outermost expression. Holds the operation chains which are not complete yet.
+     *
+     * @author TillFleisch
+     */
+    private class NestedExpression {
+
+        /**
+         * The non-terminal to parse
+         */
+        final int level;
+
+        /**
+         * Parameters of the procedure call the expression belongs to, null unless it's a procedure call parameter
+         */
+        final LinkedList<Node> parameters;
+
+        /**
+         * Identifier of the called procedure
+         */
+        final int identifier;
+
+        /**
+         * Position of the procedure call
+         */
+        final CodePosition position;
+
+        /**
+         * The incomplete term, null if it hasn't been started yet
+         */
+        OperationChain term;
+
+        /**
+         * The incomplete simple expression, null if it hasn't been started yet
+         */
+        OperationChain simpleExpression;
+
+        /**
+         * The incomplete comparison, null if it hasn't been started yet
+         */
+        OperationChain comparison;
+
+        /**
+         * Creates an expression
+         *
+         * @param level The non-terminal to parse
+         */
+        NestedExpression(int level) {
+            this.level = level;
+            parameters = null;
+            identifier = 0;
+            position = null;
+        }
+
+        /**
+         * Creates an expression for the parameters of a procedure call
+         *
+         * @param identifier Identifier of the called procedure
+         * @param position   Position of the procedure call
+         */
+        NestedExpression(int identifier, CodePosition position) {
+            level = EXPRESSION;
+            parameters = new LinkedList<>();
+            this.identifier = identifier;
+            this.position = position;
+        }
+
+        /**
+         * Adds a factor to the expression, an operator following the factor is consumed
+         *
+         * @param factor The parsed factor
+         * @return The completed non-terminal, null if it's continued by another factor
+         */
+        Node add(Node factor) throws ScannerException, IOException, ParserException {
+            if (level == FACTOR)
+                return factor;
+
+            // factor {("*"|"/") factor}
+            term = append(term, factor);
+            if (is(Keyword.MULTIPLY) || is(Keyword.DIVIDE)) {
+                term.addOperation();
+                return null;
+            }
+
+            // term {("+"|"-") term}
+            simpleExpression = append(simpleExpression, term.toNode());
+            term = null;
+            if (is(Keyword.PLUS) || is(Keyword.MINUS)) {
+                simpleExpression.addOperation();
+                return null;
+            }
+            Node node = simpleExpression.toNode();
+            simpleExpression = null;
+            if (level == SIMPLE_EXPRESSION)
+                return node;
+
+            // simple_expression [("==" | "<" | "<=" | ">" | ">=") simple_expression]
+            if (comparison == null && (is(Keyword.EQUAL) ||
+                    is(Keyword.LESS) ||
+                    is(Keyword.LESS_EQUAL) ||
+                    is(Keyword.GREATER) ||
+                    is(Keyword.GREATER_EQUAL))) {
+                comparison = new OperationChain(node);
+                comparison.addOperation();
+                return null;
+            }
+            if (comparison != null) {
+                comparison.operands.add(node);
+                node = comparison.toNode();
+                comparison = null;
+            }
+            return node;
+        }
+
+        /**
+         * Appends an operand to a chain
+         *
+         * @param chain   The chain, null if it hasn't been started yet
+         * @param operand The operand
+         * @return The chain containing the operand
+         */
+        private OperationChain append(OperationChain chain, Node operand) {
+            if (chain == null)
+                return new OperationChain(operand);
+            chain.operands.add(operand);
+            return chain;
+        }
+    }
+
+    /**
+     * Statement sequence of a while body or an if/else branch, which is parsed by {@link #parseStatements(boolean)}
+     *
+     * @author TillFleisch
+     */
+    private static class Block {
+
+        /**
+         * The statements parsed so far
+         */
+        final LinkedList<Node> statements = new LinkedList<>();
+
+        /**
+         * Condition of the while/if statement
+         */
+        final Node condition;
+
+        /**
+         * Position of the while/if statement
+         */
+        final CodePosition position;
+
+        /**
+         * True if the block is a while body
+         */
+        final boolean loop;
+
+        /**
+         * Statements of the if branch, if the block is an else branch
+         */
+        final Node.StatementSequenceNode ifStatements;
+
+        /**
+         * Creates an empty block
+         *
+         * @param condition    Condition of the while/if statement
+         * @param position     Position of the while/if statement
+         * @param loop         True if the block is a while body
+         * @param ifStatements Statements of the if branch, if the block is an else branch
+         */
+        Block(Node condition, CodePosition position, boolean loop, Node.StatementSequenceNode ifStatements) {
+            this.condition = condition;
+            this.position = position;
+            this.loop = loop;
+            this.ifStatements = ifStatements;
+        }
+    }
 
     /**
      * Generic pair of 2 objects
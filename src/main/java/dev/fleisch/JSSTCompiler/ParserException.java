@@ -32,30 +32,38 @@ public class ParserException extends Exception {
     }
 
     /**
-     * Expected but found exception for discrepancies during parsing
+     * Unexpected EOF exception, thrown if the input ends before the class has been parsed completely.
      *
      * @author TillFleisch
      */
-    static class ExpectedButFoundException extends ParserException {
+    static class UnexpectedEOFException extends ParserException {
 
-
-        public ExpectedButFoundException(Symbol<?> expected, Symbol<?> found, CodePosition codePosition) {
-            super("Expected '" +
-                    ((expected.getType() != Symbol.Type.KEYWORD) ? expected.getType() : expected.content) +
-                    "' but found " + found.toString() +
-                    " at " + codePosition);
+        /**
+         * Unexpected EOF exception constructor
+         */
+        public UnexpectedEOFException() {
+            super("Unexpected EOF");
         }
+    }
+
+    /**
+     * Expected but found exception for discrepancies during parsing
+     *
+     * @author TillFleisch
+     */
+    static class ExpectedButFoundException extends ParserException {
 
-        public ExpectedButFoundException(Keyword expected, Symbol<?> found, CodePosition codePosition) {
-            super("Expected '" +
-                    expected +
-                    "' but found " + found.toString() +
-                    " at " + codePosition);
-        }
 
-        public ExpectedButFoundException(Symbol.Type expected, Symbol<?> found, CodePosition codePosition) {
+        /**
+         * Expected but found exception constructor
+         *
+         * @param expected     Description of the expected keyword or token kind
+         * @param found        Description of the token found instead
+         * @param codePosition The position at which the token was found
+         */
+        public ExpectedButFoundException(String expected, String found, CodePosition codePosition) {
             super("Expected '" + expected +
-                    "' but found " + found.toString() +
+                    "' but found " + found +
                     " at " + codePosition);
         }
 
@@ -0,0 +1,240 @@
+package dev.fleisch.JSSTCompiler;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Reference scanner for JavaSST source Code.
+ * <p>
+ * Matches keywords by comparing the read character sequence against all {@link Keyword}s.
+ * This implementation is kept as a reference for differential tests of the table-driven {@link Scanner}.
+ * Instead of int-coded tokens it returns {@link Symbol} objects.
+ *
+ * @author TillFleisch
+ */
+class ReferenceScanner extends Scanner {
+
+    /**
+     * Creates a reference Scanner for a given file.
+     *
+     * @param input Input object for a given File
+     */
+    ReferenceScanner(Input input) {
+        super(input);
+    }
+
+    /**
+     * Tries to read the next valid symbol from the given input
+     *
+     * @return The next symbol, {@link Symbol#EOF} if the end of the input has been reached
+     */
+    public Symbol<?> nextSymbol() throws ScannerException, IOException {
+
+        skipIrrelevant();
+
+        if (currentCharacter == Input.EOF)
+            return Symbol.EOF;
+
+        // Check if the current character is a digit -> start of a number
+        if (isDigit(currentCharacter)) {
+            int number = 0;
+            while (isDigit(currentCharacter)) {
+                // Convert character to
+                number = number * 10 + currentCharacter - '0';
+                currentCharacter = input.next();
+            }
+            return new Symbol<>(number);
+        }
+
+        // Check if the current character is a letter -> identifier, variable or keyword
+        if (isLetter(currentCharacter)) {
+
+            // Create a substring and read valid variable names and keywords
+            StringBuilder substringBuilder = new StringBuilder();
+            while (isLetter(currentCharacter) || isDigit(currentCharacter)) {
+                substringBuilder.append(currentCharacter);
+                currentCharacter = input.next();
+            }
+
+            String substring = substringBuilder.toString();
+
+            // Check if the identifier matches any reserved keyword
+            for (Keyword keyword : Keyword.values())
+                if (keyword.getKeyword().equals(substring))
+                    return new Symbol<>(keyword);
+
+            // Assume the substring is a variable identifier
+            return new Symbol<>(substring);
+        }
+
+        // From here on only keywords are possible
+        // We use the following heuristic: read until the input is no longer a keyword, then return the last known keyword
+        if (!isLetter(currentCharacter) && !isDigit(currentCharacter) && !isWhitespace(currentCharacter)) {
+            StringBuilder substringBuilder = new StringBuilder();
+
+            Keyword validKeyword = null;
+            // Iterate until the current sequence is not valid anymore
+            while (!isLetter(currentCharacter) && !isDigit(currentCharacter) && !isWhitespace(currentCharacter) &&
+                    currentCharacter != Input.EOF) {
+                substringBuilder.append(currentCharacter);
+
+                // Check if the substring is still a valid keyword
+                boolean valid = false;
+                for (Keyword keyword : Keyword.values())
+                    if (keyword.getKeyword().equals(substringBuilder.toString())) {
+                        valid = true;
+                        validKeyword = keyword;
+                    }
+
+                // Return the last valid keyword
+                if (!valid) {
+                    break;
+                }
+
+                // Continue with the next character
+                currentCharacter = input.next();
+            }
+
+            // Check if a valid keyword was retrieved, throw error otherwise
+            if (validKeyword != null) {
+                // Skip comments multiline, catch trailing ends
+
+                // Skip comments (multiline)
+                if (validKeyword == Keyword.START_COMMENT_MULTI_LINE) {
+                    // Read symbol until *\
+                    while (true) {
+                        currentCharacter = input.next();
+
+                        // Detect /*
+                        if (currentCharacter == '*') {
+                            currentCharacter = input.next();
+                            if (currentCharacter == '/') {
+                                break;
+                            }
+                        }
+
+                        if (currentCharacter == Input.EOF)
+                            throw new ScannerException("Unclosed comment at " + input.getPosition());
+                    }
+                    currentCharacter = input.next();
+                    // Return symbol after comment
+                    return nextSymbol();
+                }
+
+                // Skip comments (single line)
+                if (validKeyword == Keyword.START_COMMENT) {
+                    // Read symbol until \n or the end of the input
+                    while (true) {
+                        currentCharacter = input.next();
+
+                        // Detect \n
+                        if (currentCharacter == '\n') {
+                            currentCharacter = input.next();
+                            break;
+                        }
+
+                        if (currentCharacter == Input.EOF)
+                            break;
+                    }
+                    // Return symbol after comment
+                    return nextSymbol();
+                }
+
+                return new Symbol<>(validKeyword);
+            } else {
+                // Throw an exception for unknown keywords
+                throw new ScannerException.UnknownSequenceException("Unknown character sequence encountered: " +
+                        substringBuilder + " at " + input.getPosition());
+            }
+
+        }
+
+        // Throw an exception if we've encountered an unknown sequence
+        throw new ScannerException.UnknownSequenceException("Unknown character sequence encountered: " +
+                currentCharacter + " at " + input.getPosition());
+    }
+
+    /**
+     * Basic Symbols which the reference Scanner may return
+     *
+     * @param <T> Symbol content type
+     * @author TillFleisch
+     */
+    static class Symbol<T> {
+
+        /**
+         * Sentinel symbol returned by the reference scanner once the end of the input has been reached
+         */
+        static final Symbol<?> EOF = new Symbol<>(null);
+
+        /**
+         * The symbols content
+         */
+        T content;
+
+        /**
+         * Create a symbol with a given content
+         *
+         * @param content The symbols content
+         */
+        public Symbol(T content) {
+            this.content = content;
+        }
+
+        @Override
+        public String toString() {
+            if (content != null)
+                return getType() + ": " + content.toString();
+            else
+                return "Type: " + getType();
+        }
+
+        /**
+         * Determines the Symbols type
+         *
+         * @return This symbol's type
+         */
+        public Type getType() {
+            if (this == EOF)
+                return Type.EOF;
+            if (this.content instanceof Keyword)
+                return Type.KEYWORD;
+            if (this.content instanceof String)
+                return Type.IDENTIFIER;
+            if (this.content instanceof Integer)
+                return Type.NUMBER;
+            return Type.UNKNOWN;
+        }
+
+        /**
+         * Check if two Symbols are equivalent
+         *
+         * @param other Object
+         * @return True if other is an equivalent symbol to this
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Symbol<?>) {
+                if (((Symbol<?>) other).getType().equals(getType())) {
+                    return Objects.equals(((Symbol<?>) other).content, content);
+                } else {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Enum containing different types of symbols
+         *
+         * @author TillFleisch
+         */
+        enum Type {
+            KEYWORD,
+            IDENTIFIER,
+            NUMBER,
+            EOF,
+            UNKNOWN
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package dev.fleisch.JSSTCompiler;
 
-import java.io.EOFException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
 
 /**
  * Basic scanner for JavaSST source Code.
+ * <p>
+ * Keywords are recognized by the table-driven {@link KeywordAutomaton}.
+ * The scanner acts as a cursor over the token stream: {@link #nextToken()} returns the int-coded {@link Token} kind,
+ * the content of the current token is held by the scanner until the next token is read.
  *
  * @author TillFleisch
  */
@@ -13,13 +19,32 @@ public class Scanner {
     /**
      * Input object to process the input file character by character.
      */
-    private final Input input;
+    final Input input;
 
     /**
      * The current character being processed by the Scanner
      */
     char currentCharacter = ' ';
 
+    /**
+     * Buffer holding the characters of the identifier currently being read
+     */
+    private char[] identifierBuffer = new char[64];
+
+    /**
+     * Kind of the current token
+     */
+    private int kind = Token.EOF;
+
+    /**
+     * Value of the current number token
+     */
+    private int number;
+
+    /**
+     * {@link NameTable} ID of the current identifier token
+     */
+    private int identifier;
 
     /**
      * Creates a Scanner for a given file.
@@ -31,137 +56,112 @@ public class Scanner {
     }
 
     /**
-     * Tries to read the next valid symbol from the given input
+     * Tries to read the next valid token from the given input
+     *
+     * @return The next token's kind, {@link Token#EOF} if the end of the input has been reached
      */
-    public Symbol<?> nextSymbol() throws ScannerException, IOException {
-
-        if (!input.available())
-            throw new EOFException();
+    public int nextToken() throws ScannerException, IOException {
 
         skipIrrelevant();
 
+        if (currentCharacter == Input.EOF)
+            return kind = Token.EOF;
+
         // Check if the current character is a digit -> start of a number
         if (isDigit(currentCharacter)) {
-            int number = 0;
+            number = 0;
             while (isDigit(currentCharacter)) {
                 // Convert character to
                 number = number * 10 + currentCharacter - '0';
-                try {
-                    currentCharacter = input.next();
-                } catch (EOFException e) {
-                    break;
-                }
+                currentCharacter = input.next();
             }
-            return new Symbol<>(number);
+            return kind = Token.NUMBER;
         }
 
         // Check if the current character is a letter -> identifier, variable or keyword
         if (isLetter(currentCharacter)) {
 
-            // Create a substring and read valid variable names and keywords
-            StringBuilder substringBuilder = new StringBuilder();
+            // Read valid variable names and keywords while running the keyword automaton alongside
+            int state = KeywordAutomaton.START;
+            int length = 0;
             while (isLetter(currentCharacter) || isDigit(currentCharacter)) {
-                substringBuilder.append(currentCharacter);
-                try {
-                    currentCharacter = input.next();
-                } catch (EOFException e) {
-                    break;
-                }
+                if (length == identifierBuffer.length)
+                    identifierBuffer = Arrays.copyOf(identifierBuffer, length * 2);
+                identifierBuffer[length++] = currentCharacter;
+                state = KeywordAutomaton.next(state, currentCharacter);
+                currentCharacter = input.next();
             }
 
-            String substring = substringBuilder.toString();
-
             // Check if the identifier matches any reserved keyword
-            for (Keyword keyword : Keyword.values())
-                if (keyword.getKeyword().equals(substring))
-                    return new Symbol<>(keyword);
+            Keyword keyword = KeywordAutomaton.accepts(state);
+            if (keyword != null)
+                return kind = keyword.ordinal();
 
-            // Assume the substring is a variable identifier
-            return new Symbol<>(substring);
+            // Assume the substring is a variable identifier, known names are interned without creating a new String
+            identifier = NameTable.intern(identifierBuffer, 0, length);
+            return kind = Token.IDENTIFIER;
         }
 
         // From here on only keywords are possible
         // We use the following heuristic: read until the input is no longer a keyword, then return the last known keyword
-        if (!isLetter(currentCharacter) && !isDigit(currentCharacter) && !isWhitespace(currentCharacter)) {
-            StringBuilder substringBuilder = new StringBuilder();
-
-            Keyword validKeyword = null;
-            // Iterate until the current sequence is not valid anymore
-            while (!isLetter(currentCharacter) && !isDigit(currentCharacter) && !isWhitespace(currentCharacter)) {
-                substringBuilder.append(currentCharacter);
-
-                // Check if the substring is still a valid keyword
-                boolean valid = false;
-                for (Keyword keyword : Keyword.values())
-                    if (keyword.getKeyword().equals(substringBuilder.toString())) {
-                        valid = true;
-                        validKeyword = keyword;
-                    }
+        Keyword validKeyword = null;
+        int state = KeywordAutomaton.next(KeywordAutomaton.START, currentCharacter);
 
-                // Return the last valid keyword
-                if (!valid) {
-                    break;
-                }
+        // Iterate until the current sequence is not valid anymore
+        while (KeywordAutomaton.accepts(state) != null) {
+            validKeyword = KeywordAutomaton.accepts(state);
 
-                // Continue with the next character
-                try {
-                    currentCharacter = input.next();
-                } catch (EOFException e) {
-                    break;
-                }
-            }
+            // Continue with the next character
+            currentCharacter = input.next();
+            state = KeywordAutomaton.next(state, currentCharacter);
+        }
 
-            // Check if a valid keyword was retrieved, throw error otherwise
-            if (validKeyword != null) {
-                // Skip comments multiline, catch trailing ends
-
-                // Skip comments (multiline)
-                if (validKeyword == Keyword.START_COMMENT_MULTI_LINE) {
-                    try {
-                        // Read symbol until *\
-                        while (true) {
-                            currentCharacter = input.next();
-
-                            // Detect /*
-                            if (currentCharacter == '*') {
-                                currentCharacter = input.next();
-                                if (currentCharacter == '/') {
-                                    break;
-                                }
-                            }
-                        }
+        // Check if a valid keyword was retrieved, throw error otherwise
+        if (validKeyword != null) {
+            // Skip comments multiline, catch trailing ends
 
-                    } catch (EOFException e) {
-                        throw new ScannerException("Unclosed comment at " + input.getPosition());
-                    }
+            // Skip comments (multiline)
+            if (validKeyword == Keyword.START_COMMENT_MULTI_LINE) {
+                // Read symbol until *\
+                while (true) {
                     currentCharacter = input.next();
-                    // Return symbol after comment
-                    return nextSymbol();
-                }
 
-                // Skip comments (single line)
-                if (validKeyword == Keyword.START_COMMENT) {
-                    // Read symbol until \n
-                    while (true) {
+                    // Detect /*
+                    if (currentCharacter == '*') {
                         currentCharacter = input.next();
-
-                        // Detect \n
-                        if (currentCharacter == '\n') {
-                            currentCharacter = input.next();
+                        if (currentCharacter == '/') {
                             break;
                         }
                     }
-                    // Return symbol after comment
-                    return nextSymbol();
+
+                    if (currentCharacter == Input.EOF)
+                        throw new ScannerException("Unclosed comment at " + input.getPosition());
                 }
+                currentCharacter = input.next();
+                // Return symbol after comment
+                return nextToken();
+            }
 
-                return new Symbol<>(validKeyword);
-            } else {
-                // Throw an exception for unknown keywords
-                throw new ScannerException.UnknownSequenceException("Unknown character sequence encountered: " +
-                        substringBuilder + " at " + input.getPosition());
+            // Skip comments (single line)
+            if (validKeyword == Keyword.START_COMMENT) {
+                // Read symbol until \n or the end of the input
+                while (true) {
+                    currentCharacter = input.next();
+
+                    // Detect \n
+                    if (currentCharacter == '\n') {
+                        currentCharacter = input.next();
+                        break;
+                    }
+
+                    if (currentCharacter == Input.EOF)
+                        break;
+                }
+                // Return symbol after comment
+                return nextToken();
             }
 
+            return kind = validKeyword.ordinal();
         }
 
         // Throw an exception if we've encountered an unknown sequence
@@ -174,7 +174,7 @@ public class Scanner {
      *
      * @throws IOException on input exception
      */
-    private void skipIrrelevant() throws IOException {
+    void skipIrrelevant() throws IOException {
         while (isWhitespace(currentCharacter)) {
             currentCharacter = input.next();
         }
@@ -186,7 +186,7 @@ public class Scanner {
      * @param c The character to check
      * @return True if the character is considered a whitespace
      */
-    private boolean isWhitespace(char c) {
+    boolean isWhitespace(char c) {
         return c == ' ' || c == '\t' || c == '\n' || c == '\r';
     }
 
@@ -196,7 +196,7 @@ public class Scanner {
      * @param c The character to check
      * @return true if the character contains a digit from 0..9
      */
-    private boolean isDigit(char c) {
+    boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
 
@@ -206,95 +206,139 @@ public class Scanner {
      * @param c The character to check
      * @return true if the character contains a letter from a..z or A..Z
      */
-    private boolean isLetter(char c) {
+    boolean isLetter(char c) {
         return (c >= 'a' && c <= 'z') ||
                 (c >= 'A' && c <= 'Z');
     }
 
     /**
-     * Passes the input's code position
-     *
-     * @return The scanners position within the source file
+     * @return The value of the current number token
      */
-    public CodePosition getPosition() {
-        return input.getPosition();
+    public int getNumber() {
+        return number;
     }
 
-}
-
-/**
- * Basic Symbols which the Scanner may return
- *
- * @param <T> Symbol content type
- * @author TillFleisch
- */
-class Symbol<T> {
-
     /**
-     * The symbols content
+     * @return The identifier of the current identifier token
      */
-    T content;
+    public String getIdentifier() {
+        return NameTable.name(identifier);
+    }
 
     /**
-     * Create a symbol with a given content
-     *
-     * @param content The symbols content
+     * @return The {@link NameTable} ID of the current identifier token
      */
-    public Symbol(T content) {
-        this.content = content;
-    }
-
-    @Override
-    public String toString() {
-        if (content != null)
-            return getType() + ": " + content.toString();
-        else
-            return "Type: " + getType();
+    public int getIdentifierId() {
+        return identifier;
     }
 
     /**
-     * Determines the Symbols type
+     * Describes the current token
      *
-     * @return This symbol's type
+     * @return String describing the current token's kind and content
      */
-    public Type getType() {
-        if (this.content instanceof Keyword)
-            return Type.KEYWORD;
-        if (this.content instanceof String)
-            return Type.IDENTIFIER;
-        if (this.content instanceof Integer)
-            return Type.NUMBER;
-        return Type.UNKNOWN;
+    public String tokenToString() {
+        return switch (kind) {
+            case Token.EOF -> "Type: EOF";
+            case Token.IDENTIFIER -> Token.toString(kind) + ": " + getIdentifier();
+            case Token.NUMBER -> Token.toString(kind) + ": " + number;
+            default -> Token.toString(kind) + ": " + Token.toKeyword(kind);
+        };
     }
 
     /**
-     * Check if two Symbols are equivalent
+     * Passes the input's code position
      *
-     * @param other Object
-     * @return True if other is an equivalent symbol to this
+     * @return The scanners position within the source file
      */
-    @Override
-    public boolean equals(Object other) {
-        if (other instanceof Symbol<?>) {
-            if (((Symbol<?>) other).getType().equals(getType())) {
-                return ((Symbol<?>) other).content.equals(content);
-            } else {
-                return false;
-            }
-        }
-        return false;
+    public CodePosition getPosition() {
+        return input.getPosition();
     }
 
     /**
-     * Enum containing different types of symbols
+     * Class for simple differential scanner Tests
      *
      * @author TillFleisch
      */
-    enum Type {
-        KEYWORD,
-        IDENTIFIER,
-        NUMBER,
-        UNKNOWN
+    public static class ScannerTest {
+
+        /**
+         * Run simple scanner tests, comparing the symbols found by the Scanner and the {@link ReferenceScanner}.
+         */
+        public static void runTests() {
+            try {
+                compare("class kek{int i; final int j = 69; public void meth(int a, int b){i=0;}}");
+                compare("classy class1 if1 ifx whil while returns return int integer in i publicvoid");
+                compare("= == > >= < <= + - * / ( ) { } , ;");
+                compare("1>=2<=3==4= =5<6>7+-*/(),;{};");
+                compare("a1b2 0123 4294967296 2147483648 x_");
+                compare("// comment\n a /* multi \n line */ b /**/ c // trailing");
+                compare("a\t\r\n/");
+                compare("a <");
+                compare("");
+                compare("a ! b");
+                compare("a /* unclosed");
+            } catch (Exception e) {
+                Logger.getGlobal().info("\u001B[31mScanner tests failed!\u001B[0m");
+                throw new RuntimeException(e);
+            }
+            Logger.getGlobal().info("\u001B[32mAll scanner tests passed!\u001B[0m");
+        }
+
+        /**
+         * Compares the symbols and positions produced by the Scanner and the reference Scanner for a given source.
+         *
+         * @param fileContent jsst source code
+         * @throws ScannerException If the symbols or the positions differ
+         */
+        private static void compare(String fileContent) throws ScannerException, IOException {
+            Scanner scanner = new Scanner(new Input(new ByteArrayInputStream(fileContent.getBytes())));
+            ReferenceScanner reference = new ReferenceScanner(new Input(new ByteArrayInputStream(fileContent.getBytes())));
+
+            while (true) {
+                String token = nextToken(scanner);
+                String expected = nextSymbol(reference);
+
+                if (!token.equals(expected))
+                    throw new ScannerException("Expected " + expected + " but found " + token + " for: " + fileContent);
+
+                if (token.equals(ReferenceScanner.Symbol.EOF.toString()) || token.startsWith("Error"))
+                    return;
+            }
+        }
+
+        /**
+         * Reads the next token of a Scanner including its position
+         *
+         * @param scanner Scanner to read from
+         * @return String describing the next token or the error encountered
+         */
+        private static String nextToken(Scanner scanner) throws IOException {
+            try {
+                if (scanner.nextToken() == Token.EOF)
+                    return scanner.tokenToString();
+                return scanner.tokenToString() + " " + scanner.getPosition();
+            } catch (ScannerException e) {
+                return "Error " + e.getMessage();
+            }
+        }
+
+        /**
+         * Reads the next symbol of the reference Scanner including its position
+         *
+         * @param scanner Reference scanner to read from
+         * @return String describing the next symbol or the error encountered
+         */
+        private static String nextSymbol(ReferenceScanner scanner) throws IOException {
+            try {
+                ReferenceScanner.Symbol<?> symbol = scanner.nextSymbol();
+                if (symbol == ReferenceScanner.Symbol.EOF)
+                    return symbol.toString();
+                return symbol + " " + scanner.getPosition();
+            } catch (ScannerException e) {
+                return "Error " + e.getMessage();
+            }
+        }
     }
-}
 
+}
@@ -1,6 +1,9 @@
 package dev.fleisch.JSSTCompiler;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.ListIterator;
 
 /**
  * Class containing methods for semantic analysis of class objects.
@@ -16,396 +19,437 @@ public class SemanticAnalysis {
      * @throws Exception on semantic errors
      */
     public static void run(Objekt.Clasz clasz) throws Exception {
-
-        // Check all methods contained within the class
-        for (Objekt objekt : clasz.symbolTable) {
-            if (objekt instanceof Objekt.Procedure) {
-                Objekt.Procedure procedure = (Objekt.Procedure) objekt;
-                Node.StatementSequenceNode ast = (Node.StatementSequenceNode) procedure.abstractSyntaxTree;
-
-                // Check if all operations are type-compatible
-                Node.TraverseCallback typeCompatibility = new Node.TraverseCallback() {
-                    @Override
-                    public void onTraverse(Node node) throws Exception {
-                        // Check if all nodes return correctly (throws exception on fail)
-                        doesReturnValue(node);
-
-                        // Check if parameters for procedure call are valid
-                        if (node instanceof Node.ProcedureCallNode) {
-                            checkProcedureCallParameters((Node.ProcedureCallNode) node);
-                        }
-
-                        // Check if sequences contain unreachable statements
-                        if (node instanceof Node.StatementSequenceNode) {
-                            containsUnreachableCode((Node.StatementSequenceNode) node);
-                        }
-
-                        // Check for invalid assignments
-                        if (node instanceof Node.BinaryOperationNode &&
-                                ((Node.BinaryOperationNode) node).operation == Operation.Binary.ASSIGNMENT) {
-                            Node.IdentifierNode identifier = (Node.IdentifierNode) node.left;
-
-                            // Assignment to final variables
-                            if (identifier.symbolTableEntry instanceof Objekt.Constant) {
-                                throw new SemanticAnalysisException("Cannot assign final variable " +
-                                        identifier.symbolTableEntry.name, identifier.getCodePosition());
-                            }
-                        }
-
-                        // Assert that all return actually return a value if required
-                        if (node instanceof Node.UnaryOperationNode) {
-                            if (procedure.returnType != Type.VOID &&
-                                    ((Node.UnaryOperationNode) node).operation == Operation.Unary.RETURN)
-                                if (!doesReturnValue(node.left))
-                                    throw new SemanticAnalysisException("Expected return value", node.getCodePosition());
-                        }
-                    }
-                };
-
-                // Traverse the ast
-                ast.traverse(typeCompatibility);
-
-
-                // Since we can't have unreachable code the last statement within a function must return a value
-                // This is also true for branches in case of an if statement / loop
-                if (procedure.returnType != Type.VOID) {
-                    Node lastStatement = ast.statements.get(ast.statements.size() - 1);
-                    boolean returns = false;
-
-                    // Check if the last statement is an If statement (return must be in if/else branch)
-                    if (lastStatement instanceof Node.IfNode) {
-                        // Make sure both branches only have paths returning a value
-                        if (exitsWithReturnStatement((Node.StatementSequenceNode) lastStatement.left) &&
-                                exitsWithReturnStatement((Node.StatementSequenceNode) lastStatement.right))
-                            returns = true;
-                    }
-
-                    // Check if the last while statement contains a return statement
-                    if (lastStatement instanceof Node.WhileNode) {
-                        // Make sure the loop contains a return statement
-                        if (exitsWithReturnStatement((Node.StatementSequenceNode) lastStatement.left)) {
-                            returns = true;
-                        }
-                    }
-
-                    // Assume last statement must be return statement
-                    if (lastStatement instanceof Node.UnaryOperationNode) {
-                        if (((Node.UnaryOperationNode) lastStatement).operation == Operation.Unary.RETURN) {
-                            returns = true;
-                        }
-                    }
-
-                    if (!returns)
-                        throw new SemanticAnalysisException("Expected return statement with argument for procedure "
-                                + procedure);
-
-                }
-
-
-                // Check if variables are assigned before use
-
-                // Set containing available variables
-                // Add method arguments to the list as available parameters
-                // Add class variables to the list (might have been set by other methods, up to the user)
-                HashSet<Objekt> variables = new HashSet<>(procedure.parameterList);
-                for (Objekt obj : clasz.symbolTable)
-                    if (obj instanceof Objekt.Parameter && !(obj instanceof Objekt.Constant)) {
-                        variables.add(obj);
-                    }
-
-                // Check if variables are used correctly within the procedure
-                checkTemporalConsistency((Node.StatementSequenceNode) procedure.abstractSyntaxTree, variables);
-            }
-        }
-
+        run(clasz, false);
     }
 
-
     /**
-     * Recursively checks if variables are only used if they have been assigned before.
+     * Executes semantic analysis for the provided class object.
+     * Names are resolved during parsing, hence the procedures can be checked independently of each other.
      *
-     * @param statementSequenceNode statement sequence to check for validity
-     * @param variables             Set of variables which are available due to prior statements
-     * @return Set of variables available after all statements have been processed
-     * @throws SemanticAnalysisException If variables have been used before assignment
+     * @param clasz    Class to check
+     * @param parallel True if the procedures are checked in parallel
+     * @throws Exception on semantic errors (of the first faulty procedure)
      */
-    static HashSet<Objekt> checkTemporalConsistency(Node.StatementSequenceNode statementSequenceNode, HashSet<Objekt> variables) throws SemanticAnalysisException {
-
-        // Go through the statements and update entries within the variable map
-        for (Node statement : statementSequenceNode.statements) {
-
-            // Find all assignment statements
-            if (statement instanceof Node.BinaryOperationNode &&
-                    ((Node.BinaryOperationNode) statement).operation == Operation.Binary.ASSIGNMENT) {
-                Node.IdentifierNode identifier = (Node.IdentifierNode) statement.left;
-
-                // Check if assignment is valid and add it to set variables
-                if (identifier.symbolTableEntry instanceof Objekt.Parameter) {
+    public static void run(Objekt.Clasz clasz, boolean parallel) throws Exception {
 
-                    // Check if the assignment uses valid variables
-                    assertValidVariablesUsed(statement.right, variables);
-
-                    // Add the assigned variable to the set of assigned variables
-                    variables.add(identifier.symbolTableEntry);
-                }
+        // Check all methods contained within the class
+        Parallel.map(clasz.getProcedures(), procedure -> {
+            check(procedure);
+            return null;
+        }, parallel);
+    }
 
-            }
+    /**
+     * Executes semantic analysis for a single procedure
+     *
+     * @param procedure Procedure to check
+     * @throws Exception on semantic errors
+     */
+    static void check(Objekt.Procedure procedure) throws Exception {
+        Node.StatementSequenceNode ast = (Node.StatementSequenceNode) procedure.abstractSyntaxTree;
 
-            // Find return statements
-            if (statement instanceof Node.UnaryOperationNode &&
-                    ((Node.UnaryOperationNode) statement).operation == Operation.Unary.RETURN) {
-                // If the return statement does return a value check if it has been initialized;
-                if (statement.left != null) {
-                    // Check if the assignment uses valid variables
-                    assertValidVariablesUsed(statement.left, variables);
-                }
-            }
+        // Determine the attributes of all nodes bottom-up, the checks are based on these attributes
+        ast.traverse(new Attribution(procedure));
 
-            // Check loop content
-            if (statement instanceof Node.WhileNode) {
-                // Check if the condition uses valid variables
-                assertValidVariablesUsed(((Node.WhileNode) statement).condition, variables);
+        // Since we can't have unreachable code the last statement within a function must return a value
+        // This is also true for branches in case of an if statement / loop
+        if (procedure.returnType != Type.VOID && !ast.alwaysReturns)
+            throw new SemanticAnalysisException("Expected return statement with argument for procedure "
+                    + procedure);
 
-                // Check contained statements
-                checkTemporalConsistency((Node.StatementSequenceNode) statement.left,
-                        new HashSet<>(variables));
+        // Check if variables are assigned before use
+        new DefiniteAssignment(procedure).check(ast);
+    }
 
-                // Assume no variables are set during a loop (i.e. loop never entered)
+    /**
+     * Definite-assignment analysis checking that variables are only used if they have been assigned before.
+     * <p>
+     * The procedure's variables are numbered, sets of assigned variables are bit vectors indexed by these numbers.
+     * Parameters are assigned when entering the procedure. Class variables and constants are not numbered, they are
+     * always available (class variables might have been set by other methods, up to the user).
+     * Statements are visited, nested statement sequences are checked using an explicit stack of pending checks. Hence
+     * the nesting depth is not limited by the thread's stack size.
+     *
+     * @author TillFleisch
+     */
+    static class DefiniteAssignment implements Node.Visitor<Void, Exception> {
+
+        /**
+         * Numbers of the procedure's variables, parameters come first
+         */
+        private final IdentityHashMap<Objekt, Integer> variableNumbers = new IdentityHashMap<>();
+
+        /**
+         * Number of parameters passed to the procedure
+         */
+        private final int parameterCount;
+
+        /**
+         * Variables assigned before the statement currently being checked
+         */
+        private BitSet assigned;
+
+        /**
+         * Pending checks, the check on top of the stack is executed next
+         */
+        private final ArrayDeque<Step> steps = new ArrayDeque<>();
+
+        /**
+         * Visitor checking that used variables have been assigned
+         */
+        private final Node.Visitor<Void, SemanticAnalysisException> usage = new Node.DefaultVisitor<>() {
+            @Override
+            public Void visit(Node.IdentifierNode node) throws SemanticAnalysisException {
+                Objekt variable = node.symbolTableEntry;
+
+                // Unnumbered variables (constants, class variables) are always available
+                Integer number = variableNumbers.get(variable);
+                if (number != null && !assigned.get(number))
+                    throw new SemanticAnalysisException("Variable " + variable.name +
+                            " might not have been initialized", node.getCodePosition());
+                return null;
             }
+        };
+
+        /**
+         * Creates the analysis for a procedure and numbers its variables
+         *
+         * @param procedure The procedure to check
+         */
+        DefiniteAssignment(Objekt.Procedure procedure) {
+            for (Objekt objekt : procedure.symbolTable)
+                if (objekt instanceof Objekt.Parameter && !(objekt instanceof Objekt.Constant))
+                    variableNumbers.put(objekt, variableNumbers.size());
+            parameterCount = procedure.parameterList.size();
+        }
 
-            // Check ifNode and includes variables which are available after both branches into the variable set
-            if (statement instanceof Node.IfNode) {
+        /**
+         * Checks the procedure's body, only the parameters are assigned upon entry
+         *
+         * @param ast The procedure's body
+         * @throws Exception If variables have been used before assignment
+         */
+        void check(Node.StatementSequenceNode ast) throws Exception {
+            assigned = new BitSet(variableNumbers.size());
+            assigned.set(0, parameterCount);
+
+            steps.push(checking(ast));
+            while (!steps.isEmpty())
+                steps.pop().run();
+        }
 
-                // Check if the condition uses valid variables
-                assertValidVariablesUsed(((Node.IfNode) statement).condition, variables);
+        /**
+         * Creates a step checking a statement (sequence)
+         *
+         * @param node Statement (sequence) to check
+         * @return Step visiting the node
+         */
+        private Step checking(Node node) {
+            return () -> node.accept(this);
+        }
 
-                // Check contained statements
-                HashSet<Objekt> ifBranchVariables = checkTemporalConsistency((Node.StatementSequenceNode) statement.left,
-                        new HashSet<>(variables));
-                HashSet<Objekt> elseBranchVariables = checkTemporalConsistency((Node.StatementSequenceNode) statement.right,
-                        new HashSet<>(variables));
+        /**
+         * Schedules steps, such that they are executed in the given order before any previously pending step
+         *
+         * @param followingSteps Steps to execute next
+         */
+        private void schedule(Step... followingSteps) {
+            for (int i = followingSteps.length - 1; i >= 0; i--)
+                steps.push(followingSteps[i]);
+        }
 
-                // intersect both sets
-                ifBranchVariables.retainAll(elseBranchVariables);
+        /**
+         * Schedules the checks of a statement sequence, which update the set of assigned variables accordingly
+         *
+         * @param statementSequenceNode statement sequence to check for validity
+         */
+        @Override
+        public Void visit(Node.StatementSequenceNode statementSequenceNode) {
+            // Go through the statements, last statement first
+            ListIterator<Node> iterator = statementSequenceNode.statements.listIterator(
+                    statementSequenceNode.statements.size());
+            while (iterator.hasPrevious())
+                steps.push(checking(iterator.previous()));
+            return null;
+        }
 
-                // Add all variables which are available after both branches to the variable set
-                variables.addAll(ifBranchVariables);
+        /**
+         * Checks an assignment and adds the assigned variable to the set of assigned variables
+         *
+         * @param node The assignment
+         * @throws Exception If variables have been used before assignment
+         */
+        @Override
+        public Void visit(Node.BinaryOperationNode node) throws Exception {
+            if (node.operation == Operation.Binary.ASSIGNMENT) {
+                // Check if the assignment uses valid variables
+                assertValidVariablesUsed(node.right);
+
+                // Add the assigned variable to the set of assigned variables
+                Integer number = variableNumbers.get(((Node.IdentifierNode) node.left).symbolTableEntry);
+                if (number != null)
+                    assigned.set(number);
             }
+            return null;
+        }
 
-            // Check if parameters for procedure call are valid
-            if (statement instanceof Node.ProcedureCallNode) {
-
-                // Assert that all argument are valid
-                for (Node argument : ((Node.StatementSequenceNode) statement.left).statements) {
-                    assertValidVariablesUsed(argument, variables);
-                }
+        /**
+         * Checks a return statement
+         *
+         * @param node The return statement
+         * @throws Exception If variables have been used before assignment
+         */
+        @Override
+        public Void visit(Node.UnaryOperationNode node) throws Exception {
+            // If the return statement does return a value check if it has been initialized;
+            if (node.operation == Operation.Unary.RETURN && node.left != null) {
+                // Check if the assignment uses valid variables
+                assertValidVariablesUsed(node.left);
             }
-
-
+            return null;
         }
-        return variables;
-    }
 
-    /**
-     * Checks if a given expression only uses variables contained within the provided set
-     *
-     * @param node      Expression
-     * @param variables Set of valid variables to be used
-     * @throws SemanticAnalysisException If the expression uses invalid variables
-     */
-    static void assertValidVariablesUsed(Node node, HashSet<Objekt> variables) throws SemanticAnalysisException {
-        // Check statements used within condition
-        HashSet<Objekt> usedVariables = variablesUsedInExpression(node);
-
-        // Remove all valid variables
-        usedVariables.removeAll(variables);
-
-        // Throw exception for remaining non-final variables (have not been initialized)
-        for (Objekt variable : usedVariables) {
-            // Constant scope check not required for JavaSST
-            if (!(variable instanceof Objekt.Constant))
-                throw new SemanticAnalysisException("Variable " + variable.name + " might not have been initialized",
-                        node.getCodePosition());
+        /**
+         * Checks a loop, no variables are assigned after the loop (i.e. loop never entered)
+         *
+         * @param node The loop
+         * @throws Exception If variables have been used before assignment
+         */
+        @Override
+        public Void visit(Node.WhileNode node) throws Exception {
+            // Check if the condition uses valid variables
+            assertValidVariablesUsed(node.condition);
+
+            // Check contained statements
+            BitSet variables = (BitSet) assigned.clone();
+            schedule(checking(node.left), () -> assigned = variables);
+            return null;
         }
-    }
-
-    /**
-     * Determines which variables are used within an Expression recursively
-     *
-     * @return Set of Variables used within an expression
-     */
-    static HashSet<Objekt> variablesUsedInExpression(Node node) throws SemanticAnalysisException {
-        HashSet<Objekt> variables = new HashSet<>();
 
-        // Return identifier (variable/ final variable) as is
-        if (node instanceof Node.IdentifierNode) {
-            variables.add(((Node.IdentifierNode) node).symbolTableEntry);
-            return variables;
+        /**
+         * Checks an if statement, variables which are assigned after both branches are assigned after the if
+         * statement
+         *
+         * @param node The if statement
+         * @throws Exception If variables have been used before assignment
+         */
+        @Override
+        public Void visit(Node.IfNode node) throws Exception {
+            // Check if the condition uses valid variables
+            assertValidVariablesUsed(node.condition);
+
+            // Check contained statements, both branches start with the variables assigned before the if statement
+            BitSet variables = (BitSet) assigned.clone();
+            schedule(checking(node.left), () -> {
+                BitSet ifBranchVariables = assigned;
+                assigned = variables;
+                schedule(checking(node.right), () -> {
+                    // A branch ending with a return statement doesn't continue after the if statement
+                    if (node.left.alwaysReturns) {
+                        return;
+                    }
+                    if (node.right.alwaysReturns) {
+                        assigned = ifBranchVariables;
+                    } else {
+                        assigned.and(ifBranchVariables);
+                    }
+                });
+            });
+            return null;
         }
 
-        // Return left/right branch recursively
-        if (node instanceof Node.BinaryOperationNode) {
-            variables.addAll(variablesUsedInExpression(node.left));
-            variables.addAll(variablesUsedInExpression(node.right));
-            return variables;
+        /**
+         * Checks if the parameters of a procedure call only use assigned variables
+         *
+         * @param node The procedure call
+         * @throws Exception If variables have been used before assignment
+         */
+        @Override
+        public Void visit(Node.ProcedureCallNode node) throws Exception {
+            assertValidVariablesUsed(node);
+            return null;
         }
 
-        // Return branch recursively
-        if (node instanceof Node.UnaryOperationNode) {
-            variables.addAll(variablesUsedInExpression(node.left));
-            return variables;
+        @Override
+        public Void visit(Node.ConstantNode node) {
+            // Not a statement
+            return null;
         }
 
-        // Add parameters for procedure call to variable list
-        if (node instanceof Node.ProcedureCallNode) {
-            Node.ProcedureCallNode procedureCallNode = (Node.ProcedureCallNode) node;
-            Node.StatementSequenceNode parameters = (Node.StatementSequenceNode) procedureCallNode.left;
-
-            for (Node parameter : parameters.statements)
-                variables.addAll(variablesUsedInExpression(parameter));
-            return variables;
+        @Override
+        public Void visit(Node.IdentifierNode node) {
+            // Not a statement
+            return null;
         }
 
-        // Empty set for constants
-        if (node instanceof Node.ConstantNode) {
-            return variables;
+        /**
+         * Checks if a given expression only uses assigned variables
+         *
+         * @param node Expression
+         * @throws Exception If the expression uses unassigned variables
+         */
+        private void assertValidVariablesUsed(Node node) throws Exception {
+            node.traverse(child -> child.accept(usage));
         }
 
-        throw new SemanticAnalysisException("Invalid expression supplied for variable check");
+        /**
+         * Pending step of the analysis
+         */
+        @FunctionalInterface
+        private interface Step {
+
+            /**
+             * Executes the step, possibly scheduling further steps
+             *
+             * @throws Exception If variables have been used before assignment
+             */
+            void run() throws Exception;
+        }
     }
 
-
     /**
-     * Determines AST starting from the ast does return a expression value
+     * Determines the attributes of a node once the attributes of its children are known and checks the node's
+     * semantics based on these attributes. Used as post-order traversal callback, hence each node is attributed
+     * exactly once.
      *
-     * @param node A Node representing the root of a AST
-     * @return True this node returns a valid expression
+     * @author TillFleisch
      */
-    static boolean doesReturnValue(Node node) throws Exception {
+    static class Attribution implements Node.TraverseCallback, Node.Visitor<Void, SemanticAnalysisException> {
+
+        /**
+         * The procedure containing the attributed nodes
+         */
+        private final Objekt.Procedure procedure;
+
+        /**
+         * Creates an attribution for the nodes of a procedure
+         *
+         * @param procedure The procedure to check
+         */
+        Attribution(Objekt.Procedure procedure) {
+            this.procedure = procedure;
+        }
 
-        if (node instanceof Node.ConstantNode) {
+        @Override
+        public void onTraverse(Node node) {
+            // Attributes depend on the children, nodes are attributed once they are left
+        }
+
+        @Override
+        public void onLeave(Node node) throws SemanticAnalysisException {
+            node.accept(this);
+        }
+
+        @Override
+        public Void visit(Node.ConstantNode node) {
             // Constants must have a value so they return something
-            return true;
+            node.producesValue = true;
+            return null;
         }
 
-        if (node instanceof Node.IdentifierNode) {
+        @Override
+        public Void visit(Node.IdentifierNode node) {
             // An identifier can be null, if no value has been assigned yet
-            return true;
+            node.producesValue = true;
+            return null;
         }
 
-        if (node instanceof Node.BinaryOperationNode) {
-            Node.BinaryOperationNode binaryOperationNode = (Node.BinaryOperationNode) node;
-            if (binaryOperationNode.operation == Operation.Binary.ASSIGNMENT) {
-                return false;
+        @Override
+        public Void visit(Node.BinaryOperationNode node) throws SemanticAnalysisException {
+            if (node.operation == Operation.Binary.ASSIGNMENT) {
+                Node.IdentifierNode identifier = (Node.IdentifierNode) node.left;
+
+                // Assignment to final variables
+                if (identifier.symbolTableEntry instanceof Objekt.Constant) {
+                    throw new SemanticAnalysisException("Cannot assign final variable " +
+                            identifier.symbolTableEntry.name, identifier.getCodePosition());
+                }
+
+                // The assigned expression must have a value
+                if (!node.right.producesValue)
+                    throw new SemanticAnalysisException("Expected value for assignment to " +
+                            identifier.symbolTableEntry.name, node.getCodePosition());
+                return null;
             }
 
             // Check if binary operations have matching types
-            if (!(doesReturnValue(binaryOperationNode.left) && doesReturnValue(binaryOperationNode.right)))
+            if (!(node.left.producesValue && node.right.producesValue))
                 throw new SemanticAnalysisException("Invalid operation: " +
-                        binaryOperationNode.operation + " at " + binaryOperationNode.getCodePosition());
-            return true;
+                        node.operation + " at " + node.getCodePosition());
+            node.producesValue = true;
+            return null;
         }
-        if (node instanceof Node.UnaryOperationNode) {
-            Node.UnaryOperationNode unaryOperationNode = (Node.UnaryOperationNode) node;
-            return doesReturnValue(unaryOperationNode.left);
-        }
-
-        if (node instanceof Node.ProcedureCallNode) {
-            Node.ProcedureCallNode procedureCallNode = (Node.ProcedureCallNode) node;
 
-            // Return if per def. a procedure call does returns a value
-            return procedureCallNode.symbolTableEntry.returnType != Type.VOID;
-        }
+        @Override
+        public Void visit(Node.UnaryOperationNode node) throws SemanticAnalysisException {
+            node.producesValue = node.left != null && node.left.producesValue;
 
-        return false;
-    }
+            if (node.operation == Operation.Unary.RETURN) {
+                node.alwaysReturns = true;
 
-    /**
-     * Checks if all parameters passed to the function return the correct value.
-     * Since JavaSST only has a single return type, checking if anything is return is sufficient
-     *
-     * @param procedureCallNode procedure Call to check
-     */
-    static void checkProcedureCallParameters(Node.ProcedureCallNode procedureCallNode) throws Exception {
-        Node.StatementSequenceNode parameterSequence = (Node.StatementSequenceNode) procedureCallNode.left;
-
-        for (Node parameter : parameterSequence.statements) {
-            if (!doesReturnValue(parameter))
-                throw new SemanticAnalysisException("Expected parameter to return value at procedure call " +
-                        procedureCallNode.symbolTableEntry + " at " + procedureCallNode.getCodePosition());
+                // Assert that all return actually return a value if required
+                if (procedure.returnType != Type.VOID && !node.producesValue)
+                    throw new SemanticAnalysisException("Expected return value", node.getCodePosition());
+            }
+            return null;
         }
-    }
 
+        @Override
+        public Void visit(Node.ProcedureCallNode node) throws SemanticAnalysisException {
+            // Since JavaSST only has a single return type, checking if anything is return is sufficient
+            for (Node parameter : ((Node.StatementSequenceNode) node.left).statements) {
+                if (!parameter.producesValue)
+                    throw new SemanticAnalysisException("Expected parameter to return value at procedure call " +
+                            node.symbolTableEntry + " at " + node.getCodePosition());
+            }
 
-    /**
-     * Checks if a statement sequence contains unreachable code
-     *
-     * @param statementSequenceNode Statement sequence to check
-     * @throws SemanticAnalysisException If the code contain unreachable code
-     */
-    static void containsUnreachableCode(Node.StatementSequenceNode statementSequenceNode) throws SemanticAnalysisException {
+            // Return if per def. a procedure call does returns a value
+            node.producesValue = node.symbolTableEntry.returnType != Type.VOID;
+            return null;
+        }
 
-        for (int i = 0; i < statementSequenceNode.statements.size(); i++) {
-            Node node = statementSequenceNode.statements.get(i);
+        @Override
+        public Void visit(Node.WhileNode node) throws SemanticAnalysisException {
+            assertCondition(node.condition);
 
-            // Check if a while node contains a blocking return
-            if (node instanceof Node.WhileNode) {
-                if (exitsWithReturnStatement((Node.StatementSequenceNode) node.left)) {
-                    if (i < statementSequenceNode.statements.size() - 1)
-                        throw new SemanticAnalysisException("Unreachable code",
-                                statementSequenceNode.statements.get(i + 1).getCodePosition());
-                }
-            }
+            // A loop containing a return statement is assumed to be left by it
+            node.alwaysReturns = node.left.alwaysReturns;
+            return null;
+        }
 
-            // Check if an if statement contains a blocking return
-            if (node instanceof Node.IfNode) {
-                if (exitsWithReturnStatement((Node.StatementSequenceNode) node.left) &&
-                        exitsWithReturnStatement((Node.StatementSequenceNode) node.right)) {
-                    if (i < statementSequenceNode.statements.size() - 1)
-                        throw new SemanticAnalysisException("Unreachable code",
-                                statementSequenceNode.statements.get(i + 1).getCodePosition());
-                }
-            }
+        @Override
+        public Void visit(Node.IfNode node) throws SemanticAnalysisException {
+            assertCondition(node.condition);
 
-            // Check for return statements
-            if (node instanceof Node.UnaryOperationNode &&
-                    ((Node.UnaryOperationNode) node).operation == Operation.Unary.RETURN) {
-                if (i < statementSequenceNode.statements.size() - 1)
-                    throw new SemanticAnalysisException("Unreachable code",
-                            statementSequenceNode.statements.get(i + 1).getCodePosition());
-            }
+            // Both branches must return
+            node.alwaysReturns = node.left.alwaysReturns && node.right.alwaysReturns;
+            return null;
         }
-    }
 
-    /**
-     * Checks if a statement sequence exits with return statement
-     *
-     * @param statementSequenceNode statementSequence to check
-     * @return true if all paths exit with a return statement
-     */
-    static boolean exitsWithReturnStatement(Node.StatementSequenceNode statementSequenceNode) {
-        boolean returns = false;
-        for (Node node : statementSequenceNode.statements) {
-
-            // Check if ifNodes have return statements in both branches
-            if (node instanceof Node.IfNode) {
-                returns |= exitsWithReturnStatement((Node.StatementSequenceNode) node.left) &&
-                        exitsWithReturnStatement((Node.StatementSequenceNode) node.right);
-            }
-
-            // Check if While statements contain returns
-            if (node instanceof Node.WhileNode) {
-                returns |= exitsWithReturnStatement((Node.StatementSequenceNode) node.left);
+        @Override
+        public Void visit(Node.StatementSequenceNode node) throws SemanticAnalysisException {
+            // Statements following a returning statement are unreachable
+            boolean returned = false;
+            for (Node statement : node.statements) {
+                if (returned)
+                    throw new SemanticAnalysisException("Unreachable code", statement.getCodePosition());
+                returned = statement.alwaysReturns;
             }
 
-            // Check for return statements
-            if (node instanceof Node.UnaryOperationNode &&
-                    ((Node.UnaryOperationNode) node).operation == Operation.Unary.RETURN) {
-                returns = true;
-            }
+            // Since only the last statement may return, it determines if the sequence returns
+            node.alwaysReturns = returned;
+            return null;
         }
 
-        return returns;
+        /**
+         * Asserts that the condition of an if/while statement has a value
+         *
+         * @param condition The condition to check
+         * @throws SemanticAnalysisException If the condition does not have a value
+         */
+        private void assertCondition(Node condition) throws SemanticAnalysisException {
+            if (!condition.producesValue)
+                throw new SemanticAnalysisException("Expected condition value", condition.getCodePosition());
+        }
     }
-
 }
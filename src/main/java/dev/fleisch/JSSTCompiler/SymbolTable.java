@@ -1,10 +1,18 @@
 package dev.fleisch.JSSTCompiler;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.ListIterator;
 
 /**
  * Basic SymbolTable implementation using {@link LinkedList}.
  * Simple nesting is possible by referencing the enclosing SymbolTable
+ * <p>
+ * Entries are additionally indexed by their {@link NameTable} ID, procedures by name and number of parameters.
+ * Hence lookups within a scope take constant time. Appending entries updates the index, all other modifications
+ * (inserting, removing or replacing entries, also through iterators) rebuild it.
  *
  * @author TillFleisch
  */
@@ -15,6 +23,16 @@ public class SymbolTable extends LinkedList<Objekt> {
      */
     SymbolTable enclosingTable = null;
 
+    /**
+     * Index of all entries except procedures by name ID
+     */
+    private final HashMap<Integer, Objekt> nameIndex = new HashMap<>();
+
+    /**
+     * Index of all procedures by name ID and number of parameters
+     */
+    private final HashMap<Long, Objekt.Procedure> procedureIndex = new HashMap<>();
+
     /**
      * Create an empty SymbolTable
      */
@@ -29,4 +47,266 @@ public class SymbolTable extends LinkedList<Objekt> {
     public SymbolTable(SymbolTable enclosingTable) {
         this.enclosingTable = enclosingTable;
     }
+
+    /**
+     * Finds an entry (variable, constant or class) within this scope
+     *
+     * @param nameId The entry's name ID
+     * @return The entry, null if not present
+     */
+    public Objekt lookup(int nameId) {
+        return nameIndex.get(nameId);
+    }
+
+    /**
+     * Finds a procedure within this scope
+     *
+     * @param nameId         The procedure's name ID
+     * @param parameterCount The procedure's number of parameters
+     * @return The procedure, null if not present
+     */
+    public Objekt.Procedure lookupProcedure(int nameId, int parameterCount) {
+        return procedureIndex.get(procedureKey(nameId, parameterCount));
+    }
+
+    /**
+     * Finds an entry (variable, constant or class) within this scope or the enclosing scopes
+     *
+     * @param nameId The entry's name ID
+     * @return The entry from the innermost scope containing it, null if not present
+     */
+    public Objekt resolve(int nameId) {
+        for (SymbolTable table = this; table != null; table = table.enclosingTable) {
+            Objekt objekt = table.lookup(nameId);
+            if (objekt != null)
+                return objekt;
+        }
+        return null;
+    }
+
+    /**
+     * Combines a name ID and the number of parameters into a procedure key
+     *
+     * @param nameId         The procedure's name ID
+     * @param parameterCount The procedure's number of parameters
+     * @return Key used within the procedure index
+     */
+    private static long procedureKey(int nameId, int parameterCount) {
+        return ((long) nameId << 32) | parameterCount;
+    }
+
+    /**
+     * Adds an entry to the index.
+     * If multiple entries share a key, the last one within the list is indexed.
+     *
+     * @param objekt  The entry to add
+     * @param replace True if the entry has been appended and replaces existing entries with the same key
+     */
+    private void index(Objekt objekt, boolean replace) {
+        if (objekt instanceof Objekt.Procedure) {
+            Objekt.Procedure procedure = (Objekt.Procedure) objekt;
+            long key = procedureKey(procedure.nameId, procedure.parameterList.size());
+            if (replace)
+                procedureIndex.put(key, procedure);
+            else
+                procedureIndex.putIfAbsent(key, procedure);
+        } else {
+            if (replace)
+                nameIndex.put(objekt.nameId, objekt);
+            else
+                nameIndex.putIfAbsent(objekt.nameId, objekt);
+        }
+    }
+
+    /**
+     * Rebuilds the index after entries have been inserted in between existing entries, removed or replaced
+     */
+    private void reindex() {
+        nameIndex.clear();
+        procedureIndex.clear();
+        for (Objekt objekt : this)
+            index(objekt, true);
+    }
+
+    @Override
+    public boolean add(Objekt objekt) {
+        super.add(objekt);
+        index(objekt, true);
+        return true;
+    }
+
+    @Override
+    public void add(int position, Objekt objekt) {
+        super.add(position, objekt);
+        reindex();
+    }
+
+    @Override
+    public void addFirst(Objekt objekt) {
+        super.addFirst(objekt);
+        index(objekt, false);
+    }
+
+    @Override
+    public void addLast(Objekt objekt) {
+        super.addLast(objekt);
+        index(objekt, true);
+    }
+
+    @Override
+    public boolean addAll(int position, Collection<? extends Objekt> collection) {
+        boolean appended = position == size();
+        boolean changed = super.addAll(position, collection);
+
+        if (appended)
+            for (Objekt objekt : collection)
+                index(objekt, true);
+        else
+            reindex();
+
+        return changed;
+    }
+
+    @Override
+    public Objekt set(int position, Objekt objekt) {
+        Objekt previous = super.set(position, objekt);
+        reindex();
+        return previous;
+    }
+
+    @Override
+    public Objekt remove(int position) {
+        Objekt removed = super.remove(position);
+        reindex();
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object objekt) {
+        boolean changed = super.remove(objekt);
+        if (changed)
+            reindex();
+        return changed;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object objekt) {
+        boolean changed = super.removeLastOccurrence(objekt);
+        if (changed)
+            reindex();
+        return changed;
+    }
+
+    @Override
+    public Objekt removeFirst() {
+        Objekt removed = super.removeFirst();
+        reindex();
+        return removed;
+    }
+
+    @Override
+    public Objekt removeLast() {
+        Objekt removed = super.removeLast();
+        reindex();
+        return removed;
+    }
+
+    @Override
+    public Objekt poll() {
+        return isEmpty() ? null : removeFirst();
+    }
+
+    @Override
+    public Objekt pollFirst() {
+        return isEmpty() ? null : removeFirst();
+    }
+
+    @Override
+    public Objekt pollLast() {
+        return isEmpty() ? null : removeLast();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        nameIndex.clear();
+        procedureIndex.clear();
+    }
+
+    @Override
+    public ListIterator<Objekt> listIterator(int position) {
+        // Modifications through the iterator (including removeIf, retainAll and sub lists) rebuild the index
+        ListIterator<Objekt> iterator = super.listIterator(position);
+        return new ListIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Objekt next() {
+                return iterator.next();
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public Objekt previous() {
+                return iterator.previous();
+            }
+
+            @Override
+            public int nextIndex() {
+                return iterator.nextIndex();
+            }
+
+            @Override
+            public int previousIndex() {
+                return iterator.previousIndex();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                reindex();
+            }
+
+            @Override
+            public void set(Objekt objekt) {
+                iterator.set(objekt);
+                reindex();
+            }
+
+            @Override
+            public void add(Objekt objekt) {
+                iterator.add(objekt);
+                reindex();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Objekt> descendingIterator() {
+        Iterator<Objekt> iterator = super.descendingIterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Objekt next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                reindex();
+            }
+        };
+    }
 }
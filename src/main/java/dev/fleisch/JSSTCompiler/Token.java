@@ -0,0 +1,70 @@
+package dev.fleisch.JSSTCompiler;
+
+/**
+ * Int-coded token kinds produced by the {@link Scanner}.
+ * <p>
+ * Keywords are encoded by their ordinal, all other kinds use negative values.
+ * The content of the current token (number or identifier) is held by the Scanner.
+ *
+ * @author TillFleisch
+ */
+final class Token {
+
+    /**
+     * End of the input
+     */
+    static final int EOF = -1;
+
+    /**
+     * Identifier token, the identifier is available through {@link Scanner#getIdentifier()}
+     */
+    static final int IDENTIFIER = -2;
+
+    /**
+     * Number token, the value is available through {@link Scanner#getNumber()}
+     */
+    static final int NUMBER = -3;
+
+    /**
+     * Keywords indexed by their ordinal
+     */
+    private static final Keyword[] keywords = Keyword.values();
+
+    private Token() {
+    }
+
+    /**
+     * Determines if a token kind represents a keyword
+     *
+     * @param kind The token kind
+     * @return True if the token kind represents a keyword
+     */
+    static boolean isKeyword(int kind) {
+        return kind >= 0;
+    }
+
+    /**
+     * Converts a keyword token kind into it's keyword
+     *
+     * @param kind The token kind, must be a keyword
+     * @return The keyword represented by the token kind
+     */
+    static Keyword toKeyword(int kind) {
+        return keywords[kind];
+    }
+
+    /**
+     * Determines the name of a token kind
+     *
+     * @param kind The token kind
+     * @return The token kind's name
+     */
+    static String toString(int kind) {
+        return switch (kind) {
+            case EOF -> "EOF";
+            case IDENTIFIER -> "IDENTIFIER";
+            case NUMBER -> "NUMBER";
+            default -> "KEYWORD";
+        };
+    }
+}